@@ -1,6 +1,14 @@
 package org.alfredorueda.spring.criteriajpa.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.convert.DataSizeUnit;
+import org.springframework.util.unit.DataSize;
+import org.springframework.util.unit.DataUnit;
 
 /**
  * Properties specific to Jhipster Criteria JPA Sample.
@@ -10,7 +18,663 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Query query = new Query();
+
+    private final Export export = new Export();
+
+    private final ResultCache resultCache = new ResultCache();
+
+    private final Estimate estimate = new Estimate();
+
+    private final Columnar columnar = new Columnar();
+
+    private final Leaderboard leaderboard = new Leaderboard();
+
+    private final Import importProperties = new Import();
+
+    private final Advisor advisor = new Advisor();
+
+    private final Cache cache = new Cache();
+
+    private final Warmup warmup = new Warmup();
+
+    private final Threads threads = new Threads();
+
     // jhipster-needle-application-properties-property
+
+    public Query getQuery() {
+        return query;
+    }
+
+    public Export getExport() {
+        return export;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public Estimate getEstimate() {
+        return estimate;
+    }
+
+    public Columnar getColumnar() {
+        return columnar;
+    }
+
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    public Import getImport() {
+        return importProperties;
+    }
+
+    public Advisor getAdvisor() {
+        return advisor;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Warmup getWarmup() {
+        return warmup;
+    }
+
+    public Threads getThreads() {
+        return threads;
+    }
+
     // jhipster-needle-application-properties-property-getter
+
+    public static class Query {
+
+        /**
+         * Maximum page size accepted by the list endpoints.
+         */
+        private int maxPageSize = 1000;
+
+        /**
+         * Maximum number of rows which can be paged through by offset, deeper rows need keyset pagination.
+         */
+        private long maxRows = 10000;
+
+        /**
+         * Maximum number of criteria shapes whose query plan is cached, per entity.
+         */
+        private int planCacheSize = 256;
+
+        public int getMaxPageSize() {
+            return maxPageSize;
+        }
+
+        public void setMaxPageSize(int maxPageSize) {
+            this.maxPageSize = maxPageSize;
+        }
+
+        public long getMaxRows() {
+            return maxRows;
+        }
+
+        public void setMaxRows(long maxRows) {
+            this.maxRows = maxRows;
+        }
+
+        public int getPlanCacheSize() {
+            return planCacheSize;
+        }
+
+        public void setPlanCacheSize(int planCacheSize) {
+            this.planCacheSize = planCacheSize;
+        }
+    }
+
+    public static class Export {
+
+        /**
+         * JDBC fetch size of the export cursor. On MySQL it only takes effect with {@code useCursorFetch=true}.
+         */
+        private int fetchSize = 500;
+
+        /**
+         * Number of exported rows after which the persistence context is cleared.
+         */
+        private int clearInterval = 500;
+
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        public void setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+
+        public int getClearInterval() {
+            return clearInterval;
+        }
+
+        public void setClearInterval(int clearInterval) {
+            this.clearInterval = clearInterval;
+        }
+    }
+
+    public static class ResultCache {
+
+        /**
+         * Whether the criteria query results are cached.
+         */
+        private boolean enabled = true;
+
+        private final Region players = new Region();
+
+        private final Region teams = new Region();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Region getPlayers() {
+            return players;
+        }
+
+        public Region getTeams() {
+            return teams;
+        }
+
+        public static class Region {
+
+            /**
+             * Maximum number of cached results.
+             */
+            private long maxEntries = 1000;
+
+            /**
+             * Time to live of a cached result, in seconds.
+             */
+            private long timeToLiveSeconds = 300;
+
+            public long getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(long maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public long getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+        }
+    }
+
+    public static class Estimate {
+
+        /**
+         * Whether the counts asked with {@code estimate=true} are estimated from a sample of the rows, rather than exact.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of sampled rows per entity used to estimate counts.
+         */
+        private int sampleSize = 10000;
+
+        /**
+         * Age after which the sample of the rows is taken again in the background, once the next estimate asks for it.
+         */
+        private Duration refreshInterval = Duration.ofMinutes(10);
+
+        /**
+         * Estimated counts below this number are counted exactly.
+         */
+        private long minEstimate = 1000;
+
+        /**
+         * Criteria matching fewer sampled rows than this number are counted exactly.
+         */
+        private int minSampledMatches = 30;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSampleSize() {
+            return sampleSize;
+        }
+
+        public void setSampleSize(int sampleSize) {
+            this.sampleSize = sampleSize;
+        }
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+
+        public long getMinEstimate() {
+            return minEstimate;
+        }
+
+        public void setMinEstimate(long minEstimate) {
+            this.minEstimate = minEstimate;
+        }
+
+        public int getMinSampledMatches() {
+            return minSampledMatches;
+        }
+
+        public void setMinSampledMatches(int minSampledMatches) {
+            this.minSampledMatches = minSampledMatches;
+        }
+    }
+
+    public static class Columnar {
+
+        /**
+         * Whether the player table is mirrored in memory, to answer the player criteria queries from columns.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Number of rows from which the columns are scanned in parallel.
+         */
+        private int parallelThreshold = 65536;
+
+        /**
+         * Whether selective filters are first evaluated with bitmap indexes of the columns.
+         */
+        private boolean bitmapIndexes = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getParallelThreshold() {
+            return parallelThreshold;
+        }
+
+        public void setParallelThreshold(int parallelThreshold) {
+            this.parallelThreshold = parallelThreshold;
+        }
+
+        public boolean isBitmapIndexes() {
+            return bitmapIndexes;
+        }
+
+        public void setBitmapIndexes(boolean bitmapIndexes) {
+            this.bitmapIndexes = bitmapIndexes;
+        }
+    }
+
+    public static class Leaderboard {
+
+        /**
+         * Whether the player leaderboards are kept in memory, rather than read from the database.
+         */
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Import {
+
+        /**
+         * Number of rows inserted per transaction.
+         */
+        private int batchSize = 1000;
+
+        /**
+         * Size of the chunks of the file parsed in parallel.
+         */
+        private DataSize chunkSize = DataSize.ofMegabytes(4);
+
+        /**
+         * Maximum number of rejected rows detailed in the import report.
+         */
+        private int maxReportedRejections = 100;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public DataSize getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(DataSize chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getMaxReportedRejections() {
+            return maxReportedRejections;
+        }
+
+        public void setMaxReportedRejections(int maxReportedRejections) {
+            this.maxReportedRejections = maxReportedRejections;
+        }
+    }
+
+    public static class Advisor {
+
+        /**
+         * Maximum number of criteria shapes whose executions are recorded, over all entities.
+         */
+        private int maxShapes = 1000;
+
+        /**
+         * Maximum number of columns of a recommended index.
+         */
+        private int maxIndexColumns = 3;
+
+        public int getMaxShapes() {
+            return maxShapes;
+        }
+
+        public void setMaxShapes(int maxShapes) {
+            this.maxShapes = maxShapes;
+        }
+
+        public int getMaxIndexColumns() {
+            return maxIndexColumns;
+        }
+
+        public void setMaxIndexColumns(int maxIndexColumns) {
+            this.maxIndexColumns = maxIndexColumns;
+        }
+    }
+
+    public static class Cache {
+
+        /**
+         * Tiers of the second-level cache regions and user caches, by cache name relative to the domain package, such as
+         * {@code Player} or {@code Team.players}, or by Spring cache name, such as {@code usersByLogin}. The caches not
+         * listed keep a single heap tier of {@code jhipster.cache.ehcache.max-entries} entries.
+         */
+        private final Map<String, Region> regions = new LinkedHashMap<>();
+
+        private final Sampling sampling = new Sampling();
+
+        private final Invalidation invalidation = new Invalidation();
+
+        public Map<String, Region> getRegions() {
+            return regions;
+        }
+
+        public Sampling getSampling() {
+            return sampling;
+        }
+
+        public Invalidation getInvalidation() {
+            return invalidation;
+        }
+
+        public static class Region {
+
+            /**
+             * Maximum number of entries of the heap tier, the most recently used ones.
+             */
+            private long heapEntries = 1000;
+
+            /**
+             * Size of the off-heap tier holding the entries evicted from the heap tier, in MB by default, none when zero.
+             */
+            @DataSizeUnit(DataUnit.MEGABYTES)
+            private DataSize offHeap = DataSize.ofBytes(0);
+
+            /**
+             * Time to live of an entry, in seconds, {@code jhipster.cache.ehcache.time-to-live-seconds} when not set.
+             */
+            private Long timeToLiveSeconds;
+
+            public long getHeapEntries() {
+                return heapEntries;
+            }
+
+            public void setHeapEntries(long heapEntries) {
+                this.heapEntries = heapEntries;
+            }
+
+            public DataSize getOffHeap() {
+                return offHeap;
+            }
+
+            public void setOffHeap(DataSize offHeap) {
+                this.offHeap = offHeap;
+            }
+
+            public Long getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(Long timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+        }
+
+        public static class Sampling {
+
+            /**
+             * Fraction of the cache keys whose accesses are sampled to compute the miss ratio curves of the caches, none
+             * when zero.
+             */
+            private double rate = 0.1;
+
+            /**
+             * Maximum number of sampled keys per cache: the sampling rate of a cache is lowered to stay under it.
+             */
+            private int maxKeys = 4096;
+
+            public double getRate() {
+                return rate;
+            }
+
+            public void setRate(double rate) {
+                this.rate = rate;
+            }
+
+            public int getMaxKeys() {
+                return maxKeys;
+            }
+
+            public void setMaxKeys(int maxKeys) {
+                this.maxKeys = maxKeys;
+            }
+        }
+
+        public static class Invalidation {
+
+            /**
+             * Broadcast the evictions of the second-level cache and user caches to the other instances, after commit.
+             */
+            private boolean enabled = false;
+
+            /**
+             * Maximum number of evictions sent at once.
+             */
+            private int batchSize = 256;
+
+            /**
+             * Maximum delay between a commit and the broadcast of its evictions.
+             */
+            private Duration flushInterval = Duration.ofMillis(20);
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public Duration getFlushInterval() {
+                return flushInterval;
+            }
+
+            public void setFlushInterval(Duration flushInterval) {
+                this.flushInterval = flushInterval;
+            }
+        }
+    }
+
+    public static class Warmup {
+
+        /**
+         * Replay the warm-up queries and loads once the application is started, before it reports itself ready.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Number of times every query is replayed.
+         */
+        private int rounds = 5;
+
+        /**
+         * Number of queries and loads run at the same time, at most the size of the connection pool.
+         */
+        private int parallelism = 4;
+
+        /**
+         * Maximum duration of the warm-up: the application reports itself ready after it, warmed up or not.
+         */
+        private Duration timeout = Duration.ofSeconds(60);
+
+        /**
+         * Maximum number of entities loaded by id per entity type, among the entities returned by the queries.
+         */
+        private int maxLoads = 1000;
+
+        /**
+         * Player criteria queries, as the query string of {@code GET /api/players}, for example
+         * {@code name.contains=a&sort=baskets,desc}.
+         */
+        private List<String> players = new ArrayList<>();
+
+        /**
+         * Team criteria queries, as the query string of {@code GET /api/teams}.
+         */
+        private List<String> teams = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getRounds() {
+            return rounds;
+        }
+
+        public void setRounds(int rounds) {
+            this.rounds = rounds;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public int getMaxLoads() {
+            return maxLoads;
+        }
+
+        public void setMaxLoads(int maxLoads) {
+            this.maxLoads = maxLoads;
+        }
+
+        public List<String> getPlayers() {
+            return players;
+        }
+
+        public void setPlayers(List<String> players) {
+            this.players = players;
+        }
+
+        public List<String> getTeams() {
+            return teams;
+        }
+
+        public void setTeams(List<String> teams) {
+            this.teams = teams;
+        }
+    }
+
+    public static class Threads {
+
+        /**
+         * Threads running the Spring MVC handlers, the {@code @Async} methods and the {@code @Scheduled} jobs.
+         */
+        private Mode mode = Mode.PLATFORM;
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public enum Mode {
+            /**
+             * The pooled threads of Undertow and of the Spring task executor and scheduler.
+             */
+            PLATFORM,
+            /**
+             * A new virtual thread per request and per task: the concurrency is only limited by the connection pool.
+             */
+            VIRTUAL,
+        }
+    }
     // jhipster-needle-application-properties-property-class
 }
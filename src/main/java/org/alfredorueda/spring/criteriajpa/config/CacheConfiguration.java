@@ -1,9 +1,13 @@
 package org.alfredorueda.spring.criteriajpa.config;
 
 import java.time.Duration;
+import java.util.Map;
+import org.alfredorueda.spring.criteriajpa.service.cache.CacheAccessSampler;
 import org.ehcache.config.builders.*;
+import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.jsr107.Eh107Configuration;
 import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
 import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
@@ -19,25 +23,60 @@ import tech.jhipster.config.cache.PrefixedKeyGenerator;
 @EnableCaching
 public class CacheConfiguration {
 
+    private static final String DOMAIN_PACKAGE = org.alfredorueda.spring.criteriajpa.domain.User.class.getPackageName() + ".";
+
     private GitProperties gitProperties;
     private BuildProperties buildProperties;
     private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
+    private final long timeToLiveSeconds;
+    private final ApplicationProperties.ResultCache resultCache;
+    private final Map<String, ApplicationProperties.Cache.Region> regions;
 
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         JHipsterProperties.Cache.Ehcache ehcache = jHipsterProperties.getCache().getEhcache();
 
-        jcacheConfiguration =
-            Eh107Configuration.fromEhcacheCacheConfiguration(
-                CacheConfigurationBuilder
-                    .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
-                    .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ehcache.getTimeToLiveSeconds())))
-                    .build()
-            );
+        jcacheConfiguration = jcacheConfiguration(ehcache.getMaxEntries(), ehcache.getTimeToLiveSeconds());
+        timeToLiveSeconds = ehcache.getTimeToLiveSeconds();
+        resultCache = applicationProperties.getResultCache();
+        regions = applicationProperties.getCache().getRegions();
+    }
+
+    private static javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration(long maxEntries, long timeToLiveSeconds) {
+        return Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(timeToLiveSeconds)))
+                .build()
+        );
+    }
+
+    /**
+     * A heap tier of the most recently used entries, backed by an off-heap tier which stores the other entries serialized
+     * outside of the garbage collected heap.
+     */
+    private javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration(ApplicationProperties.Cache.Region region) {
+        ResourcePoolsBuilder resourcePools = ResourcePoolsBuilder.heap(region.getHeapEntries());
+        long offHeapBytes = region.getOffHeap().toBytes();
+        CacheConfigurationBuilder<Object, Object> builder = CacheConfigurationBuilder.newCacheConfigurationBuilder(
+            Object.class,
+            Object.class,
+            offHeapBytes > 0 ? resourcePools.offheap(offHeapBytes, MemoryUnit.B) : resourcePools
+        );
+        if (offHeapBytes > 0) {
+            builder = builder.withKeySerializer(CacheEntrySerializer.class).withValueSerializer(CacheEntrySerializer.class);
+        }
+        long ttl = region.getTimeToLiveSeconds() != null ? region.getTimeToLiveSeconds() : timeToLiveSeconds;
+        return Eh107Configuration.fromEhcacheCacheConfiguration(
+            builder.withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ttl))).build()
+        );
     }
 
     @Bean
-    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager cacheManager) {
-        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager cacheManager, CacheAccessSampler sampler) {
+        return hibernateProperties -> {
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, new SampledJCacheRegionFactory(sampler));
+        };
     }
 
     @Bean
@@ -52,16 +91,37 @@ public class CacheConfiguration {
             createCache(cm, org.alfredorueda.spring.criteriajpa.domain.Team.class.getName());
             createCache(cm, org.alfredorueda.spring.criteriajpa.domain.Team.class.getName() + ".players");
             // jhipster-needle-ehcache-add-entry
+            createCache(
+                cm,
+                org.alfredorueda.spring.criteriajpa.service.PlayerQueryService.RESULTS_BY_CRITERIA_CACHE,
+                resultCache.getPlayers()
+            );
+            createCache(cm, org.alfredorueda.spring.criteriajpa.service.TeamQueryService.RESULTS_BY_CRITERIA_CACHE, resultCache.getTeams());
         };
     }
 
     private void createCache(javax.cache.CacheManager cm, String cacheName) {
+        String regionName = cacheName.startsWith(DOMAIN_PACKAGE) ? cacheName.substring(DOMAIN_PACKAGE.length()) : cacheName;
+        ApplicationProperties.Cache.Region region = regions.get(regionName);
+        createCache(cm, cacheName, region != null ? jcacheConfiguration(region) : jcacheConfiguration);
+    }
+
+    private void createCache(javax.cache.CacheManager cm, String cacheName, ApplicationProperties.ResultCache.Region region) {
+        createCache(cm, cacheName, jcacheConfiguration(region.getMaxEntries(), region.getTimeToLiveSeconds()));
+    }
+
+    private void createCache(
+        javax.cache.CacheManager cm,
+        String cacheName,
+        javax.cache.configuration.Configuration<Object, Object> configuration
+    ) {
         javax.cache.Cache<Object, Object> cache = cm.getCache(cacheName);
         if (cache != null) {
             cache.clear();
         } else {
-            cm.createCache(cacheName, jcacheConfiguration);
+            cm.createCache(cacheName, configuration);
         }
+        cm.enableStatistics(cacheName, true);
     }
 
     @Autowired(required = false)
@@ -0,0 +1,71 @@
+package org.alfredorueda.spring.criteriajpa.config;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.ehcache.impl.serialization.CompactJavaSerializer;
+import org.ehcache.spi.persistence.StateRepository;
+import org.ehcache.spi.serialization.SerializerException;
+import org.ehcache.spi.serialization.StatefulSerializer;
+
+/**
+ * Serializer of the keys and values stored in the off-heap tier of a cache.
+ * <p>
+ * The second-level cache keys are entity ids, with the {@code simple} Hibernate cache keys factory, and the user cache
+ * keys are logins and emails: longs and strings are written as a tag and their bytes. Other objects, such as the
+ * disassembled state of the entities, go through Java serialization with the class descriptors interned once per cache
+ * by {@link CompactJavaSerializer}, instead of being repeated in every entry.
+ */
+public class CacheEntrySerializer implements StatefulSerializer<Object> {
+
+    private static final byte LONG = 1;
+
+    private static final byte STRING = 2;
+
+    private static final byte OBJECT = 3;
+
+    private final CompactJavaSerializer<Object> objects;
+
+    public CacheEntrySerializer(ClassLoader classLoader) {
+        this.objects = new CompactJavaSerializer<>(classLoader);
+    }
+
+    @Override
+    public void init(StateRepository stateRepository) {
+        objects.init(stateRepository);
+    }
+
+    @Override
+    public ByteBuffer serialize(Object object) throws SerializerException {
+        if (object instanceof Long) {
+            return ByteBuffer.allocate(1 + Long.BYTES).put(LONG).putLong((Long) object).flip();
+        }
+        if (object instanceof String) {
+            byte[] bytes = ((String) object).getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(1 + bytes.length).put(STRING).put(bytes).flip();
+        }
+        ByteBuffer serialized = objects.serialize(object);
+        return ByteBuffer.allocate(1 + serialized.remaining()).put(OBJECT).put(serialized).flip();
+    }
+
+    @Override
+    public Object read(ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+        byte tag = binary.get();
+        switch (tag) {
+            case LONG:
+                return binary.getLong();
+            case STRING:
+                byte[] bytes = new byte[binary.remaining()];
+                binary.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            case OBJECT:
+                return objects.read(binary);
+            default:
+                throw new SerializerException("Unknown cache entry tag " + tag);
+        }
+    }
+
+    @Override
+    public boolean equals(Object object, ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+        return object.equals(read(binary));
+    }
+}
@@ -0,0 +1,41 @@
+package org.alfredorueda.spring.criteriajpa.config;
+
+import javax.cache.Cache;
+import org.alfredorueda.spring.criteriajpa.service.cache.CacheAccessSampler;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.jcache.internal.JCacheAccessImpl;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * The JCache region factory of Hibernate, recording the reads of the entity and collection regions in the
+ * {@link CacheAccessSampler}.
+ */
+public class SampledJCacheRegionFactory extends JCacheRegionFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient CacheAccessSampler sampler;
+
+    public SampledJCacheRegionFactory(CacheAccessSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(
+        DomainDataRegionConfig regionConfig,
+        DomainDataRegionBuildingContext buildingContext
+    ) {
+        Cache<Object, Object> cache = getOrCreateCache(regionConfig.getRegionName(), buildingContext.getSessionFactory());
+        String cacheName = cache.getName();
+        return new JCacheAccessImpl(cache) {
+            @Override
+            public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+                sampler.record(cacheName, key);
+                return super.getFromCache(key, session);
+            }
+        };
+    }
+}
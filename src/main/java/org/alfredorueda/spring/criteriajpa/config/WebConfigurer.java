@@ -5,9 +5,13 @@ import static java.net.URLDecoder.decode;
 import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PreDestroy;
 import javax.servlet.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
 import org.springframework.boot.web.server.*;
 import org.springframework.boot.web.servlet.ServletContextInitializer;
 import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
@@ -35,9 +39,14 @@ public class WebConfigurer implements ServletContextInitializer, WebServerFactor
 
     private final JHipsterProperties jHipsterProperties;
 
-    public WebConfigurer(Environment env, JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    private ExecutorService requestExecutor;
+
+    public WebConfigurer(Environment env, JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         this.env = env;
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
     }
 
     @Override
@@ -59,6 +68,7 @@ public class WebConfigurer implements ServletContextInitializer, WebServerFactor
     public void customize(WebServerFactory server) {
         // When running in an IDE or with ./mvnw spring-boot:run, set location of the static web assets.
         setLocationForStaticAssets(server);
+        setExecutorForRequests(server);
     }
 
     private void setLocationForStaticAssets(WebServerFactory server) {
@@ -73,6 +83,37 @@ public class WebConfigurer implements ServletContextInitializer, WebServerFactor
         }
     }
 
+    /**
+     * In the virtual thread mode, dispatch the servlet requests from the Undertow I/O threads to a new virtual thread each,
+     * instead of the worker pool: the requests blocked on the database then wait for a connection of the pool instead of a
+     * worker thread.
+     */
+    private void setExecutorForRequests(WebServerFactory server) {
+        if (
+            applicationProperties.getThreads().getMode() == ApplicationProperties.Threads.Mode.VIRTUAL &&
+            server instanceof UndertowServletWebServerFactory
+        ) {
+            log.info("Running the servlet requests on virtual threads");
+            ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("undertow-virtual-", 0).factory());
+            requestExecutor = executor;
+            ((UndertowServletWebServerFactory) server).addDeploymentInfoCustomizers(deploymentInfo ->
+                    deploymentInfo.setExecutor(executor).setAsyncExecutor(executor)
+                );
+        }
+    }
+
+    /**
+     * Close the executor of the servlet requests, if any, once the web server is stopped: waits for the requests still
+     * running on it.
+     */
+    @PreDestroy
+    public void closeExecutorForRequests() {
+        if (requestExecutor != null) {
+            log.debug("Closing the executor of the servlet requests");
+            requestExecutor.close();
+        }
+    }
+
     /**
      * Resolve path prefix to static resources.
      */
@@ -0,0 +1,49 @@
+package org.alfredorueda.spring.criteriajpa.management;
+
+import org.alfredorueda.spring.criteriajpa.service.cache.CacheAccessSampler;
+import org.alfredorueda.spring.criteriajpa.service.cache.CacheSizingAdvisor;
+import org.alfredorueda.spring.criteriajpa.service.dto.CacheSizingReport;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint of the {@link CacheSizingAdvisor}:
+ * <ul>
+ *     <li>{@code GET /management/cachesizing?hitRatio=0.9} reports the miss ratio curves of the sampled caches and the
+ *     number of entries reaching the hit ratio, 0.9 by default;</li>
+ *     <li>{@code DELETE /management/cachesizing} forgets the sampled reads.</li>
+ * </ul>
+ */
+@Component
+@Endpoint(id = "cachesizing")
+public class CacheSizingEndpoint {
+
+    private static final double DEFAULT_HIT_RATIO = 0.9;
+
+    private final CacheSizingAdvisor cacheSizingAdvisor;
+
+    private final CacheAccessSampler cacheAccessSampler;
+
+    public CacheSizingEndpoint(CacheSizingAdvisor cacheSizingAdvisor, CacheAccessSampler cacheAccessSampler) {
+        this.cacheSizingAdvisor = cacheSizingAdvisor;
+        this.cacheAccessSampler = cacheAccessSampler;
+    }
+
+    @ReadOperation
+    public CacheSizingReport report(@Nullable Double hitRatio) {
+        double target = hitRatio != null ? hitRatio : DEFAULT_HIT_RATIO;
+        if (!(target > 0 && target <= 1)) {
+            throw new InvalidEndpointRequestException("hitRatio must be in (0, 1]: " + hitRatio, "Invalid hitRatio");
+        }
+        return cacheSizingAdvisor.advise(target);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        cacheAccessSampler.reset();
+    }
+}
@@ -0,0 +1,65 @@
+package org.alfredorueda.spring.criteriajpa.management;
+
+import java.nio.file.Paths;
+import org.alfredorueda.spring.criteriajpa.service.dto.ImportReport;
+import org.alfredorueda.spring.criteriajpa.service.importer.CsvImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Command line mode of the {@link CsvImportService}: when started with {@code --import-teams=<file>} and/or
+ * {@code --import-players=<file>}, the application imports the teams, then the players, and exits. The exit code is
+ * {@code 1} if any row was rejected.
+ * <p>
+ * The web context is still started, add {@code --server.port=0} to run next to a running instance.
+ */
+@Component
+public class ImportApplicationRunner implements ApplicationRunner {
+
+    public static final String IMPORT_TEAMS_OPTION = "import-teams";
+
+    public static final String IMPORT_PLAYERS_OPTION = "import-players";
+
+    private final Logger log = LoggerFactory.getLogger(ImportApplicationRunner.class);
+
+    private final CsvImportService csvImportService;
+
+    private final ApplicationContext applicationContext;
+
+    public ImportApplicationRunner(CsvImportService csvImportService, ApplicationContext applicationContext) {
+        this.csvImportService = csvImportService;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!args.containsOption(IMPORT_TEAMS_OPTION) && !args.containsOption(IMPORT_PLAYERS_OPTION)) {
+            return;
+        }
+        long rejected = 0;
+        if (args.containsOption(IMPORT_TEAMS_OPTION)) {
+            for (String path : args.getOptionValues(IMPORT_TEAMS_OPTION)) {
+                rejected += report(csvImportService.importTeams(Paths.get(path)));
+            }
+        }
+        if (args.containsOption(IMPORT_PLAYERS_OPTION)) {
+            for (String path : args.getOptionValues(IMPORT_PLAYERS_OPTION)) {
+                rejected += report(csvImportService.importPlayers(Paths.get(path)));
+            }
+        }
+        int exitCode = rejected > 0 ? 1 : 0;
+        System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+    }
+
+    private long report(ImportReport report) {
+        report
+            .getRejections()
+            .forEach(rejection -> log.warn("Rejected {} line {}: {}", report.getEntity(), rejection.getLine(), rejection.getReason()));
+        return report.getRejected();
+    }
+}
@@ -0,0 +1,45 @@
+package org.alfredorueda.spring.criteriajpa.management;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import org.alfredorueda.spring.criteriajpa.service.dto.ImportReport;
+import org.alfredorueda.spring.criteriajpa.service.importer.CsvImportService;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint importing a CSV file of the server with the {@link CsvImportService}:
+ * {@code POST /management/import/{players|teams}} with a {@code {"path": "..."}} body.
+ */
+@Component
+@Endpoint(id = "import")
+public class ImportEndpoint {
+
+    private final CsvImportService csvImportService;
+
+    public ImportEndpoint(CsvImportService csvImportService) {
+        this.csvImportService = csvImportService;
+    }
+
+    @WriteOperation
+    public ImportReport importFile(@Selector String entity, String path) throws IOException {
+        try {
+            switch (entity) {
+                case "players":
+                    return csvImportService.importPlayers(Paths.get(path));
+                case "teams":
+                    return csvImportService.importTeams(Paths.get(path));
+                default:
+                    throw new InvalidEndpointRequestException("Unsupported entity: " + entity, "Unsupported entity");
+            }
+        } catch (NoSuchFileException e) {
+            throw new InvalidEndpointRequestException("No such file: " + path, "No such file");
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+}
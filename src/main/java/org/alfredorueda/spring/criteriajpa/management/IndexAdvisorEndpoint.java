@@ -0,0 +1,62 @@
+package org.alfredorueda.spring.criteriajpa.management;
+
+import org.alfredorueda.spring.criteriajpa.service.advisor.IndexAdvisor;
+import org.alfredorueda.spring.criteriajpa.service.advisor.QueryWorkload;
+import org.alfredorueda.spring.criteriajpa.service.dto.IndexAdvisorReport;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint of the {@link IndexAdvisor}:
+ * <ul>
+ *     <li>{@code GET /management/indexadvisor} reports the recorded criteria queries and the recommended indexes;</li>
+ *     <li>{@code GET /management/indexadvisor/liquibase} writes the recommended indexes as a Liquibase changelog;</li>
+ *     <li>{@code POST /management/indexadvisor} verifies that the recommended indexes are used by the H2 query plans;</li>
+ *     <li>{@code DELETE /management/indexadvisor} forgets the recorded queries.</li>
+ * </ul>
+ */
+@Component
+@Endpoint(id = "indexadvisor")
+public class IndexAdvisorEndpoint {
+
+    private final IndexAdvisor indexAdvisor;
+
+    private final QueryWorkload queryWorkload;
+
+    public IndexAdvisorEndpoint(IndexAdvisor indexAdvisor, QueryWorkload queryWorkload) {
+        this.indexAdvisor = indexAdvisor;
+        this.queryWorkload = queryWorkload;
+    }
+
+    @ReadOperation
+    public IndexAdvisorReport report() {
+        return indexAdvisor.advise();
+    }
+
+    @ReadOperation(produces = "application/xml")
+    public String changelog(@Selector String format) {
+        if (!"liquibase".equals(format)) {
+            throw new InvalidEndpointRequestException("Unsupported format: " + format, "Unsupported format");
+        }
+        return indexAdvisor.changelog();
+    }
+
+    @WriteOperation
+    public IndexAdvisorReport verify() {
+        try {
+            return indexAdvisor.verify();
+        } catch (IllegalStateException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+
+    @DeleteOperation
+    public void reset() {
+        queryWorkload.reset();
+    }
+}
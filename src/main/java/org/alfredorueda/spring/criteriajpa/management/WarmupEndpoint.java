@@ -0,0 +1,36 @@
+package org.alfredorueda.spring.criteriajpa.management;
+
+import org.alfredorueda.spring.criteriajpa.service.dto.WarmupReport;
+import org.alfredorueda.spring.criteriajpa.service.warmup.WarmupService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint of the {@link WarmupService}:
+ * <ul>
+ *     <li>{@code GET /management/warmup} reports the timing of the last warm-up, 404 if the application was not warmed up;</li>
+ *     <li>{@code POST /management/warmup} warms the application up again, for example after its caches were cleared.</li>
+ * </ul>
+ */
+@Component
+@Endpoint(id = "warmup")
+public class WarmupEndpoint {
+
+    private final WarmupService warmupService;
+
+    public WarmupEndpoint(WarmupService warmupService) {
+        this.warmupService = warmupService;
+    }
+
+    @ReadOperation
+    public WarmupReport report() {
+        return warmupService.getLastReport();
+    }
+
+    @WriteOperation
+    public WarmupReport warmUp() {
+        return warmupService.warmUp();
+    }
+}
@@ -0,0 +1,922 @@
+package org.alfredorueda.spring.criteriajpa.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.criteria.Subquery;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.alfredorueda.spring.criteriajpa.service.advisor.QueryWorkload;
+import org.alfredorueda.spring.criteriajpa.service.cache.QueryResultCache;
+import org.alfredorueda.spring.criteriajpa.service.criteria.FetchPlan;
+import org.alfredorueda.spring.criteriajpa.service.criteria.KeysetCursor;
+import org.alfredorueda.spring.criteriajpa.service.dto.KeysetSlice;
+import org.alfredorueda.spring.criteriajpa.service.estimate.CountEstimator;
+import org.alfredorueda.spring.criteriajpa.service.plan.QueryPlan;
+import org.alfredorueda.spring.criteriajpa.service.plan.QueryPlanBuilder;
+import org.alfredorueda.spring.criteriajpa.service.plan.QueryPlanCache;
+import org.hibernate.CacheMode;
+import org.hibernate.MultiIdentifierLoadAccess;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.graph.RootGraph;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import tech.jhipster.service.Criteria;
+import tech.jhipster.service.QueryService;
+import tech.jhipster.service.filter.RangeFilter;
+
+/**
+ * Base class for the criteria query services, adding query strategies which need direct access to the
+ * {@link EntityManager} on top of the {@link Specification} builders of {@link QueryService}.
+ * <p>
+ * The list, page and count queries go through a {@link QueryPlan} cached by criteria shape: the JPQL of a shape is
+ * generated once by {@link #createQueryPlan}, later criteria of the same shape only bind their values. Their executions
+ * are recorded in the {@link QueryWorkload}, by shape and sort.
+ * <p>
+ * Selected fields of the matching entities can be read as tuples instead, without loading the entities. Associations can
+ * be loaded together with the entities by a {@link FetchPlan}, with a constant number of queries per page.
+ * <p>
+ * Their results can also be kept in a {@link QueryResultCache}: only the ids of the matching entities are cached, the
+ * entities themselves are read by id, from the second-level cache when they are in it.
+ */
+@Transactional(readOnly = true)
+public abstract class AbstractCriteriaQueryService<ENTITY, CRITERIA extends Criteria> extends QueryService<ENTITY> {
+
+    protected static final String ID = "id";
+
+    /**
+     * Number of random ids read per query by {@link #sampleByRandomIds}.
+     */
+    private static final int SAMPLE_BATCH_SIZE = 1000;
+
+    /**
+     * Maximum number of rounds of random ids drawn by {@link #sampleByRandomIds}.
+     */
+    private static final int SAMPLE_ROUNDS = 4;
+
+    /**
+     * Maximum number of random ids drawn per round by {@link #sampleByRandomIds}, per entity to sample.
+     */
+    private static final long SAMPLE_ROUND_FACTOR = 4;
+
+    protected final EntityManager entityManager;
+
+    private final Class<ENTITY> entityClass;
+
+    private final QueryPlanCache<CRITERIA> queryPlanCache;
+
+    private final QueryResultCache queryResultCache;
+
+    private final String resultCacheName;
+
+    private final QueryWorkload queryWorkload;
+
+    protected AbstractCriteriaQueryService(
+        EntityManager entityManager,
+        Class<ENTITY> entityClass,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry,
+        QueryResultCache queryResultCache,
+        String resultCacheName,
+        QueryWorkload queryWorkload
+    ) {
+        this.entityManager = entityManager;
+        this.entityClass = entityClass;
+        this.queryPlanCache =
+            new QueryPlanCache<>(entityClass.getSimpleName(), applicationProperties.getQuery().getPlanCacheSize(), meterRegistry);
+        this.queryResultCache = queryResultCache;
+        this.resultCacheName = resultCacheName;
+        this.queryWorkload = queryWorkload;
+    }
+
+    /**
+     * Describe the filters of the criteria to the query plan builder, the same way as its {@link Specification} does.
+     * <p>
+     * The root entity is aliased {@code e}. Filters of the same type must always be described in the same order.
+     *
+     * @param criteria the criteria, may be null.
+     * @param plan the builder.
+     */
+    protected abstract void createQueryPlan(CRITERIA criteria, QueryPlanBuilder<CRITERIA> plan);
+
+    /**
+     * Build a specification matching the entities with an element of a to-many association matching a filter, through
+     * {@code EXISTS} subqueries instead of a join, so that each entity is selected and counted once. The filter follows
+     * the same rules as {@link #buildSpecification(RangeFilter, java.util.function.Function)} on a join of the association,
+     * its {@code specified} operator telling if the entity has any element at all.
+     * <p>
+     * The query plan counterpart is {@link QueryPlanBuilder#exists}.
+     *
+     * @param filter the filter of the elements.
+     * @param elementClass the class of the elements.
+     * @param owner the attribute of the element referencing the entity.
+     * @param attribute the filtered attribute of the element.
+     * @param <E> the type of the elements.
+     * @param <X> the type of the filtered attribute.
+     * @return the specification.
+     */
+    protected <E, X extends Comparable<? super X>> Specification<ENTITY> buildExistsSpecification(
+        RangeFilter<X> filter,
+        Class<E> elementClass,
+        SingularAttribute<? super E, ? super ENTITY> owner,
+        SingularAttribute<? super E, X> attribute
+    ) {
+        RangeFilter<X> values = filter.copy();
+        values.setSpecified(null);
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (Boolean.FALSE.equals(filter.getSpecified())) {
+                Subquery<Integer> any = query.subquery(Integer.class);
+                Root<E> element = any.from(elementClass);
+                any.select(cb.literal(1)).where(cb.equal(element.get(owner), root));
+                predicates.add(cb.not(cb.exists(any)));
+            }
+            Subquery<Integer> matching = query.subquery(Integer.class);
+            Root<E> element = matching.from(elementClass);
+            Predicate matches = buildSpecification(values, ignored -> element.get(attribute)).toPredicate(root, query, cb);
+            if (matches != null || Boolean.TRUE.equals(filter.getSpecified())) {
+                Predicate correlation = cb.equal(element.get(owner), root);
+                matching.select(cb.literal(1)).where(matches != null ? cb.and(correlation, matches) : correlation);
+                predicates.add(cb.exists(matching));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Read all the entities matching the criteria through its cached query plan.
+     *
+     * @param criteria the filters the entities should match.
+     * @param fetch the associations to load with the entities.
+     * @return the matching entities.
+     */
+    protected List<ENTITY> findAll(CRITERIA criteria, FetchPlan fetch) {
+        QueryPlan<CRITERIA> plan = queryPlan(criteria);
+        TypedQuery<ENTITY> query = withFetchGraph(plan.createSelectQuery(entityManager, entityClass, criteria, ""), fetch);
+        return fetchCollections(recorded(plan, Sort.unsorted(), query::getResultList), fetch);
+    }
+
+    /**
+     * Read one page of the entities matching the criteria through its cached query plan. The matching entities are only
+     * counted when the page doesn't tell their number.
+     *
+     * @param criteria the filters the entities should match.
+     * @param page the page to read, its sort must be {@link #isQueryPlanSort supported}.
+     * @param fetch the associations to load with the entities.
+     * @return the page.
+     */
+    protected Page<ENTITY> findPage(CRITERIA criteria, Pageable page, FetchPlan fetch) {
+        QueryPlan<CRITERIA> plan = queryPlan(criteria);
+        TypedQuery<ENTITY> query = withFetchGraph(
+            plan.createSelectQuery(entityManager, entityClass, criteria, orderBy(page.getSort())),
+            fetch
+        );
+        if (page.isUnpaged()) {
+            List<ENTITY> content = fetchCollections(recorded(plan, page.getSort(), query::getResultList), fetch);
+            return PageableExecutionUtils.getPage(content, page, () -> 0L);
+        }
+        query.setFirstResult((int) page.getOffset()).setMaxResults(page.getPageSize());
+        List<ENTITY> content = fetchCollections(recorded(plan, page.getSort(), query::getResultList), fetch);
+        return PageableExecutionUtils.getPage(
+            content,
+            page,
+            () -> recorded(plan, Sort.unsorted(), () -> plan.createCountQuery(entityManager, criteria).getSingleResult())
+        );
+    }
+
+    /**
+     * Read one page of the entities matching the criteria through its cached query plan, without counting them.
+     *
+     * @param criteria the filters the entities should match.
+     * @param page the page to read, its sort must be {@link #isQueryPlanSort supported}.
+     * @param fetch the associations to load with the entities.
+     * @return the rows of the page.
+     */
+    protected Slice<ENTITY> findSlice(CRITERIA criteria, Pageable page, FetchPlan fetch) {
+        QueryPlan<CRITERIA> plan = queryPlan(criteria);
+        TypedQuery<ENTITY> query = withFetchGraph(
+            plan.createSelectQuery(entityManager, entityClass, criteria, orderBy(page.getSort())),
+            fetch
+        );
+        return recorded(plan, page.getSort(), () -> slice(query, page, fetch));
+    }
+
+    /**
+     * Count the entities matching the criteria through its cached query plan.
+     *
+     * @param criteria the filters the entities should match.
+     * @return the number of matching entities.
+     */
+    protected long count(CRITERIA criteria) {
+        QueryPlan<CRITERIA> plan = queryPlan(criteria);
+        return recorded(plan, Sort.unsorted(), () -> plan.createCountQuery(entityManager, criteria).getSingleResult());
+    }
+
+    /**
+     * Tell if the sort can be applied to a query plan: only basic attributes of the entity, without case or null
+     * handling, are supported. Other sorts must go through the {@link Specification}.
+     *
+     * @param sort the sort.
+     * @return true if the sort is supported.
+     */
+    protected boolean isQueryPlanSort(Sort sort) {
+        for (Sort.Order order : sort) {
+            if (order.isIgnoreCase() || order.getNullHandling() != Sort.NullHandling.NATIVE || !isBasicAttribute(order.getProperty())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the entities matching the criteria from the result cache, or load them.
+     *
+     * @param criteria the filters the entities should match.
+     * @param fetch the associations to load with the entities.
+     * @param dependencies the entity classes the result depends on.
+     * @param loader the function loading the entities.
+     * @return the matching entities.
+     */
+    protected List<ENTITY> cachedList(
+        CRITERIA criteria,
+        FetchPlan fetch,
+        Collection<Class<?>> dependencies,
+        Supplier<List<ENTITY>> loader
+    ) {
+        List<Object> ids = queryResultCache.get(resultCacheName, resultKey("list", criteria, null), dependencies, () -> ids(loader.get()));
+        return findAllById(ids, fetch);
+    }
+
+    /**
+     * Get a page of the entities matching the criteria from the result cache, or load it.
+     *
+     * @param criteria the filters the entities should match.
+     * @param page the page.
+     * @param fetch the associations to load with the entities.
+     * @param dependencies the entity classes the result depends on.
+     * @param loader the function loading the page.
+     * @return the page.
+     */
+    protected Page<ENTITY> cachedPage(
+        CRITERIA criteria,
+        Pageable page,
+        FetchPlan fetch,
+        Collection<Class<?>> dependencies,
+        Supplier<Page<ENTITY>> loader
+    ) {
+        CachedPage cached = queryResultCache.get(
+            resultCacheName,
+            resultKey("page", criteria, page),
+            dependencies,
+            () -> {
+                Page<ENTITY> result = loader.get();
+                return new CachedPage(ids(result.getContent()), result.getTotalElements(), result.hasNext());
+            }
+        );
+        return new PageImpl<>(findAllById(cached.ids, fetch), page, cached.total);
+    }
+
+    /**
+     * Get a slice of the entities matching the criteria from the result cache, or load it.
+     *
+     * @param criteria the filters the entities should match.
+     * @param page the page.
+     * @param fetch the associations to load with the entities.
+     * @param dependencies the entity classes the result depends on.
+     * @param loader the function loading the slice.
+     * @return the slice.
+     */
+    protected Slice<ENTITY> cachedSlice(
+        CRITERIA criteria,
+        Pageable page,
+        FetchPlan fetch,
+        Collection<Class<?>> dependencies,
+        Supplier<Slice<ENTITY>> loader
+    ) {
+        CachedPage cached = queryResultCache.get(
+            resultCacheName,
+            resultKey("slice", criteria, page),
+            dependencies,
+            () -> {
+                Slice<ENTITY> result = loader.get();
+                return new CachedPage(ids(result.getContent()), -1, result.hasNext());
+            }
+        );
+        return new SliceImpl<>(findAllById(cached.ids, fetch), page, cached.hasNext);
+    }
+
+    /**
+     * Get the number of entities matching the criteria from the result cache, or count them.
+     *
+     * @param criteria the filters the entities should match.
+     * @param dependencies the entity classes the result depends on.
+     * @param loader the function counting the entities.
+     * @return the number of matching entities.
+     */
+    protected long cachedCount(CRITERIA criteria, Collection<Class<?>> dependencies, Supplier<Long> loader) {
+        return queryResultCache.get(resultCacheName, resultKey("count", criteria, null), dependencies, loader);
+    }
+
+    private static List<Object> resultKey(String query, Criteria criteria, Pageable page) {
+        return Arrays.asList(query, criteria != null ? criteria.copy() : null, page);
+    }
+
+    private List<Object> ids(List<ENTITY> entities) {
+        List<Object> ids = new ArrayList<>(entities.size());
+        for (ENTITY entity : entities) {
+            ids.add(entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity));
+        }
+        return ids;
+    }
+
+    /**
+     * Load the entities with the given ids, in the same order, through the persistence context and the second level cache.
+     * Ids of deleted entities are skipped.
+     * <p>
+     * The entities found in neither are read by batches of ids, rather than by one select per entity.
+     *
+     * @param ids the ids of the entities.
+     * @param fetch the associations to load with the entities.
+     * @return the entities.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<ENTITY> findAllById(List<?> ids, FetchPlan fetch) {
+        MultiIdentifierLoadAccess<ENTITY> load = entityManager
+            .unwrap(Session.class)
+            .byMultipleIds(entityClass)
+            .enableSessionCheck(true)
+            .with(CacheMode.NORMAL);
+        if (!fetch.getJoins().isEmpty()) {
+            load.with((RootGraph<ENTITY>) fetchGraph(fetch), GraphSemantic.FETCH);
+        }
+        List<ENTITY> entities = new ArrayList<>(ids.size());
+        for (ENTITY entity : load.multiLoad((List<Serializable>) ids)) {
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return fetchCollections(entities, fetch);
+    }
+
+    /**
+     * Check the associations to load together with the entities.
+     *
+     * @param include the names of the associations, may be null.
+     * @return the plan fetch joining the to-one associations and initializing the collections.
+     * @throws IllegalArgumentException if a name is not an association of the entity.
+     */
+    public FetchPlan fetchPlan(Collection<String> include) {
+        if (include == null || include.isEmpty()) {
+            return FetchPlan.NONE;
+        }
+        EntityType<ENTITY> entity = entityManager.getMetamodel().entity(entityClass);
+        List<String> joins = new ArrayList<>();
+        List<String> collections = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(include)) {
+            Attribute<? super ENTITY, ?> attribute;
+            try {
+                attribute = entity.getAttribute(name);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown association: " + name, e);
+            }
+            if (!attribute.isAssociation()) {
+                throw new IllegalArgumentException("Not an association: " + name);
+            }
+            (attribute.isCollection() ? collections : joins).add(name);
+        }
+        return new FetchPlan(joins, collections);
+    }
+
+    /**
+     * Fetch join the to-one associations of the plan to the entities selected by a specification. Count queries, such as
+     * the one of a {@link Page}, are left untouched.
+     *
+     * @param fetch the associations to load with the entities.
+     * @return the specification, which matches all the entities.
+     */
+    protected Specification<ENTITY> fetchJoins(FetchPlan fetch) {
+        return (root, query, cb) -> {
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                fetch.getJoins().forEach(join -> root.fetch(join, JoinType.LEFT));
+            }
+            return null;
+        };
+    }
+
+    private EntityGraph<ENTITY> fetchGraph(FetchPlan fetch) {
+        EntityGraph<ENTITY> graph = entityManager.createEntityGraph(entityClass);
+        fetch.getJoins().forEach(graph::addAttributeNodes);
+        return graph;
+    }
+
+    private TypedQuery<ENTITY> withFetchGraph(TypedQuery<ENTITY> query, FetchPlan fetch) {
+        if (!fetch.getJoins().isEmpty()) {
+            query.setHint(QueryHints.HINT_FETCHGRAPH, fetchGraph(fetch));
+        }
+        return query;
+    }
+
+    /**
+     * Initialize the collections of the plan for all the entities at once, by one query per collection fetch joining it
+     * to the entities which don't have it loaded yet.
+     */
+    private List<ENTITY> fetchCollections(List<ENTITY> entities, FetchPlan fetch) {
+        PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        String entityName = entityManager.getMetamodel().entity(entityClass).getName();
+        for (String collection : fetch.getCollections()) {
+            List<Object> ids = entities
+                .stream()
+                .filter(entity -> !util.isLoaded(entity, collection))
+                .map(util::getIdentifier)
+                .collect(Collectors.toList());
+            if (!ids.isEmpty()) {
+                entityManager
+                    .createQuery(
+                        "select distinct e from " + entityName + " e left join fetch e." + collection + " where e.id in :ids",
+                        entityClass
+                    )
+                    .setParameter("ids", ids)
+                    .getResultList();
+            }
+        }
+        return entities;
+    }
+
+    private QueryPlan<CRITERIA> queryPlan(CRITERIA criteria) {
+        return queryPlanCache.get(criteria, this::createQueryPlan);
+    }
+
+    private <T> T recorded(QueryPlan<CRITERIA> plan, Sort sort, Supplier<T> query) {
+        long start = System.nanoTime();
+        try {
+            return query.get();
+        } finally {
+            queryWorkload.record(entityClass, plan.getShape(), sort, System.nanoTime() - start);
+        }
+    }
+
+    private boolean isBasicAttribute(String property) {
+        try {
+            return (
+                entityManager.getMetamodel().entity(entityClass).getSingularAttribute(property).getPersistentAttributeType() ==
+                Attribute.PersistentAttributeType.BASIC
+            );
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String orderBy(Sort sort) {
+        if (sort.isUnsorted()) {
+            return "";
+        }
+        return sort
+            .stream()
+            .map(order -> "e." + order.getProperty() + (order.isAscending() ? " asc" : " desc"))
+            .collect(Collectors.joining(", ", " order by ", ""));
+    }
+
+    /**
+     * Read one page of an offset paginated result, without counting the matching rows.
+     * <p>
+     * One more row than the page size is read to know if there is a next page.
+     *
+     * @param specification the filters the rows should match.
+     * @param page the page to read.
+     * @param fetch the associations to load with the rows.
+     * @return the rows of the page.
+     */
+    protected Slice<ENTITY> findSlice(Specification<ENTITY> specification, Pageable page, FetchPlan fetch) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ENTITY> query = cb.createQuery(entityClass);
+        Root<ENTITY> root = query.from(entityClass);
+        Predicate predicate = specification.and(fetchJoins(fetch)).toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (page.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(page.getSort(), root, cb));
+        }
+
+        return slice(entityManager.createQuery(query), page, fetch);
+    }
+
+    private Slice<ENTITY> slice(TypedQuery<ENTITY> query, Pageable page, FetchPlan fetch) {
+        if (page.isUnpaged()) {
+            return new SliceImpl<>(fetchCollections(query.getResultList(), fetch), page, false);
+        }
+        query.setFirstResult((int) page.getOffset()).setMaxResults(page.getPageSize() + 1);
+        List<ENTITY> rows = fetchCollections(query.getResultList(), fetch);
+        if (rows.size() <= page.getPageSize()) {
+            return new SliceImpl<>(rows, page, false);
+        }
+        return new SliceImpl<>(new ArrayList<>(rows.subList(0, page.getPageSize())), page, true);
+    }
+
+    /**
+     * Read one page of some fields of the entities matching the specification.
+     * <p>
+     * Only the columns of the fields are selected, by a tuple query: no entity is loaded, so the persistence context
+     * keeps no snapshot and no association is fetched. A to-one association is only joined when one of its fields
+     * other than its id is requested, its id being read from the foreign key.
+     *
+     * @param specification the filters the entities should match.
+     * @param fields the fields to read: basic attributes of the entity, or of a to-one association such as {@code team.name}.
+     *               Duplicates are ignored.
+     * @param page the page to read.
+     * @param total the function counting the matching entities, called only when the page doesn't tell their number.
+     * @return the page, with one map from field to value per entity. The fields of an association are nested in a map,
+     * which is null when all of them are, as they are when the association is null.
+     * @throws IllegalArgumentException if a field is not a basic attribute of the entity or of a to-one association.
+     */
+    protected Page<Map<String, Object>> findFields(
+        Specification<ENTITY> specification,
+        Collection<String> fields,
+        Pageable page,
+        LongSupplier total
+    ) {
+        List<String> distinctFields = List.copyOf(new LinkedHashSet<>(fields));
+        TypedQuery<Tuple> query = createFieldQuery(specification, distinctFields, page.getSort());
+        if (page.isPaged()) {
+            query.setFirstResult((int) page.getOffset()).setMaxResults(page.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(toFieldMaps(query.getResultList(), distinctFields), page, total);
+    }
+
+    /**
+     * Read one page of some fields of the entities matching the specification, like {@link #findFields}, without
+     * counting them.
+     *
+     * @param specification the filters the entities should match.
+     * @param fields the fields to read.
+     * @param page the page to read.
+     * @return the rows of the page.
+     * @throws IllegalArgumentException if a field is not a basic attribute of the entity or of a to-one association.
+     */
+    protected Slice<Map<String, Object>> findFieldSlice(Specification<ENTITY> specification, Collection<String> fields, Pageable page) {
+        List<String> distinctFields = List.copyOf(new LinkedHashSet<>(fields));
+        TypedQuery<Tuple> query = createFieldQuery(specification, distinctFields, page.getSort());
+        if (page.isUnpaged()) {
+            return new SliceImpl<>(toFieldMaps(query.getResultList(), distinctFields), page, false);
+        }
+        List<Tuple> rows = query.setFirstResult((int) page.getOffset()).setMaxResults(page.getPageSize() + 1).getResultList();
+        boolean hasNext = rows.size() > page.getPageSize();
+        return new SliceImpl<>(toFieldMaps(hasNext ? rows.subList(0, page.getPageSize()) : rows, distinctFields), page, hasNext);
+    }
+
+    private TypedQuery<Tuple> createFieldQuery(Specification<ENTITY> specification, List<String> fields, Sort sort) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("No field requested");
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<ENTITY> root = query.from(entityClass);
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        List<Selection<?>> selections = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            selections.add(field(root, field));
+        }
+        query.multiselect(selections);
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return entityManager.createQuery(query);
+    }
+
+    /**
+     * The path of a field, reusing the left join of the association made by the filters if any.
+     */
+    private Path<?> field(Root<ENTITY> root, String field) {
+        EntityType<ENTITY> entity = entityManager.getMetamodel().entity(entityClass);
+        String[] properties = field.split("\\.", -1);
+        SingularAttribute<? super ENTITY, ?> attribute = singularAttribute(entity, properties[0], field);
+        if (properties.length == 1 && attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC) {
+            return root.get(attribute.getName());
+        }
+        boolean association =
+            attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.MANY_TO_ONE ||
+            attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.ONE_TO_ONE;
+        if (properties.length != 2 || !association) {
+            throw new IllegalArgumentException("Unsupported field: " + field);
+        }
+        EntityType<?> target = entityManager.getMetamodel().entity(attribute.getJavaType());
+        SingularAttribute<?, ?> targetAttribute = singularAttribute(target, properties[1], field);
+        if (targetAttribute.getPersistentAttributeType() != Attribute.PersistentAttributeType.BASIC) {
+            throw new IllegalArgumentException("Unsupported field: " + field);
+        }
+        if (targetAttribute.isId()) {
+            return root.get(attribute.getName()).get(targetAttribute.getName());
+        }
+        From<?, ?> join = root
+            .getJoins()
+            .stream()
+            .filter(j -> j.getAttribute().getName().equals(attribute.getName()) && j.getJoinType() == JoinType.LEFT)
+            .findFirst()
+            .orElseGet(() -> root.join(attribute.getName(), JoinType.LEFT));
+        return join.get(targetAttribute.getName());
+    }
+
+    private static <X> SingularAttribute<? super X, ?> singularAttribute(EntityType<X> entity, String property, String field) {
+        try {
+            return entity.getSingularAttribute(property);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown field: " + field, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> toFieldMaps(List<Tuple> rows, List<String> fields) {
+        List<Map<String, Object>> maps = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                String field = fields.get(i);
+                int dot = field.indexOf('.');
+                if (dot < 0) {
+                    map.put(field, row.get(i));
+                } else {
+                    Map<String, Object> association = (Map<String, Object>) map.computeIfAbsent(
+                        field.substring(0, dot),
+                        key -> new LinkedHashMap<>()
+                    );
+                    association.put(field.substring(dot + 1), row.get(i));
+                }
+            }
+            // a null association is read as null fields
+            map.replaceAll((key, value) ->
+                value instanceof Map && ((Map<String, Object>) value).values().stream().allMatch(Objects::isNull) ? null : value
+            );
+            maps.add(map);
+        }
+        return maps;
+    }
+
+    /**
+     * Read one page of a keyset paginated result.
+     * <p>
+     * The rows are ordered by the cursor property and then by id, and the page starts right after the row the cursor
+     * points to. Only {@code size + 1} rows are read to know if there is a next page, no count query is executed.
+     * Null sort keys are expected to sort first in ascending order, as they do on H2 and MySQL.
+     *
+     * @param specification the filters the rows should match.
+     * @param cursor the position to read from.
+     * @param size the maximum number of rows to return.
+     * @param fetch the associations to load with the rows.
+     * @return the rows of the page and the cursor of the next one.
+     * @throws IllegalArgumentException if the cursor property is not a sortable attribute of the entity.
+     */
+    protected KeysetSlice<ENTITY> findSlice(Specification<ENTITY> specification, KeysetCursor cursor, int size, FetchPlan fetch) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        SingularAttribute<? super ENTITY, ?> sortAttribute = sortAttribute(cursor.getProperty());
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ENTITY> query = cb.createQuery(entityClass);
+        Root<ENTITY> root = query.from(entityClass);
+        Predicate predicate = specification
+            .and(seek(cursor, sortAttribute.getJavaType()))
+            .and(fetchJoins(fetch))
+            .toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        boolean ascending = cursor.getDirection().isAscending();
+        List<Order> orders = new ArrayList<>();
+        if (!ID.equals(cursor.getProperty())) {
+            orders.add(ascending ? cb.asc(root.get(cursor.getProperty())) : cb.desc(root.get(cursor.getProperty())));
+        }
+        orders.add(ascending ? cb.asc(root.get(ID)) : cb.desc(root.get(ID)));
+        query.orderBy(orders);
+
+        List<ENTITY> rows = fetchCollections(entityManager.createQuery(query).setMaxResults(size + 1).getResultList(), fetch);
+        if (rows.size() <= size) {
+            return new KeysetSlice<>(rows, null);
+        }
+        List<ENTITY> content = new ArrayList<>(rows.subList(0, size));
+        ENTITY last = content.get(size - 1);
+        BeanWrapper accessor = PropertyAccessorFactory.forBeanPropertyAccess(last);
+        Long lastId = (Long) accessor.getPropertyValue(ID);
+        Object lastValue = accessor.getPropertyValue(cursor.getProperty());
+        return new KeysetSlice<>(content, KeysetCursor.after(cursor.getProperty(), cursor.getDirection(), lastId, lastValue));
+    }
+
+    /**
+     * Pass every entity matching the specification to the given action, reading them through a forward-only cursor.
+     * <p>
+     * The entities are read in id order with the given JDBC fetch size, as read-only and bypassing the second-level
+     * cache. The persistence context is cleared every {@code clearInterval} entities, so the memory used does not
+     * depend on the number of matching rows: the entities given to the action must not be kept after it returns.
+     *
+     * @param specification the filters the entities should match.
+     * @param fetchSize the JDBC fetch size of the cursor.
+     * @param clearInterval the number of entities after which the persistence context is cleared.
+     * @param action the action to execute for each entity.
+     */
+    @SuppressWarnings("unchecked")
+    protected void forEach(Specification<ENTITY> specification, int fetchSize, int clearInterval, Consumer<? super ENTITY> action) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ENTITY> query = cb.createQuery(entityClass);
+        Root<ENTITY> root = query.from(entityClass);
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.asc(root.get(ID)));
+
+        org.hibernate.query.Query<ENTITY> cursorQuery = entityManager.createQuery(query).unwrap(org.hibernate.query.Query.class);
+        cursorQuery.setFetchSize(fetchSize).setReadOnly(true).setCacheMode(CacheMode.IGNORE);
+        try (ScrollableResults results = cursorQuery.scroll(ScrollMode.FORWARD_ONLY)) {
+            long count = 0;
+            while (results.next()) {
+                action.accept((ENTITY) results.get(0));
+                if (++count % clearInterval == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Take a uniform sample of the entities for a {@link CountEstimator}, without reading the whole table.
+     * <p>
+     * Random ids between the smallest and the largest id are read by batches, until enough of them exist: every row is
+     * as likely to be sampled whatever the gaps between the ids. The number of ids drawn is scaled by the share of the ids
+     * in use, and bounded, so a table with very sparse ids gives a smaller sample. Tables with fewer than twice as many
+     * rows as the sample are read whole instead.
+     *
+     * @param size the maximum number of entities to sample.
+     * @param fetch the associations to fetch with the entities, may be null.
+     * @return the sampled entities, read-only and bypassing the second-level cache, and the number of rows.
+     */
+    protected CountEstimator.Sample<ENTITY> sampleByRandomIds(int size, Specification<ENTITY> fetch) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> bounds = cb.createTupleQuery();
+        Root<ENTITY> root = bounds.from(entityClass);
+        Path<Long> id = root.get(ID);
+        bounds.multiselect(cb.count(root), cb.min(id), cb.max(id));
+        Tuple tuple = entityManager.createQuery(bounds).getSingleResult();
+        long total = tuple.get(0, Long.class);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (total <= 2L * size) {
+            List<ENTITY> rows = new ArrayList<>(findSample(fetch, null));
+            Collections.shuffle(rows, random);
+            return new CountEstimator.Sample<>(rows.subList(0, Math.min(size, rows.size())), total);
+        }
+
+        long min = tuple.get(1, Long.class);
+        long max = tuple.get(2, Long.class);
+        double density = (double) total / (max - min + 1);
+        Set<Long> drawn = new HashSet<>();
+        List<ENTITY> rows = new ArrayList<>(size);
+        for (int round = 0; round < SAMPLE_ROUNDS && rows.size() < size; round++) {
+            // Draw 10% more ids than the expected number of misses calls for, to usually be done in a single round
+            long wanted = Math.min((long) Math.ceil((size - rows.size()) * 1.1 / density), SAMPLE_ROUND_FACTOR * size);
+            List<Long> ids = new ArrayList<>((int) wanted);
+            while (ids.size() < wanted) {
+                long candidate = random.nextLong(min, max + 1);
+                if (drawn.add(candidate)) {
+                    ids.add(candidate);
+                }
+            }
+            List<ENTITY> found = new ArrayList<>();
+            for (int from = 0; from < ids.size(); from += SAMPLE_BATCH_SIZE) {
+                found.addAll(findSample(fetch, ids.subList(from, Math.min(ids.size(), from + SAMPLE_BATCH_SIZE))));
+            }
+            Collections.shuffle(found, random);
+            rows.addAll(found.subList(0, Math.min(found.size(), size - rows.size())));
+        }
+        return new CountEstimator.Sample<>(rows, total);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ENTITY> findSample(Specification<ENTITY> fetch, List<Long> ids) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ENTITY> query = cb.createQuery(entityClass);
+        Root<ENTITY> root = query.from(entityClass);
+        if (fetch != null) {
+            fetch.toPredicate(root, query, cb);
+        }
+        if (ids != null) {
+            query.where(root.get(ID).in(ids));
+        }
+        org.hibernate.query.Query<ENTITY> sampleQuery = entityManager.createQuery(query).unwrap(org.hibernate.query.Query.class);
+        return sampleQuery.setReadOnly(true).setCacheMode(CacheMode.IGNORE).getResultList();
+    }
+
+    private SingularAttribute<? super ENTITY, ?> sortAttribute(String property) {
+        SingularAttribute<? super ENTITY, ?> attribute;
+        try {
+            attribute = entityManager.getMetamodel().entity(entityClass).getSingularAttribute(property);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sort property: " + property, e);
+        }
+        if (attribute.getPersistentAttributeType() != Attribute.PersistentAttributeType.BASIC) {
+            throw new IllegalArgumentException("Unsupported sort property: " + property);
+        }
+        return attribute;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Specification<ENTITY> seek(KeysetCursor cursor, Class<?> keyType) {
+        return (root, query, cb) -> {
+            if (cursor.isFirst()) {
+                return null;
+            }
+            boolean ascending = cursor.getDirection().isAscending();
+            Path<Long> id = root.get(ID);
+            Predicate idAfter = ascending ? cb.greaterThan(id, cursor.getLastId()) : cb.lessThan(id, cursor.getLastId());
+            if (ID.equals(cursor.getProperty())) {
+                return idAfter;
+            }
+            Path<Comparable> key = root.get(cursor.getProperty());
+            if (cursor.getLastValue() == null) {
+                Predicate nullAfter = cb.and(cb.isNull(key), idAfter);
+                return ascending ? cb.or(nullAfter, cb.isNotNull(key)) : nullAfter;
+            }
+            Comparable value = toKeyValue(cursor.getLastValue(), keyType);
+            Predicate keyAfter = ascending ? cb.greaterThan(key, value) : cb.lessThan(key, value);
+            Predicate after = cb.or(keyAfter, cb.and(cb.equal(key, value), idAfter));
+            return ascending ? after : cb.or(after, cb.isNull(key));
+        };
+    }
+
+    private static Comparable<?> toKeyValue(String value, Class<?> keyType) {
+        try {
+            if (LocalDate.class.equals(keyType)) {
+                return LocalDate.parse(value);
+            }
+            return (Comparable<?>) DefaultConversionService.getSharedInstance().convert(value, keyType);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    /**
+     * The cached ids of a page or slice. The total number of rows is only known for a page.
+     */
+    private static final class CachedPage {
+
+        private final List<Object> ids;
+
+        private final long total;
+
+        private final boolean hasNext;
+
+        CachedPage(List<Object> ids, long total, boolean hasNext) {
+            this.ids = List.copyOf(ids);
+            this.total = total;
+            this.hasNext = hasNext;
+        }
+    }
+}
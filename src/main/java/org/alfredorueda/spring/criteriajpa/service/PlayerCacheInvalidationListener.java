@@ -0,0 +1,75 @@
+package org.alfredorueda.spring.criteriajpa.service;
+
+import java.io.Serializable;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.alfredorueda.spring.criteriajpa.domain.Player;
+import org.alfredorueda.spring.criteriajpa.repository.PlayerRepository;
+import org.alfredorueda.spring.criteriajpa.service.cache.invalidation.CacheInvalidationListener;
+import org.alfredorueda.spring.criteriajpa.service.columnar.PlayerColumnStore;
+import org.alfredorueda.spring.criteriajpa.service.leaderboard.PlayerLeaderboardService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Applies the players written by the other instances to the {@link PlayerColumnStore} and the
+ * {@link PlayerLeaderboardService} of this one, which the writes of {@link PlayerService} only update on the instance
+ * making them.
+ * <p>
+ * The written player is read again by id: it is put in the stores if it still exists, and removed from them otherwise.
+ * Nothing is read when both stores are disabled.
+ */
+@Component
+public class PlayerCacheInvalidationListener implements CacheInvalidationListener {
+
+    private final Logger log = LoggerFactory.getLogger(PlayerCacheInvalidationListener.class);
+
+    private final PlayerRepository playerRepository;
+
+    private final PlayerColumnStore playerColumnStore;
+
+    private final PlayerLeaderboardService playerLeaderboardService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties properties;
+
+    public PlayerCacheInvalidationListener(
+        PlayerRepository playerRepository,
+        PlayerColumnStore playerColumnStore,
+        PlayerLeaderboardService playerLeaderboardService,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.playerRepository = playerRepository;
+        this.playerColumnStore = playerColumnStore;
+        this.playerLeaderboardService = playerLeaderboardService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties;
+    }
+
+    @Override
+    public void entityInvalidated(Class<?> entityClass, Serializable id) {
+        if (!Player.class.equals(entityClass) || !(properties.getColumnar().isEnabled() || properties.getLeaderboard().isEnabled())) {
+            return;
+        }
+        log.debug("Request to reload Player written by another instance : {}", id);
+        transactionTemplate.executeWithoutResult(status ->
+            playerRepository
+                .findById((Long) id)
+                .ifPresentOrElse(
+                    player -> {
+                        playerColumnStore.put(player);
+                        playerLeaderboardService.put(player);
+                    },
+                    () -> {
+                        playerColumnStore.remove((Long) id);
+                        playerLeaderboardService.remove((Long) id);
+                    }
+                )
+        );
+    }
+}
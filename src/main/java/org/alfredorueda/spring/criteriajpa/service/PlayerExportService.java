@@ -0,0 +1,192 @@
+package org.alfredorueda.spring.criteriajpa.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.alfredorueda.spring.criteriajpa.domain.Player;
+import org.alfredorueda.spring.criteriajpa.service.criteria.PlayerCriteria;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service for exporting the {@link Player} entities matching a {@link PlayerCriteria}.
+ * <p>
+ * Rows are read through a forward-only cursor and written to the output as they arrive,
+ * so the heap used does not depend on the number of exported players.
+ */
+@Service
+@Transactional(readOnly = true)
+public class PlayerExportService {
+
+    /**
+     * Supported export formats.
+     */
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Optional<Format> fromParameter(String parameter) {
+            return Arrays.stream(values()).filter(format -> format.name().equals(parameter.toUpperCase(Locale.ROOT))).findFirst();
+        }
+    }
+
+    private static final String[] CSV_HEADER = { "id", "name", "birthDate", "height", "weight", "baskets", "assists", "teamId" };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(PlayerExportService.class);
+
+    private final PlayerQueryService playerQueryService;
+
+    private final ObjectMapper objectMapper;
+
+    private final ApplicationProperties applicationProperties;
+
+    public PlayerExportService(PlayerQueryService playerQueryService, ObjectMapper objectMapper, ApplicationProperties applicationProperties) {
+        this.playerQueryService = playerQueryService;
+        this.objectMapper = objectMapper;
+        this.applicationProperties = applicationProperties;
+    }
+
+    /**
+     * Write the players matching the criteria to the given output, one row at a time.
+     * The output is flushed regularly but not closed.
+     *
+     * @param criteria the criteria which the exported players should match.
+     * @param format the format of the export.
+     * @param out the output to write to.
+     * @return the number of exported players.
+     * @throws IOException if the output couldn't be written.
+     */
+    public long export(PlayerCriteria criteria, Format format, OutputStream out) throws IOException {
+        log.debug("Request to export Players by criteria : {}, format: {}", criteria, format);
+        try {
+            return format == Format.CSV ? exportCsv(criteria, out) : exportNdjson(criteria, out);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long exportNdjson(PlayerCriteria criteria, OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper
+            .writerFor(Player.class)
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            return stream(
+                criteria,
+                player -> {
+                    writer.writeValue(generator, player);
+                    generator.writeRaw('\n');
+                },
+                generator::flush
+            );
+        }
+    }
+
+    private long exportCsv(PlayerCriteria criteria, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writeCsvRow(writer, (Object[]) CSV_HEADER);
+        return stream(
+            criteria,
+            player ->
+                writeCsvRow(
+                    writer,
+                    player.getId(),
+                    player.getName(),
+                    player.getBirthDate(),
+                    player.getHeight(),
+                    player.getWeight(),
+                    player.getBaskets(),
+                    player.getAssists(),
+                    player.getTeam() != null ? player.getTeam().getId() : null
+                ),
+            writer::flush
+        );
+    }
+
+    private long stream(PlayerCriteria criteria, RowWriter rowWriter, Flushable flushable) {
+        ApplicationProperties.Export properties = applicationProperties.getExport();
+        long[] count = { 0 };
+        playerQueryService.streamByCriteria(
+            criteria,
+            properties.getFetchSize(),
+            properties.getClearInterval(),
+            player -> {
+                try {
+                    rowWriter.write(player);
+                    if (++count[0] % properties.getClearInterval() == 0) {
+                        flushable.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        );
+        try {
+            flushable.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count[0];
+    }
+
+    private static void writeCsvRow(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(escapeCsv(values[i].toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(Player player) throws IOException;
+    }
+}
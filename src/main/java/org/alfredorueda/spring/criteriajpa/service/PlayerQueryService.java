@@ -1,61 +1,250 @@
 package org.alfredorueda.spring.criteriajpa.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
 import org.alfredorueda.spring.criteriajpa.domain.*; // for static metamodels
 import org.alfredorueda.spring.criteriajpa.domain.Player;
 import org.alfredorueda.spring.criteriajpa.repository.PlayerRepository;
+import org.alfredorueda.spring.criteriajpa.service.advisor.QueryWorkload;
+import org.alfredorueda.spring.criteriajpa.service.cache.QueryResultCache;
+import org.alfredorueda.spring.criteriajpa.service.columnar.PlayerColumnStore;
+import org.alfredorueda.spring.criteriajpa.service.criteria.CriteriaMatcher;
+import org.alfredorueda.spring.criteriajpa.service.criteria.FetchPlan;
+import org.alfredorueda.spring.criteriajpa.service.criteria.KeysetCursor;
 import org.alfredorueda.spring.criteriajpa.service.criteria.PlayerCriteria;
+import org.alfredorueda.spring.criteriajpa.service.criteria.PlayerStatsGroupBy;
+import org.alfredorueda.spring.criteriajpa.service.criteria.PlayerStatsMetric;
+import org.alfredorueda.spring.criteriajpa.service.dto.CountEstimate;
+import org.alfredorueda.spring.criteriajpa.service.dto.KeysetSlice;
+import org.alfredorueda.spring.criteriajpa.service.dto.PlayerStatsDTO;
+import org.alfredorueda.spring.criteriajpa.service.estimate.CountEstimator;
+import org.alfredorueda.spring.criteriajpa.service.plan.QueryPlanBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-import tech.jhipster.service.QueryService;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Service for executing complex queries for {@link Player} entities in the database.
  * The main input is a {@link PlayerCriteria} which gets converted to {@link Specification},
  * in a way that all the filters must apply.
- * It returns a {@link List} of {@link Player} or a {@link Page} of {@link Player} which fulfills the criteria.
+ * The list, page and count queries run the same filters from a JPQL query plan cached by criteria shape,
+ * and their results are cached in the {@link #RESULTS_BY_CRITERIA_CACHE} cache until a write of the entities they depend on.
+ * When the {@link PlayerColumnStore} is loaded, they are answered from its columns instead, unless sorted by another attribute than the id.
+ * It returns a {@link List} of {@link Player}, a {@link Page} or {@link Slice} of {@link Player} or a keyset paginated
+ * {@link KeysetSlice} of {@link Player} which fulfills the criteria.
  */
 @Service
 @Transactional(readOnly = true)
-public class PlayerQueryService extends QueryService<Player> {
+public class PlayerQueryService extends AbstractCriteriaQueryService<Player, PlayerCriteria> {
+
+    public static final String RESULTS_BY_CRITERIA_CACHE = "playersByCriteria";
 
     private final Logger log = LoggerFactory.getLogger(PlayerQueryService.class);
 
     private final PlayerRepository playerRepository;
 
-    public PlayerQueryService(PlayerRepository playerRepository) {
+    private final CountEstimator<Player, PlayerCriteria> countEstimator;
+
+    private final PlayerColumnStore playerColumnStore;
+
+    public PlayerQueryService(
+        PlayerRepository playerRepository,
+        EntityManager entityManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry,
+        QueryResultCache queryResultCache,
+        QueryWorkload queryWorkload,
+        PlayerColumnStore playerColumnStore,
+        PlatformTransactionManager transactionManager,
+        @Qualifier("taskExecutor") Executor taskExecutor
+    ) {
+        super(
+            entityManager,
+            Player.class,
+            applicationProperties,
+            meterRegistry,
+            queryResultCache,
+            RESULTS_BY_CRITERIA_CACHE,
+            queryWorkload
+        );
         this.playerRepository = playerRepository;
+        TransactionTemplate sampleTransaction = new TransactionTemplate(transactionManager);
+        sampleTransaction.setReadOnly(true);
+        this.countEstimator =
+            new CountEstimator<>(
+                "Player",
+                applicationProperties.getEstimate(),
+                criteria -> true,
+                PlayerQueryService::matches,
+                size -> sampleTransaction.execute(status -> sampleByRandomIds(size, fetchTeam())),
+                taskExecutor
+            );
+        this.playerColumnStore = playerColumnStore;
     }
 
     /**
      * Return a {@link List} of {@link Player} which matches the criteria from the database.
      * @param criteria The object which holds all the filters, which the entities should match.
+     * @param fetch The associations to load with the entities.
      * @return the matching entities.
      */
     @Transactional(readOnly = true)
-    public List<Player> findByCriteria(PlayerCriteria criteria) {
-        log.debug("find by criteria : {}", criteria);
-        final Specification<Player> specification = createSpecification(criteria);
-        return playerRepository.findAll(specification);
+    public List<Player> findByCriteria(PlayerCriteria criteria, FetchPlan fetch) {
+        log.debug("find by criteria : {}, fetch: {}", criteria, fetch);
+        Optional<Page<Long>> ids = playerColumnStore.findIds(criteria, Pageable.unpaged());
+        if (ids.isPresent()) {
+            return findAllById(ids.orElseThrow().getContent(), fetch);
+        }
+        return cachedList(criteria, fetch, resultDependencies(Sort.unsorted()), () -> findAll(criteria, fetch));
     }
 
     /**
      * Return a {@link Page} of {@link Player} which matches the criteria from the database.
      * @param criteria The object which holds all the filters, which the entities should match.
      * @param page The page, which should be returned.
+     * @param fetch The associations to load with the entities.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Page<Player> findByCriteria(PlayerCriteria criteria, Pageable page, FetchPlan fetch) {
+        log.debug("find by criteria : {}, page: {}, fetch: {}", criteria, page, fetch);
+        Optional<Page<Long>> ids = playerColumnStore.findIds(criteria, page);
+        if (ids.isPresent()) {
+            return new PageImpl<>(findAllById(ids.orElseThrow().getContent(), fetch), page, ids.orElseThrow().getTotalElements());
+        }
+        return cachedPage(
+            criteria,
+            page,
+            fetch,
+            resultDependencies(page.getSort()),
+            () -> {
+                if (isQueryPlanSort(page.getSort())) {
+                    return findPage(criteria, page, fetch);
+                }
+                final Specification<Player> specification = createSpecification(criteria);
+                return playerRepository.findAll(specification.and(fetchJoins(fetch)), page);
+            }
+        );
+    }
+
+    /**
+     * Return a {@link Slice} of {@link Player} which matches the criteria from the database, without counting them.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned.
+     * @param fetch The associations to load with the entities.
      * @return the matching entities.
      */
     @Transactional(readOnly = true)
-    public Page<Player> findByCriteria(PlayerCriteria criteria, Pageable page) {
-        log.debug("find by criteria : {}, page: {}", criteria, page);
+    public Slice<Player> findSliceByCriteria(PlayerCriteria criteria, Pageable page, FetchPlan fetch) {
+        log.debug("find slice by criteria : {}, page: {}, fetch: {}", criteria, page, fetch);
+        Optional<Page<Long>> ids = playerColumnStore.findIds(criteria, page);
+        if (ids.isPresent()) {
+            return new SliceImpl<>(findAllById(ids.orElseThrow().getContent(), fetch), page, ids.orElseThrow().hasNext());
+        }
+        return cachedSlice(
+            criteria,
+            page,
+            fetch,
+            resultDependencies(page.getSort()),
+            () -> {
+                if (isQueryPlanSort(page.getSort())) {
+                    return findSlice(criteria, page, fetch);
+                }
+                final Specification<Player> specification = createSpecification(criteria);
+                return findSlice(specification, page, fetch);
+            }
+        );
+    }
+
+    /**
+     * Return a {@link Page} of some fields of the {@link Player} which match the criteria from the database, read as tuples
+     * without loading the entities.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param fields The fields to read, such as {@code id} or {@code team.name}.
+     * @param page The page, which should be returned.
+     * @return one map from field to value per matching entity.
+     * @throws IllegalArgumentException if a field is not supported.
+     */
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> findFieldsByCriteria(PlayerCriteria criteria, Collection<String> fields, Pageable page) {
+        log.debug("find fields by criteria : {}, fields: {}, page: {}", criteria, fields, page);
+        return findFields(createSpecification(criteria), fields, page, () -> countByCriteria(criteria));
+    }
+
+    /**
+     * Return a {@link Slice} of some fields of the {@link Player} which match the criteria from the database, read as tuples
+     * without loading the entities nor counting them.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param fields The fields to read, such as {@code id} or {@code team.name}.
+     * @param page The page, which should be returned.
+     * @return one map from field to value per matching entity.
+     * @throws IllegalArgumentException if a field is not supported.
+     */
+    @Transactional(readOnly = true)
+    public Slice<Map<String, Object>> findFieldSliceByCriteria(PlayerCriteria criteria, Collection<String> fields, Pageable page) {
+        log.debug("find field slice by criteria : {}, fields: {}, page: {}", criteria, fields, page);
+        return findFieldSlice(createSpecification(criteria), fields, page);
+    }
+
+    /**
+     * Return a {@link KeysetSlice} of {@link Player} which matches the criteria from the database.
+     * The page starts right after the position of the cursor and no count query is executed.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param cursor The position after which the page starts.
+     * @param size The maximum number of entities in the page.
+     * @param fetch The associations to load with the entities.
+     * @return the matching entities, and the cursor of the next page.
+     */
+    @Transactional(readOnly = true)
+    public KeysetSlice<Player> findByCriteria(PlayerCriteria criteria, KeysetCursor cursor, int size, FetchPlan fetch) {
+        log.debug("find by criteria : {}, cursor: {}, size: {}, fetch: {}", criteria, cursor, size, fetch);
         final Specification<Player> specification = createSpecification(criteria);
-        return playerRepository.findAll(specification, page);
+        return findSlice(specification, cursor, size, fetch);
+    }
+
+    /**
+     * Stream the {@link Player} which match the criteria from the database, together with their team, to the given action.
+     * The entities are detached from time to time, so they must not be kept after the action returns.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param fetchSize The JDBC fetch size of the cursor.
+     * @param clearInterval The number of entities after which the persistence context is cleared.
+     * @param action The action to execute for each matching entity.
+     */
+    @Transactional(readOnly = true)
+    public void streamByCriteria(PlayerCriteria criteria, int fetchSize, int clearInterval, Consumer<Player> action) {
+        log.debug("stream by criteria : {}, fetchSize: {}", criteria, fetchSize);
+        final Specification<Player> specification = createSpecification(criteria).and(fetchTeam());
+        forEach(specification, fetchSize, clearInterval, action);
     }
 
     /**
@@ -66,8 +255,116 @@ public class PlayerQueryService extends QueryService<Player> {
     @Transactional(readOnly = true)
     public long countByCriteria(PlayerCriteria criteria) {
         log.debug("count by criteria : {}", criteria);
-        final Specification<Player> specification = createSpecification(criteria);
-        return playerRepository.count(specification);
+        OptionalLong count = playerColumnStore.count(criteria);
+        if (count.isPresent()) {
+            return count.getAsLong();
+        }
+        return cachedCount(criteria, resultDependencies(Sort.unsorted()), () -> count(criteria));
+    }
+
+    /**
+     * Return statistics of the {@link Player} which match the criteria, grouped by the given dimension.
+     * They are computed by a single {@code GROUP BY} query, with the filters of the criteria in its where clause.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param groupBy The dimension the players are grouped by.
+     * @param metrics The aggregates computed for each group, on top of the number of players.
+     * @return one statistics row per group, ordered by group key.
+     */
+    @Transactional(readOnly = true)
+    public List<PlayerStatsDTO> findStatsByCriteria(PlayerCriteria criteria, PlayerStatsGroupBy groupBy, List<PlayerStatsMetric> metrics) {
+        log.debug("find stats by criteria : {}, groupBy: {}, metrics: {}", criteria, groupBy, metrics);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Player> root = query.from(Player.class);
+        Predicate predicate = createSpecification(criteria).toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        List<Expression<?>> keys = groupKeys(groupBy, root, cb);
+        List<Selection<?>> selections = new ArrayList<>(keys);
+        selections.add(cb.count(root));
+        metrics.forEach(metric -> selections.add(metric.toExpression(root, cb)));
+        query.multiselect(selections).groupBy(keys).orderBy(keys.stream().map(cb::asc).collect(Collectors.toList()));
+
+        return entityManager
+            .createQuery(query)
+            .getResultList()
+            .stream()
+            .map(tuple -> {
+                PlayerStatsDTO stats = new PlayerStatsDTO();
+                stats.setKey(tuple.get(0));
+                if (groupBy == PlayerStatsGroupBy.TEAM) {
+                    stats.setName(tuple.get(1, String.class));
+                }
+                int index = keys.size();
+                stats.setCount(tuple.get(index++, Long.class));
+                for (PlayerStatsMetric metric : metrics) {
+                    stats.getMetrics().put(metric.getName(), (Number) tuple.get(index++));
+                }
+                return stats;
+            })
+            .collect(Collectors.toList());
+    }
+
+    private static List<Expression<?>> groupKeys(PlayerStatsGroupBy groupBy, Root<Player> root, CriteriaBuilder cb) {
+        switch (groupBy) {
+            case TEAM:
+                Join<Player, Team> team = root.join(Player_.team, JoinType.LEFT);
+                return List.of(team.get(Team_.id), team.get(Team_.name));
+            case TEAM_CITY:
+                return List.of(root.join(Player_.team, JoinType.LEFT).get(Team_.city));
+            default:
+                return List.of(cb.function("year", Integer.class, root.get(Player_.birthDate)));
+        }
+    }
+
+    /**
+     * Return the number of matching entities, estimated from a sample of the entities when possible.
+     * The count is exact when estimates are disabled, the criteria is too selective, or the estimate is small.
+     * The team of the sampled players is fetched with them.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @return the estimated or exact number of matching entities.
+     */
+    @Transactional(readOnly = true)
+    public CountEstimate estimateCountByCriteria(PlayerCriteria criteria) {
+        log.debug("estimate count by criteria : {}", criteria);
+        return countEstimator.estimate(criteria).orElseGet(() -> CountEstimate.exact(countByCriteria(criteria)));
+    }
+
+    private Specification<Player> fetchTeam() {
+        return (root, query, builder) -> {
+            root.fetch(Player_.team, JoinType.LEFT);
+            return null;
+        };
+    }
+
+    /**
+     * The entities the results of a query depend on: always the Player, and the Team when sorting on a property of the team.
+     */
+    private Collection<Class<?>> resultDependencies(Sort sort) {
+        if (!isQueryPlanSort(sort)) {
+            return List.of(Player.class, Team.class);
+        }
+        return List.of(Player.class);
+    }
+
+    /**
+     * Tell if a player matches the criteria, evaluated in memory with the same semantics as {@link #createSpecification}.
+     */
+    private static boolean matches(PlayerCriteria criteria, Player player) {
+        return (
+            criteria == null ||
+            (
+                CriteriaMatcher.range(criteria.getId(), player.getId()) &&
+                CriteriaMatcher.string(criteria.getName(), player.getName()) &&
+                CriteriaMatcher.range(criteria.getBirthDate(), player.getBirthDate()) &&
+                CriteriaMatcher.range(criteria.getHeight(), player.getHeight()) &&
+                CriteriaMatcher.range(criteria.getWeight(), player.getWeight()) &&
+                CriteriaMatcher.range(criteria.getBaskets(), player.getBaskets()) &&
+                CriteriaMatcher.range(criteria.getAssists(), player.getAssists()) &&
+                CriteriaMatcher.filter(criteria.getTeamId(), player.getTeam() != null ? player.getTeam().getId() : null)
+            )
+        );
     }
 
     /**
@@ -112,4 +409,40 @@ public class PlayerQueryService extends QueryService<Player> {
         }
         return specification;
     }
+
+    /**
+     * Function to describe {@link PlayerCriteria} to a {@link QueryPlanBuilder}, with the same filters as {@link #createSpecification}.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param plan The builder of the query plan.
+     */
+    @Override
+    protected void createQueryPlan(PlayerCriteria criteria, QueryPlanBuilder<PlayerCriteria> plan) {
+        if (criteria != null) {
+            plan.distinct(criteria.getDistinct());
+            if (criteria.getId() != null) {
+                plan.range("e.id", criteria.getId(), PlayerCriteria::getId);
+            }
+            if (criteria.getName() != null) {
+                plan.string("e.name", criteria.getName(), PlayerCriteria::getName);
+            }
+            if (criteria.getBirthDate() != null) {
+                plan.range("e.birthDate", criteria.getBirthDate(), PlayerCriteria::getBirthDate);
+            }
+            if (criteria.getHeight() != null) {
+                plan.range("e.height", criteria.getHeight(), PlayerCriteria::getHeight);
+            }
+            if (criteria.getWeight() != null) {
+                plan.range("e.weight", criteria.getWeight(), PlayerCriteria::getWeight);
+            }
+            if (criteria.getBaskets() != null) {
+                plan.range("e.baskets", criteria.getBaskets(), PlayerCriteria::getBaskets);
+            }
+            if (criteria.getAssists() != null) {
+                plan.range("e.assists", criteria.getAssists(), PlayerCriteria::getAssists);
+            }
+            if (criteria.getTeamId() != null) {
+                plan.join("left join e.team t").filter("t.id", criteria.getTeamId(), PlayerCriteria::getTeamId);
+            }
+        }
+    }
 }
@@ -1,18 +1,28 @@
 package org.alfredorueda.spring.criteriajpa.service;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.alfredorueda.spring.criteriajpa.domain.Player;
+import org.alfredorueda.spring.criteriajpa.domain.Team;
 import org.alfredorueda.spring.criteriajpa.repository.PlayerRepository;
+import org.alfredorueda.spring.criteriajpa.repository.TeamRepository;
+import org.alfredorueda.spring.criteriajpa.service.cache.QueryResultCache;
+import org.alfredorueda.spring.criteriajpa.service.columnar.PlayerColumnStore;
+import org.alfredorueda.spring.criteriajpa.service.leaderboard.PlayerLeaderboardService;
+import org.alfredorueda.spring.criteriajpa.service.update.PartialUpdateEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Service Implementation for managing {@link Player}.
+ * Every write invalidates the criteria query results depending on {@link Player}, and is applied to the {@link PlayerColumnStore}
+ * and to the {@link PlayerLeaderboardService leaderboards}.
  */
 @Service
 @Transactional
@@ -22,8 +32,30 @@ public class PlayerService {
 
     private final PlayerRepository playerRepository;
 
-    public PlayerService(PlayerRepository playerRepository) {
+    private final TeamRepository teamRepository;
+
+    private final QueryResultCache queryResultCache;
+
+    private final PartialUpdateEngine partialUpdateEngine;
+
+    private final PlayerColumnStore playerColumnStore;
+
+    private final PlayerLeaderboardService playerLeaderboardService;
+
+    public PlayerService(
+        PlayerRepository playerRepository,
+        TeamRepository teamRepository,
+        QueryResultCache queryResultCache,
+        PartialUpdateEngine partialUpdateEngine,
+        PlayerColumnStore playerColumnStore,
+        PlayerLeaderboardService playerLeaderboardService
+    ) {
         this.playerRepository = playerRepository;
+        this.teamRepository = teamRepository;
+        this.queryResultCache = queryResultCache;
+        this.partialUpdateEngine = partialUpdateEngine;
+        this.playerColumnStore = playerColumnStore;
+        this.playerLeaderboardService = playerLeaderboardService;
     }
 
     /**
@@ -34,32 +66,64 @@ public class PlayerService {
      */
     public Player save(Player player) {
         log.debug("Request to save Player : {}", player);
-        return playerRepository.save(player);
+        queryResultCache.invalidate(Player.class);
+        resolveTeam(player);
+        Player result = playerRepository.save(player);
+        playerColumnStore.put(result);
+        playerLeaderboardService.put(result);
+        return result;
     }
 
     /**
-     * Update a player.
+     * Update a player, provided it still has the version of the given player.
+     * <p>
+     * The player is written without being read first, by a single {@code update} statement of the {@link PartialUpdateEngine}
+     * matching both its id and its version. A player without a version overwrites the current one, whatever its version:
+     * the current one is read first to get its version. The given player isn't attached to the persistence context.
      *
      * @param player the entity to save.
-     * @return the persisted entity.
+     * @return the given player, with its new version.
+     * @throws ObjectOptimisticLockingFailureException if there is no player with the id and version of the given player.
      */
     public Player update(Player player) {
         log.debug("Request to update Player : {}", player);
-        return playerRepository.save(player);
+        queryResultCache.invalidate(Player.class);
+        resolveTeam(player);
+        if (player.getVersion() == null) {
+            Player existingPlayer = playerRepository
+                .findById(player.getId())
+                .orElseThrow(() -> new ObjectOptimisticLockingFailureException(Player.class, player.getId()));
+            player.setVersion(existingPlayer.getVersion());
+        }
+        if (!partialUpdateEngine.update(Player.class, player.getId(), player.getVersion(), partialUpdateEngine.values(player))) {
+            throw new ObjectOptimisticLockingFailureException(Player.class, player.getId());
+        }
+        player.setVersion(player.getVersion() + 1);
+        playerColumnStore.put(player);
+        playerLeaderboardService.put(player);
+        return player;
     }
 
     /**
-     * Partially update a player.
+     * Partially update a player, provided it still has the version of the given player if it has one.
+     * <p>
+     * The version is checked before the fields are updated, and again by the {@code update} statement, which only writes
+     * the changed columns.
      *
      * @param player the entity to update partially.
-     * @return the persisted entity.
+     * @return the persisted entity, or empty if there is no player with the id of the given player.
+     * @throws ObjectOptimisticLockingFailureException if the player doesn't have the version of the given player.
      */
     public Optional<Player> partialUpdate(Player player) {
         log.debug("Request to partially update Player : {}", player);
+        queryResultCache.invalidate(Player.class);
 
         return playerRepository
             .findById(player.getId())
             .map(existingPlayer -> {
+                if (player.getVersion() != null && !player.getVersion().equals(existingPlayer.getVersion())) {
+                    throw new ObjectOptimisticLockingFailureException(Player.class, player.getId());
+                }
                 if (player.getName() != null) {
                     existingPlayer.setName(player.getName());
                 }
@@ -81,7 +145,36 @@ public class PlayerService {
 
                 return existingPlayer;
             })
-            .map(playerRepository::save);
+            .map(playerRepository::saveAndFlush)
+            .map(result -> {
+                playerColumnStore.put(result);
+                playerLeaderboardService.put(result);
+                return result;
+            });
+    }
+
+    /**
+     * Partially update a player without reading it, provided it still has the version of the given player if it has one.
+     * <p>
+     * A single {@code update} statement writes the columns of the fields of the given player which are not null. When no
+     * field is given, the player is read to check its version, like by {@link #partialUpdate(Player)}.
+     *
+     * @param player the entity to update partially.
+     * @return true if the player was updated, false if there is no player with the id and version of the given player.
+     */
+    public boolean partialUpdateWithoutResult(Player player) {
+        log.debug("Request to partially update Player without result : {}", player);
+        Map<String, Object> values = partialUpdateEngine.nonNullValues(player);
+        if (values.isEmpty()) {
+            return partialUpdate(player).isPresent();
+        }
+        queryResultCache.invalidate(Player.class);
+        boolean updated = partialUpdateEngine.update(Player.class, player.getId(), player.getVersion(), values);
+        if (updated) {
+            playerColumnStore.patch(player);
+            playerLeaderboardService.patch(player);
+        }
+        return updated;
     }
 
     /**
@@ -123,6 +216,22 @@ public class PlayerService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Player : {}", id);
+        queryResultCache.invalidate(Player.class);
         playerRepository.deleteById(id);
+        playerColumnStore.remove(id);
+        playerLeaderboardService.remove(id);
+    }
+
+    /**
+     * Replaces the team of the player, which may only hold an id, by a reference to the persisted team, as a team without a
+     * version would otherwise be taken for a new team. The team isn't read from the database, and isn't loaded with the
+     * returned player: it is serialized as its id only. A team which doesn't exist fails the foreign key constraint of the
+     * player when it is written.
+     */
+    private void resolveTeam(Player player) {
+        Team team = player.getTeam();
+        if (team != null && team.getId() != null) {
+            player.setTeam(teamRepository.getReferenceById(team.getId()));
+        }
     }
 }
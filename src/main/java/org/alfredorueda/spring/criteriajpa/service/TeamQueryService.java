@@ -1,61 +1,268 @@
 package org.alfredorueda.spring.criteriajpa.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
 import javax.persistence.criteria.JoinType;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
 import org.alfredorueda.spring.criteriajpa.domain.*; // for static metamodels
 import org.alfredorueda.spring.criteriajpa.domain.Team;
 import org.alfredorueda.spring.criteriajpa.repository.TeamRepository;
+import org.alfredorueda.spring.criteriajpa.service.advisor.QueryWorkload;
+import org.alfredorueda.spring.criteriajpa.service.cache.QueryResultCache;
+import org.alfredorueda.spring.criteriajpa.service.criteria.CollectionFilterStrategy;
+import org.alfredorueda.spring.criteriajpa.service.criteria.CriteriaMatcher;
+import org.alfredorueda.spring.criteriajpa.service.criteria.FetchPlan;
+import org.alfredorueda.spring.criteriajpa.service.criteria.KeysetCursor;
 import org.alfredorueda.spring.criteriajpa.service.criteria.TeamCriteria;
+import org.alfredorueda.spring.criteriajpa.service.dto.CountEstimate;
+import org.alfredorueda.spring.criteriajpa.service.dto.KeysetSlice;
+import org.alfredorueda.spring.criteriajpa.service.dto.TeamSummaryDTO;
+import org.alfredorueda.spring.criteriajpa.service.estimate.CountEstimator;
+import org.alfredorueda.spring.criteriajpa.service.plan.QueryPlanBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-import tech.jhipster.service.QueryService;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Service for executing complex queries for {@link Team} entities in the database.
  * The main input is a {@link TeamCriteria} which gets converted to {@link Specification},
  * in a way that all the filters must apply.
- * It returns a {@link List} of {@link Team} or a {@link Page} of {@link Team} which fulfills the criteria.
+ * The filter on the players joins them, or tests them with an {@code EXISTS} subquery when the criteria asks for the
+ * {@link CollectionFilterStrategy#EXISTS} strategy, so that each team is selected and counted once.
+ * The list, page and count queries run the same filters from a JPQL query plan cached by criteria shape,
+ * and their results are cached in the {@link #RESULTS_BY_CRITERIA_CACHE} cache until a write of the entities they depend on.
+ * It returns a {@link List} of {@link Team}, a {@link Page} or {@link Slice} of {@link Team} or a keyset paginated
+ * {@link KeysetSlice} of {@link Team} which fulfills the criteria.
  */
 @Service
 @Transactional(readOnly = true)
-public class TeamQueryService extends QueryService<Team> {
+public class TeamQueryService extends AbstractCriteriaQueryService<Team, TeamCriteria> {
+
+    public static final String RESULTS_BY_CRITERIA_CACHE = "teamsByCriteria";
 
     private final Logger log = LoggerFactory.getLogger(TeamQueryService.class);
 
     private final TeamRepository teamRepository;
 
-    public TeamQueryService(TeamRepository teamRepository) {
+    private final CountEstimator<Team, TeamCriteria> countEstimator;
+
+    public TeamQueryService(
+        TeamRepository teamRepository,
+        EntityManager entityManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry,
+        QueryResultCache queryResultCache,
+        QueryWorkload queryWorkload,
+        PlatformTransactionManager transactionManager,
+        @Qualifier("taskExecutor") Executor taskExecutor
+    ) {
+        super(
+            entityManager,
+            Team.class,
+            applicationProperties,
+            meterRegistry,
+            queryResultCache,
+            RESULTS_BY_CRITERIA_CACHE,
+            queryWorkload
+        );
         this.teamRepository = teamRepository;
+        TransactionTemplate sampleTransaction = new TransactionTemplate(transactionManager);
+        sampleTransaction.setReadOnly(true);
+        this.countEstimator =
+            new CountEstimator<>(
+                "Team",
+                applicationProperties.getEstimate(),
+                criteria -> criteria == null || criteria.getPlayerId() == null,
+                TeamQueryService::matches,
+                size -> sampleTransaction.execute(status -> sampleByRandomIds(size, null)),
+                taskExecutor
+            );
     }
 
     /**
      * Return a {@link List} of {@link Team} which matches the criteria from the database.
      * @param criteria The object which holds all the filters, which the entities should match.
+     * @param fetch The associations to load with the entities.
      * @return the matching entities.
      */
     @Transactional(readOnly = true)
-    public List<Team> findByCriteria(TeamCriteria criteria) {
-        log.debug("find by criteria : {}", criteria);
-        final Specification<Team> specification = createSpecification(criteria);
-        return teamRepository.findAll(specification);
+    public List<Team> findByCriteria(TeamCriteria criteria, FetchPlan fetch) {
+        log.debug("find by criteria : {}, fetch: {}", criteria, fetch);
+        return cachedList(criteria, fetch, resultDependencies(criteria, Sort.unsorted()), () -> findAll(criteria, fetch));
     }
 
     /**
      * Return a {@link Page} of {@link Team} which matches the criteria from the database.
      * @param criteria The object which holds all the filters, which the entities should match.
      * @param page The page, which should be returned.
+     * @param fetch The associations to load with the entities.
      * @return the matching entities.
      */
     @Transactional(readOnly = true)
-    public Page<Team> findByCriteria(TeamCriteria criteria, Pageable page) {
-        log.debug("find by criteria : {}, page: {}", criteria, page);
+    public Page<Team> findByCriteria(TeamCriteria criteria, Pageable page, FetchPlan fetch) {
+        log.debug("find by criteria : {}, page: {}, fetch: {}", criteria, page, fetch);
+        return cachedPage(
+            criteria,
+            page,
+            fetch,
+            resultDependencies(criteria, page.getSort()),
+            () -> {
+                if (isQueryPlanSort(page.getSort())) {
+                    return findPage(criteria, page, fetch);
+                }
+                final Specification<Team> specification = createSpecification(criteria);
+                return teamRepository.findAll(specification.and(fetchJoins(fetch)), page);
+            }
+        );
+    }
+
+    /**
+     * Return a {@link Slice} of {@link Team} which matches the criteria from the database, without counting them.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned.
+     * @param fetch The associations to load with the entities.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Slice<Team> findSliceByCriteria(TeamCriteria criteria, Pageable page, FetchPlan fetch) {
+        log.debug("find slice by criteria : {}, page: {}, fetch: {}", criteria, page, fetch);
+        return cachedSlice(
+            criteria,
+            page,
+            fetch,
+            resultDependencies(criteria, page.getSort()),
+            () -> {
+                if (isQueryPlanSort(page.getSort())) {
+                    return findSlice(criteria, page, fetch);
+                }
+                final Specification<Team> specification = createSpecification(criteria);
+                return findSlice(specification, page, fetch);
+            }
+        );
+    }
+
+    /**
+     * Return a {@link Page} of {@link TeamSummaryDTO} of the {@link Team} which match the criteria, with the aggregates of
+     * their roster.
+     * The page of teams is read first, like {@link #findByCriteria(TeamCriteria, Pageable, FetchPlan)}, then the rosters of
+     * all its teams are aggregated by a single grouped query on their ids: no collection is fetched nor paginated in memory.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned, sorted by attributes of the team.
+     * @return the summaries of the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Page<TeamSummaryDTO> findSummariesByCriteria(TeamCriteria criteria, Pageable page) {
+        log.debug("find summaries by criteria : {}, page: {}", criteria, page);
+        Page<Team> teams = findByCriteria(criteria, page, FetchPlan.NONE);
+        Map<Long, Object[]> rosters = findRosters(teams.getContent());
+        return teams.map(team -> toSummary(team, rosters.get(team.getId())));
+    }
+
+    /**
+     * Return a {@link Slice} of {@link TeamSummaryDTO} of the {@link Team} which match the criteria, with the aggregates of
+     * their roster, without counting them.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned, sorted by attributes of the team.
+     * @return the summaries of the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Slice<TeamSummaryDTO> findSummarySliceByCriteria(TeamCriteria criteria, Pageable page) {
+        log.debug("find summary slice by criteria : {}, page: {}", criteria, page);
+        Slice<Team> teams = findSliceByCriteria(criteria, page, FetchPlan.NONE);
+        Map<Long, Object[]> rosters = findRosters(teams.getContent());
+        return teams.map(team -> toSummary(team, rosters.get(team.getId())));
+    }
+
+    /**
+     * The number of players, total baskets and total assists of the teams, by team id. Teams without players are absent.
+     */
+    private Map<Long, Object[]> findRosters(List<Team> teams) {
+        if (teams.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> ids = teams.stream().map(Team::getId).collect(Collectors.toList());
+        return entityManager
+            .createQuery(
+                "select p.team.id, count(p), sum(p.baskets), sum(p.assists) from Player p where p.team.id in :ids group by p.team.id",
+                Object[].class
+            )
+            .setParameter("ids", ids)
+            .getResultList()
+            .stream()
+            .collect(Collectors.toMap(row -> (Long) row[0], row -> row));
+    }
+
+    private static TeamSummaryDTO toSummary(Team team, Object[] roster) {
+        TeamSummaryDTO summary = new TeamSummaryDTO();
+        summary.setId(team.getId());
+        summary.setName(team.getName());
+        summary.setCity(team.getCity());
+        if (roster != null) {
+            summary.setPlayerCount((Long) roster[1]);
+            summary.setBaskets(roster[2] != null ? ((Number) roster[2]).longValue() : 0);
+            summary.setAssists(roster[3] != null ? ((Number) roster[3]).longValue() : 0);
+        }
+        return summary;
+    }
+
+    /**
+     * Return a {@link Page} of some fields of the {@link Team} which match the criteria from the database, read as tuples
+     * without loading the entities.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param fields The fields to read, such as {@code id} or {@code city}.
+     * @param page The page, which should be returned.
+     * @return one map from field to value per matching entity.
+     * @throws IllegalArgumentException if a field is not supported.
+     */
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> findFieldsByCriteria(TeamCriteria criteria, Collection<String> fields, Pageable page) {
+        log.debug("find fields by criteria : {}, fields: {}, page: {}", criteria, fields, page);
+        return findFields(createSpecification(criteria), fields, page, () -> countByCriteria(criteria));
+    }
+
+    /**
+     * Return a {@link Slice} of some fields of the {@link Team} which match the criteria from the database, read as tuples
+     * without loading the entities nor counting them.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param fields The fields to read, such as {@code id} or {@code city}.
+     * @param page The page, which should be returned.
+     * @return one map from field to value per matching entity.
+     * @throws IllegalArgumentException if a field is not supported.
+     */
+    @Transactional(readOnly = true)
+    public Slice<Map<String, Object>> findFieldSliceByCriteria(TeamCriteria criteria, Collection<String> fields, Pageable page) {
+        log.debug("find field slice by criteria : {}, fields: {}, page: {}", criteria, fields, page);
+        return findFieldSlice(createSpecification(criteria), fields, page);
+    }
+
+    /**
+     * Return a {@link KeysetSlice} of {@link Team} which matches the criteria from the database.
+     * The page starts right after the position of the cursor and no count query is executed.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param cursor The position after which the page starts.
+     * @param size The maximum number of entities in the page.
+     * @param fetch The associations to load with the entities.
+     * @return the matching entities, and the cursor of the next page.
+     */
+    @Transactional(readOnly = true)
+    public KeysetSlice<Team> findByCriteria(TeamCriteria criteria, KeysetCursor cursor, int size, FetchPlan fetch) {
+        log.debug("find by criteria : {}, cursor: {}, size: {}, fetch: {}", criteria, cursor, size, fetch);
         final Specification<Team> specification = createSpecification(criteria);
-        return teamRepository.findAll(specification, page);
+        return findSlice(specification, cursor, size, fetch);
     }
 
     /**
@@ -66,8 +273,44 @@ public class TeamQueryService extends QueryService<Team> {
     @Transactional(readOnly = true)
     public long countByCriteria(TeamCriteria criteria) {
         log.debug("count by criteria : {}", criteria);
-        final Specification<Team> specification = createSpecification(criteria);
-        return teamRepository.count(specification);
+        return cachedCount(criteria, resultDependencies(criteria, Sort.unsorted()), () -> count(criteria));
+    }
+
+    /**
+     * Return the number of matching entities, estimated from a sample of the entities when possible.
+     * The count is exact when estimates are disabled, the criteria is too selective, or the estimate is small.
+     * Criteria on the players are always counted exactly.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @return the estimated or exact number of matching entities.
+     */
+    @Transactional(readOnly = true)
+    public CountEstimate estimateCountByCriteria(TeamCriteria criteria) {
+        log.debug("estimate count by criteria : {}", criteria);
+        return countEstimator.estimate(criteria).orElseGet(() -> CountEstimate.exact(countByCriteria(criteria)));
+    }
+
+    /**
+     * The entities the results of a query depend on: always the Team, and the Player when filtering on the players.
+     */
+    private Collection<Class<?>> resultDependencies(TeamCriteria criteria, Sort sort) {
+        if (criteria != null && criteria.getPlayerId() != null) {
+            return List.of(Team.class, Player.class);
+        }
+        return List.of(Team.class);
+    }
+
+    /**
+     * Tell if a team matches the criteria, evaluated in memory with the same semantics as {@link #createSpecification}.
+     */
+    private static boolean matches(TeamCriteria criteria, Team team) {
+        return (
+            criteria == null ||
+            (
+                CriteriaMatcher.range(criteria.getId(), team.getId()) &&
+                CriteriaMatcher.string(criteria.getName(), team.getName()) &&
+                CriteriaMatcher.string(criteria.getCity(), team.getCity())
+            )
+        );
     }
 
     /**
@@ -91,7 +334,9 @@ public class TeamQueryService extends QueryService<Team> {
             if (criteria.getCity() != null) {
                 specification = specification.and(buildStringSpecification(criteria.getCity(), Team_.city));
             }
-            if (criteria.getPlayerId() != null) {
+            if (criteria.getPlayerId() != null && criteria.getPlayerIdStrategy() == CollectionFilterStrategy.EXISTS) {
+                specification = specification.and(buildExistsSpecification(criteria.getPlayerId(), Player.class, Player_.team, Player_.id));
+            } else if (criteria.getPlayerId() != null) {
                 specification =
                     specification.and(
                         buildSpecification(criteria.getPlayerId(), root -> root.join(Team_.players, JoinType.LEFT).get(Player_.id))
@@ -100,4 +345,30 @@ public class TeamQueryService extends QueryService<Team> {
         }
         return specification;
     }
+
+    /**
+     * Function to describe {@link TeamCriteria} to a {@link QueryPlanBuilder}, with the same filters as {@link #createSpecification}.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param plan The builder of the query plan.
+     */
+    @Override
+    protected void createQueryPlan(TeamCriteria criteria, QueryPlanBuilder<TeamCriteria> plan) {
+        if (criteria != null) {
+            plan.distinct(criteria.getDistinct());
+            if (criteria.getId() != null) {
+                plan.range("e.id", criteria.getId(), TeamCriteria::getId);
+            }
+            if (criteria.getName() != null) {
+                plan.string("e.name", criteria.getName(), TeamCriteria::getName);
+            }
+            if (criteria.getCity() != null) {
+                plan.string("e.city", criteria.getCity(), TeamCriteria::getCity);
+            }
+            if (criteria.getPlayerId() != null && criteria.getPlayerIdStrategy() == CollectionFilterStrategy.EXISTS) {
+                plan.exists("Player p", "p.team = e", "p.id", criteria.getPlayerId(), TeamCriteria::getPlayerId);
+            } else if (criteria.getPlayerId() != null) {
+                plan.join("left join e.players p").range("p.id", criteria.getPlayerId(), TeamCriteria::getPlayerId);
+            }
+        }
+    }
 }
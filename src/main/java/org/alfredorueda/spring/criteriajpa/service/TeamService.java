@@ -1,16 +1,21 @@
 package org.alfredorueda.spring.criteriajpa.service;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.alfredorueda.spring.criteriajpa.domain.Team;
 import org.alfredorueda.spring.criteriajpa.repository.TeamRepository;
+import org.alfredorueda.spring.criteriajpa.service.cache.QueryResultCache;
+import org.alfredorueda.spring.criteriajpa.service.update.PartialUpdateEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Service Implementation for managing {@link Team}.
+ * Every write invalidates the criteria query results depending on {@link Team}.
  */
 @Service
 @Transactional
@@ -20,8 +25,14 @@ public class TeamService {
 
     private final TeamRepository teamRepository;
 
-    public TeamService(TeamRepository teamRepository) {
+    private final QueryResultCache queryResultCache;
+
+    private final PartialUpdateEngine partialUpdateEngine;
+
+    public TeamService(TeamRepository teamRepository, QueryResultCache queryResultCache, PartialUpdateEngine partialUpdateEngine) {
         this.teamRepository = teamRepository;
+        this.queryResultCache = queryResultCache;
+        this.partialUpdateEngine = partialUpdateEngine;
     }
 
     /**
@@ -32,32 +43,59 @@ public class TeamService {
      */
     public Team save(Team team) {
         log.debug("Request to save Team : {}", team);
+        queryResultCache.invalidate(Team.class);
         return teamRepository.save(team);
     }
 
     /**
-     * Update a team.
+     * Update a team, provided it still has the version of the given team.
+     * <p>
+     * The team is written without being read first, by a single {@code update} statement of the {@link PartialUpdateEngine}
+     * matching both its id and its version. A team without a version overwrites the current one, whatever its version: the
+     * current one is read first to get its version. The given team isn't attached to the persistence context. The players
+     * of the team are not updated, the association is owned by the players.
      *
      * @param team the entity to save.
-     * @return the persisted entity.
+     * @return the given team, with its new version.
+     * @throws ObjectOptimisticLockingFailureException if there is no team with the id and version of the given team.
      */
     public Team update(Team team) {
         log.debug("Request to update Team : {}", team);
-        return teamRepository.save(team);
+        queryResultCache.invalidate(Team.class);
+        if (team.getVersion() == null) {
+            Team existingTeam = teamRepository
+                .findById(team.getId())
+                .orElseThrow(() -> new ObjectOptimisticLockingFailureException(Team.class, team.getId()));
+            team.setVersion(existingTeam.getVersion());
+        }
+        if (!partialUpdateEngine.update(Team.class, team.getId(), team.getVersion(), partialUpdateEngine.values(team))) {
+            throw new ObjectOptimisticLockingFailureException(Team.class, team.getId());
+        }
+        team.setVersion(team.getVersion() + 1);
+        team.setPlayers(null);
+        return team;
     }
 
     /**
-     * Partially update a team.
+     * Partially update a team, provided it still has the version of the given team if it has one.
+     * <p>
+     * The version is checked before the fields are updated, and again by the {@code update} statement, which only writes
+     * the changed columns.
      *
      * @param team the entity to update partially.
-     * @return the persisted entity.
+     * @return the persisted entity, or empty if there is no team with the id of the given team.
+     * @throws ObjectOptimisticLockingFailureException if the team doesn't have the version of the given team.
      */
     public Optional<Team> partialUpdate(Team team) {
         log.debug("Request to partially update Team : {}", team);
+        queryResultCache.invalidate(Team.class);
 
         return teamRepository
             .findById(team.getId())
             .map(existingTeam -> {
+                if (team.getVersion() != null && !team.getVersion().equals(existingTeam.getVersion())) {
+                    throw new ObjectOptimisticLockingFailureException(Team.class, team.getId());
+                }
                 if (team.getName() != null) {
                     existingTeam.setName(team.getName());
                 }
@@ -67,7 +105,26 @@ public class TeamService {
 
                 return existingTeam;
             })
-            .map(teamRepository::save);
+            .map(teamRepository::saveAndFlush);
+    }
+
+    /**
+     * Partially update a team without reading it, provided it still has the version of the given team if it has one.
+     * <p>
+     * A single {@code update} statement writes the columns of the fields of the given team which are not null. When no
+     * field is given, the team is read to check its version, like by {@link #partialUpdate(Team)}.
+     *
+     * @param team the entity to update partially.
+     * @return true if the team was updated, false if there is no team with the id and version of the given team.
+     */
+    public boolean partialUpdateWithoutResult(Team team) {
+        log.debug("Request to partially update Team without result : {}", team);
+        Map<String, Object> values = partialUpdateEngine.nonNullValues(team);
+        if (values.isEmpty()) {
+            return partialUpdate(team).isPresent();
+        }
+        queryResultCache.invalidate(Team.class);
+        return partialUpdateEngine.update(Team.class, team.getId(), team.getVersion(), values);
     }
 
     /**
@@ -100,6 +157,7 @@ public class TeamService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Team : {}", id);
+        queryResultCache.invalidate(Team.class);
         teamRepository.deleteById(id);
     }
 }
@@ -11,6 +11,7 @@ import org.alfredorueda.spring.criteriajpa.repository.AuthorityRepository;
 import org.alfredorueda.spring.criteriajpa.repository.UserRepository;
 import org.alfredorueda.spring.criteriajpa.security.AuthoritiesConstants;
 import org.alfredorueda.spring.criteriajpa.security.SecurityUtils;
+import org.alfredorueda.spring.criteriajpa.service.cache.invalidation.CacheInvalidationBus;
 import org.alfredorueda.spring.criteriajpa.service.dto.AdminUserDTO;
 import org.alfredorueda.spring.criteriajpa.service.dto.UserDTO;
 import org.slf4j.Logger;
@@ -41,16 +42,20 @@ public class UserService {
 
     private final CacheManager cacheManager;
 
+    private final CacheInvalidationBus cacheInvalidationBus;
+
     public UserService(
         UserRepository userRepository,
         PasswordEncoder passwordEncoder,
         AuthorityRepository authorityRepository,
-        CacheManager cacheManager
+        CacheManager cacheManager,
+        CacheInvalidationBus cacheInvalidationBus
     ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authorityRepository = authorityRepository;
         this.cacheManager = cacheManager;
+        this.cacheInvalidationBus = cacheInvalidationBus;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -318,8 +323,10 @@ public class UserService {
 
     private void clearUserCaches(User user) {
         Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE)).evict(user.getLogin());
+        cacheInvalidationBus.evict(UserRepository.USERS_BY_LOGIN_CACHE, user.getLogin());
         if (user.getEmail() != null) {
             Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE)).evict(user.getEmail());
+            cacheInvalidationBus.evict(UserRepository.USERS_BY_EMAIL_CACHE, user.getEmail());
         }
     }
 }
@@ -0,0 +1,533 @@
+package org.alfredorueda.spring.criteriajpa.service.advisor;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.persistence.EntityManagerFactory;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.alfredorueda.spring.criteriajpa.service.dto.IndexAdvisorReport;
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Recommends the indexes serving the criteria queries recorded by the {@link QueryWorkload}.
+ * <p>
+ * Each recorded query is reduced to the columns of its table it filters with an index friendly operator: the equality
+ * ({@code eq}, {@code in} and {@code unspecified}) columns first, then one range column, or else the sort columns.
+ * Other operators ({@code contains}, {@code ne}, {@code notIn}...) and filters on joined tables, except the foreign key
+ * of a to-one association, cannot use an index of the table and are left out. Queries already served by an existing
+ * index, whose leading columns are the columns of the query, are not considered; the others are merged into as few
+ * indexes as possible, the columns of a query being a prefix of the columns of its index. Indexes are ranked by the
+ * total duration of the queries they would serve.
+ */
+@Service
+public class IndexAdvisor {
+
+    private static final String ROOT_ALIAS = "e";
+
+    private static final Set<String> EQUALITY_OPERATORS = Set.of("eq", "in", "unspecified");
+
+    private static final Map<String, String> SQL_OPERATORS = Map.of(
+        "eq",
+        " = ?",
+        "in",
+        " in (?)",
+        "gt",
+        " > ?",
+        "gte",
+        " >= ?",
+        "lt",
+        " < ?",
+        "lte",
+        " <= ?"
+    );
+
+    private static final int MAX_INDEX_NAME_LENGTH = 64;
+
+    private static final int VERIFIED_PAGE_SIZE = 20;
+
+    private final Logger log = LoggerFactory.getLogger(IndexAdvisor.class);
+
+    private final QueryWorkload queryWorkload;
+
+    private final SessionFactoryImplementor sessionFactory;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int maxIndexColumns;
+
+    public IndexAdvisor(
+        QueryWorkload queryWorkload,
+        EntityManagerFactory entityManagerFactory,
+        JdbcTemplate jdbcTemplate,
+        ApplicationProperties applicationProperties
+    ) {
+        this.queryWorkload = queryWorkload;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxIndexColumns = applicationProperties.getAdvisor().getMaxIndexColumns();
+    }
+
+    /**
+     * Recommend indexes for the recorded workload.
+     *
+     * @return the recorded queries and the recommended indexes.
+     */
+    public IndexAdvisorReport advise() {
+        return jdbcTemplate.execute((ConnectionCallback<IndexAdvisorReport>) connection -> advise(connection, false));
+    }
+
+    /**
+     * Recommend indexes for the recorded workload, and verify that H2 would use them: each index is created, the query
+     * plan of the heaviest query it serves is explained with values sampled from the table, and the index is dropped.
+     *
+     * @return the recorded queries and the verified recommended indexes.
+     * @throws IllegalStateException if the database is not H2.
+     */
+    public IndexAdvisorReport verify() {
+        return jdbcTemplate.execute(
+            (ConnectionCallback<IndexAdvisorReport>) connection -> {
+                if (!"H2".equals(connection.getMetaData().getDatabaseProductName())) {
+                    throw new IllegalStateException("Recommended indexes can only be verified on H2");
+                }
+                connection.setAutoCommit(true);
+                return advise(connection, true);
+            }
+        );
+    }
+
+    /**
+     * Write the recommended indexes as a Liquibase changelog, with one change set per index which is skipped if the
+     * index already exists.
+     *
+     * @return the XML changelog.
+     */
+    public String changelog() {
+        IndexAdvisorReport report = advise();
+        String id = DateTimeFormatter.ofPattern("yyyyMMddHHmmss").format(LocalDateTime.now(ZoneOffset.UTC));
+        StringBuilder xml = new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n")
+            .append("<databaseChangeLog\n")
+            .append("    xmlns=\"http://www.liquibase.org/xml/ns/dbchangelog\"\n")
+            .append("    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n")
+            .append("    xsi:schemaLocation=\"http://www.liquibase.org/xml/ns/dbchangelog ")
+            .append("http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-latest.xsd\">\n");
+        int changeSet = 0;
+        for (IndexAdvisorReport.Recommendation recommendation : report.getRecommendations()) {
+            xml
+                .append("\n    <!--\n")
+                .append("        Recommended by the index advisor: ")
+                .append(recommendation.getExecutions())
+                .append(" executions, ")
+                .append(recommendation.getTotalMillis())
+                .append(" ms in total.\n")
+                .append("    -->\n")
+                .append("    <changeSet id=\"")
+                .append(id)
+                .append('-')
+                .append(++changeSet)
+                .append("\" author=\"jhipster\">\n")
+                .append("        <preConditions onFail=\"MARK_RAN\">\n")
+                .append("            <not>\n")
+                .append("                <indexExists tableName=\"")
+                .append(recommendation.getTable())
+                .append("\" indexName=\"")
+                .append(recommendation.getName())
+                .append("\"/>\n")
+                .append("            </not>\n")
+                .append("        </preConditions>\n")
+                .append("        <createIndex tableName=\"")
+                .append(recommendation.getTable())
+                .append("\" indexName=\"")
+                .append(recommendation.getName())
+                .append("\">\n");
+            recommendation.getColumns().forEach(column -> xml.append("            <column name=\"").append(column).append("\"/>\n"));
+            xml.append("        </createIndex>\n").append("    </changeSet>\n");
+        }
+        return xml.append("</databaseChangeLog>\n").toString();
+    }
+
+    private IndexAdvisorReport advise(Connection connection, boolean verify) throws SQLException {
+        IndexAdvisorReport report = new IndexAdvisorReport();
+        report.setDroppedExecutions(queryWorkload.getDropped());
+        List<Usage> usages = new ArrayList<>();
+        for (QueryWorkload.Entry entry : queryWorkload.getEntries()) {
+            usages.add(resolve(entry));
+        }
+        usages.sort(Comparator.comparingLong((Usage usage) -> usage.entry.getTotalNanos()).reversed());
+        usages.forEach(usage -> report.getQueries().add(usage.report));
+
+        Map<String, Map<String, List<String>>> existingIndexes = new HashMap<>();
+        List<Usage> candidates = new ArrayList<>();
+        for (Usage usage : usages) {
+            if (usage.columns.isEmpty()) {
+                continue;
+            }
+            Map<String, List<String>> indexes = existingIndexes.get(usage.table);
+            if (indexes == null) {
+                indexes = existingIndexes(connection, usage.table);
+                existingIndexes.put(usage.table, indexes);
+            }
+            usage.report.setIndex(indexFor(indexes, usage.columns));
+            if (usage.report.getIndex() == null) {
+                candidates.add(usage);
+            }
+        }
+
+        // the widest indexes first, so that the narrower ones are merged into them
+        candidates.sort(Comparator.comparingInt((Usage usage) -> usage.columns.size()).reversed());
+        List<Index> recommended = new ArrayList<>();
+        for (Usage usage : candidates) {
+            Index index = recommended
+                .stream()
+                .filter(i -> i.table.equals(usage.table) && startsWith(i.columns, usage.columns))
+                .findFirst()
+                .orElse(null);
+            if (index == null) {
+                index = new Index(usage.table, usage.columns, usage);
+                recommended.add(index);
+            }
+            index.add(usage);
+        }
+        recommended.sort(Comparator.comparingLong((Index index) -> index.totalNanos).reversed());
+
+        for (Index index : recommended) {
+            IndexAdvisorReport.Recommendation recommendation = new IndexAdvisorReport.Recommendation();
+            recommendation.setTable(index.table);
+            recommendation.setName(indexName(index.table, index.columns));
+            recommendation.setColumns(index.columns);
+            recommendation.setExecutions(index.executions);
+            recommendation.setTotalMillis(millis(index.totalNanos));
+            index.usages.forEach(usage -> usage.report.setIndex(recommendation.getName()));
+            if (verify) {
+                verify(connection, recommendation, index.heaviest);
+            }
+            report.getRecommendations().add(recommendation);
+        }
+        return report;
+    }
+
+    /**
+     * Map the shape and the sort of the recorded queries to the columns of the table of their entity.
+     * <p>
+     * The tokens of a shape are the joins, such as {@code left join e.team t}, the filters, such as {@code t.id.eq}, and the
+     * distinct flag.
+     */
+    private Usage resolve(QueryWorkload.Entry entry) {
+        AbstractEntityPersister persister = (AbstractEntityPersister) sessionFactory
+            .getMetamodel()
+            .entityPersister(entry.getEntityClass());
+        Map<String, String> joins = new HashMap<>();
+        List<Condition> conditions = new ArrayList<>();
+        for (String token : entry.getShape().split(";")) {
+            if (token.isEmpty() || token.contains("=")) {
+                continue;
+            }
+            if (token.contains(" ")) {
+                String[] words = token.split(" ");
+                joins.put(words[words.length - 1], words[words.length - 2].substring(ROOT_ALIAS.length() + 1));
+                continue;
+            }
+            int operatorStart = token.lastIndexOf('.');
+            String operator = token.substring(operatorStart + 1);
+            String column = column(persister, joins, token.substring(0, operatorStart));
+            if (column != null && (EQUALITY_OPERATORS.contains(operator) || SQL_OPERATORS.containsKey(operator))) {
+                conditions.add(new Condition(column, operator));
+            }
+        }
+        List<String> sortColumns = new ArrayList<>();
+        for (String property : entry.getSortProperties()) {
+            String column = column(persister, joins, ROOT_ALIAS + "." + property);
+            if (column == null) {
+                break;
+            }
+            sortColumns.add(column);
+        }
+
+        IndexAdvisorReport.QueryUsage report = new IndexAdvisorReport.QueryUsage();
+        report.setEntity(entry.getEntityClass().getSimpleName());
+        report.setShape(entry.getShape());
+        report.setSort(entry.getSortProperties());
+        report.setExecutions(entry.getExecutions());
+        report.setTotalMillis(millis(entry.getTotalNanos()));
+        report.setMaxMillis(millis(entry.getMaxNanos()));
+        String table = persister.getTableName();
+        return new Usage(entry, report, table, conditions, sortColumns, indexColumns(persister, conditions, sortColumns));
+    }
+
+    /**
+     * The column of the table of the entity a JPQL path reads, or null if it is not a single column of the table.
+     */
+    private String column(AbstractEntityPersister persister, Map<String, String> joins, String path) {
+        int dot = path.indexOf('.');
+        String alias = path.substring(0, dot);
+        String property = path.substring(dot + 1);
+        if (ROOT_ALIAS.equals(alias)) {
+            if (property.equals(persister.getIdentifierPropertyName())) {
+                return persister.getIdentifierColumnNames()[0];
+            }
+            return singleColumn(persister, property);
+        }
+        String association = joins.get(alias);
+        if (association == null) {
+            return null;
+        }
+        // only the id of a to-one association is a column of the table: its foreign key
+        Type type = persister.getPropertyType(association);
+        if (type instanceof EntityType && property.equals(((EntityType) type).getIdentifierOrUniqueKeyPropertyName(sessionFactory))) {
+            return singleColumn(persister, association);
+        }
+        return null;
+    }
+
+    private static String singleColumn(AbstractEntityPersister persister, String property) {
+        try {
+            String[] columns = persister.getPropertyColumnNames(property);
+            return columns.length == 1 ? columns[0] : null;
+        } catch (MappingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The columns of the index serving a query: its equality columns, then its first range column or else its sort columns.
+     * The primary key alone serves the queries whose first column is the id, and ends the columns of any other index.
+     */
+    private List<String> indexColumns(AbstractEntityPersister persister, List<Condition> conditions, List<String> sortColumns) {
+        String idColumn = persister.getIdentifierColumnNames()[0];
+        List<String> columns = new ArrayList<>();
+        for (Condition condition : conditions) {
+            if (EQUALITY_OPERATORS.contains(condition.operator) && !columns.contains(condition.column)) {
+                columns.add(condition.column);
+            }
+        }
+        if (columns.contains(idColumn)) {
+            return List.of(idColumn);
+        }
+        String range = conditions
+            .stream()
+            .filter(condition -> !EQUALITY_OPERATORS.contains(condition.operator) && !columns.contains(condition.column))
+            .map(condition -> condition.column)
+            .findFirst()
+            .orElse(null);
+        if (range != null) {
+            columns.add(range);
+        } else {
+            sortColumns.stream().filter(column -> !columns.contains(column)).forEach(columns::add);
+        }
+        int id = columns.indexOf(idColumn);
+        if (id == 0) {
+            return List.of(idColumn);
+        }
+        int size = Math.min(maxIndexColumns, id > 0 ? id : columns.size());
+        return List.copyOf(columns.subList(0, size));
+    }
+
+    private static Map<String, List<String>> existingIndexes(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String name = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+        Map<String, SortedMap<Short, String>> indexes = new HashMap<>();
+        try (ResultSet rows = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(), name, false, true)) {
+            while (rows.next()) {
+                String index = rows.getString("INDEX_NAME");
+                String column = rows.getString("COLUMN_NAME");
+                if (index != null && column != null) {
+                    indexes
+                        .computeIfAbsent(index.toLowerCase(Locale.ROOT), i -> new TreeMap<>())
+                        .put(rows.getShort("ORDINAL_POSITION"), column.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        Map<String, List<String>> columns = new HashMap<>();
+        indexes.forEach((index, positions) -> columns.put(index, new ArrayList<>(positions.values())));
+        return columns;
+    }
+
+    private static String indexFor(Map<String, List<String>> indexes, List<String> columns) {
+        return indexes
+            .entrySet()
+            .stream()
+            .filter(index -> startsWith(index.getValue(), columns))
+            .map(Map.Entry::getKey)
+            .sorted()
+            .findFirst()
+            .orElse(null);
+    }
+
+    private static boolean startsWith(List<String> columns, List<String> prefix) {
+        return columns.size() >= prefix.size() && columns.subList(0, prefix.size()).equals(prefix);
+    }
+
+    private static String indexName(String table, List<String> columns) {
+        String name = "idx_" + table + "__" + String.join("_", columns);
+        return name.length() > MAX_INDEX_NAME_LENGTH ? name.substring(0, MAX_INDEX_NAME_LENGTH) : name;
+    }
+
+    private void verify(Connection connection, IndexAdvisorReport.Recommendation recommendation, Usage usage) throws SQLException {
+        List<Object> values = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("select * from ").append(usage.table);
+        String separator = " where ";
+        for (Condition condition : usage.conditions) {
+            sql.append(separator).append(condition.column);
+            separator = " and ";
+            if ("unspecified".equals(condition.operator)) {
+                sql.append(" is null");
+                continue;
+            }
+            Object value = sampleValue(connection, usage.table, condition.column);
+            if (value == null) {
+                recommendation.setPlan("No value of " + usage.table + "." + condition.column + " to verify the index with");
+                return;
+            }
+            sql.append(SQL_OPERATORS.get(condition.operator));
+            values.add(value);
+        }
+        if (!usage.sortColumns.isEmpty()) {
+            // sorted queries are paged, reading the first rows in index order may beat sorting all the matching rows
+            sql
+                .append(" order by ")
+                .append(String.join(", ", usage.sortColumns))
+                .append(" fetch first ")
+                .append(VERIFIED_PAGE_SIZE)
+                .append(" rows only");
+        }
+
+        String plan;
+        try (Statement statement = connection.createStatement()) {
+            String columns = String.join(", ", recommendation.getColumns());
+            statement.execute("create index " + recommendation.getName() + " on " + usage.table + " (" + columns + ")");
+            try (PreparedStatement explain = connection.prepareStatement("explain " + sql)) {
+                for (int i = 0; i < values.size(); i++) {
+                    explain.setObject(i + 1, values.get(i));
+                }
+                try (ResultSet rows = explain.executeQuery()) {
+                    rows.next();
+                    plan = rows.getString(1);
+                }
+            } finally {
+                statement.execute("drop index " + recommendation.getName());
+            }
+        }
+        recommendation.setPlan(plan);
+        recommendation.setVerified(plan.toLowerCase(Locale.ROOT).contains(recommendation.getName().toLowerCase(Locale.ROOT)));
+        log.debug("Verified index {}: {}", recommendation, plan);
+    }
+
+    private static Object sampleValue(Connection connection, String table, String column) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.setMaxRows(1);
+            try (ResultSet rows = statement.executeQuery("select " + column + " from " + table + " where " + column + " is not null")) {
+                return rows.next() ? rows.getObject(1) : null;
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    /**
+     * A filter of a query on a column of the table, with an index friendly operator.
+     */
+    private static final class Condition {
+
+        private final String column;
+
+        private final String operator;
+
+        Condition(String column, String operator) {
+            this.column = column;
+            this.operator = operator;
+        }
+    }
+
+    /**
+     * A recommended index, with the queries it serves.
+     */
+    private static final class Index {
+
+        private final String table;
+
+        private final List<String> columns;
+
+        private final List<Usage> usages = new ArrayList<>();
+
+        private Usage heaviest;
+
+        private long executions;
+
+        private long totalNanos;
+
+        Index(String table, List<String> columns, Usage heaviest) {
+            this.table = table;
+            this.columns = columns;
+            this.heaviest = heaviest;
+        }
+
+        void add(Usage usage) {
+            usages.add(usage);
+            executions += usage.entry.getExecutions();
+            totalNanos += usage.entry.getTotalNanos();
+            if (usage.entry.getTotalNanos() > heaviest.entry.getTotalNanos()) {
+                heaviest = usage;
+            }
+        }
+    }
+
+    /**
+     * The recorded executions of a query, resolved to the columns of its table.
+     */
+    private static final class Usage {
+
+        private final QueryWorkload.Entry entry;
+
+        private final IndexAdvisorReport.QueryUsage report;
+
+        private final String table;
+
+        private final List<Condition> conditions;
+
+        private final List<String> sortColumns;
+
+        private final List<String> columns;
+
+        Usage(
+            QueryWorkload.Entry entry,
+            IndexAdvisorReport.QueryUsage report,
+            String table,
+            List<Condition> conditions,
+            List<String> sortColumns,
+            List<String> columns
+        ) {
+            this.entry = entry;
+            this.report = report;
+            this.table = table;
+            this.conditions = conditions;
+            this.sortColumns = sortColumns;
+            this.columns = columns;
+        }
+    }
+}
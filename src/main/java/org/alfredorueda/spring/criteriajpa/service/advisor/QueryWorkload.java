@@ -0,0 +1,186 @@
+package org.alfredorueda.spring.criteriajpa.service.advisor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+/**
+ * The criteria queries executed against the database, grouped by entity, criteria shape and sort properties, with
+ * their number of executions and latency.
+ * <p>
+ * Only the queries reaching the database are recorded: results served by the query result cache or the columnar store
+ * cost no index. At most {@code application.advisor.max-shapes} groups are kept, executions of other groups are only
+ * counted as dropped.
+ */
+@Component
+public class QueryWorkload {
+
+    private final Map<Key, Stats> groups = new ConcurrentHashMap<>();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final int maxShapes;
+
+    public QueryWorkload(ApplicationProperties applicationProperties) {
+        this.maxShapes = applicationProperties.getAdvisor().getMaxShapes();
+    }
+
+    /**
+     * Record one execution of a query.
+     *
+     * @param entityClass the queried entity.
+     * @param shape the shape of the criteria, as computed by the query plan builder.
+     * @param sort the sort of the query.
+     * @param nanos the duration of the query.
+     */
+    public void record(Class<?> entityClass, String shape, Sort sort, long nanos) {
+        List<String> sortProperties = sort.stream().map(Sort.Order::getProperty).collect(Collectors.toList());
+        Key key = new Key(entityClass, shape, sortProperties);
+        Stats stats = groups.get(key);
+        if (stats == null) {
+            if (groups.size() >= maxShapes) {
+                dropped.incrementAndGet();
+                return;
+            }
+            stats = groups.computeIfAbsent(key, k -> new Stats());
+        }
+        stats.executions.increment();
+        stats.totalNanos.add(nanos);
+        stats.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return the recorded groups of queries.
+     */
+    public List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<>(groups.size());
+        groups.forEach((key, stats) ->
+            entries.add(
+                new Entry(
+                    key.entityClass,
+                    key.shape,
+                    key.sortProperties,
+                    stats.executions.sum(),
+                    stats.totalNanos.sum(),
+                    stats.maxNanos.get()
+                )
+            )
+        );
+        return entries;
+    }
+
+    /**
+     * @return the number of executions which were not recorded because too many groups were already recorded.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Forget all the recorded executions.
+     */
+    public void reset() {
+        groups.clear();
+        dropped.set(0);
+    }
+
+    /**
+     * The executions of the queries of one entity, criteria shape and sort properties.
+     */
+    public static final class Entry {
+
+        private final Class<?> entityClass;
+
+        private final String shape;
+
+        private final List<String> sortProperties;
+
+        private final long executions;
+
+        private final long totalNanos;
+
+        private final long maxNanos;
+
+        Entry(Class<?> entityClass, String shape, List<String> sortProperties, long executions, long totalNanos, long maxNanos) {
+            this.entityClass = entityClass;
+            this.shape = shape;
+            this.sortProperties = sortProperties;
+            this.executions = executions;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public Class<?> getEntityClass() {
+            return entityClass;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public List<String> getSortProperties() {
+            return sortProperties;
+        }
+
+        public long getExecutions() {
+            return executions;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+    }
+
+    private static final class Key {
+
+        private final Class<?> entityClass;
+
+        private final String shape;
+
+        private final List<String> sortProperties;
+
+        Key(Class<?> entityClass, String shape, List<String> sortProperties) {
+            this.entityClass = entityClass;
+            this.shape = shape;
+            this.sortProperties = sortProperties;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return entityClass.equals(key.entityClass) && shape.equals(key.shape) && sortProperties.equals(key.sortProperties);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(entityClass, shape, sortProperties);
+        }
+    }
+
+    private static final class Stats {
+
+        private final LongAdder executions = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+    }
+}
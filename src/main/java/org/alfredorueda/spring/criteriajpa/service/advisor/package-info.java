@@ -0,0 +1,4 @@
+/**
+ * Workload-driven index advisor of the criteria queries.
+ */
+package org.alfredorueda.spring.criteriajpa.service.advisor;
@@ -0,0 +1,57 @@
+package org.alfredorueda.spring.criteriajpa.service.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * The sampled accesses to the caches, from which the {@link CacheSizingAdvisor} recommends their sizes.
+ * <p>
+ * The second-level cache regions record the reads of Hibernate, and the query result caches the reads of the
+ * {@link QueryResultCache}. A fraction {@code application.cache.sampling.rate} of the keys of every cache is sampled, up
+ * to {@code application.cache.sampling.max-keys} keys per cache.
+ */
+@Component
+public class CacheAccessSampler {
+
+    private final Map<String, MissRatioCurve> curves = new ConcurrentHashMap<>();
+
+    private final double rate;
+
+    private final int maxKeys;
+
+    public CacheAccessSampler(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Cache.Sampling sampling = applicationProperties.getCache().getSampling();
+        this.rate = sampling.getRate();
+        this.maxKeys = sampling.getMaxKeys();
+    }
+
+    /**
+     * Record a read of a cache, whether it hits or not.
+     *
+     * @param cacheName the name of the cache.
+     * @param key the read key.
+     */
+    public void record(String cacheName, Object key) {
+        if (rate > 0) {
+            curves.computeIfAbsent(cacheName, name -> new MissRatioCurve(rate, maxKeys)).record(key);
+        }
+    }
+
+    /**
+     * Forget all the recorded accesses.
+     */
+    public void reset() {
+        curves.values().forEach(MissRatioCurve::reset);
+    }
+
+    /**
+     * @param cacheName the name of a cache.
+     * @return the miss ratio curve of the cache, null when none of its reads was recorded.
+     */
+    MissRatioCurve.Snapshot snapshot(String cacheName) {
+        MissRatioCurve curve = curves.get(cacheName);
+        return curve != null ? curve.snapshot() : null;
+    }
+}
@@ -0,0 +1,140 @@
+package org.alfredorueda.spring.criteriajpa.service.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.management.CacheStatisticsMXBean;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import org.ehcache.core.InternalCache;
+import org.ehcache.core.internal.statistics.DefaultCacheStatistics;
+import org.ehcache.core.statistics.CacheStatistics;
+import org.ehcache.core.statistics.TierStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Meters of the tiers and latency of the Ehcache caches, completing the {@code cache.gets}, {@code cache.puts} and
+ * {@code cache.evictions} meters which Spring Boot registers for every cache:
+ * <ul>
+ *     <li>{@code cache.gets.latency}, the average duration of a read in microseconds;</li>
+ *     <li>{@code cache.tier.entries}, {@code cache.tier.bytes} and {@code cache.tier.evictions}, tagged with the
+ *     {@code tier}, {@code onheap} or {@code offheap}.</li>
+ * </ul>
+ * The off-heap tier measures the bytes of its serialized entries. The heap tier is sized in entries and doesn't measure
+ * them: its bytes are estimated from the average size of the off-heap entries, and not reported without an off-heap
+ * tier.
+ */
+@Component
+public class CacheRegionMetrics {
+
+    public static final String ON_HEAP = "OnHeap";
+
+    public static final String OFF_HEAP = "OffHeap";
+
+    private final Logger log = LoggerFactory.getLogger(CacheRegionMetrics.class);
+
+    private final Map<String, CacheStatistics> statistics = new ConcurrentHashMap<>();
+
+    public CacheRegionMetrics(CacheManager cacheManager, MeterRegistry meterRegistry) {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (String cacheName : cacheManager.getCacheNames()) {
+            Cache<Object, Object> cache = cacheManager.getCache(cacheName);
+            CacheStatistics cacheStatistics = new DefaultCacheStatistics((InternalCache<?, ?>) cache.unwrap(org.ehcache.Cache.class));
+            statistics.put(cacheName, cacheStatistics);
+            cacheStatistics.getTierStatistics().forEach((tier, tierStatistics) -> bindTier(meterRegistry, cacheName, tier));
+            CacheStatisticsMXBean mxBean = statisticsMXBean(mBeanServer, cacheName);
+            if (mxBean != null) {
+                Gauge
+                    .builder("cache.gets.latency", mxBean, CacheStatisticsMXBean::getAverageGetTime)
+                    .tag("cache", cacheName)
+                    .baseUnit("microseconds")
+                    .description("The average duration of the reads of the cache")
+                    .strongReference(true)
+                    .register(meterRegistry);
+            }
+        }
+    }
+
+    /**
+     * @param cacheName the name of a cache.
+     * @return the statistics of the cache, null when it is unknown.
+     */
+    public CacheStatistics getStatistics(String cacheName) {
+        return statistics.get(cacheName);
+    }
+
+    /**
+     * @param cacheName the name of a cache.
+     * @return the average size of an entry, from the off-heap tier, or null when the cache has no off-heap entry.
+     */
+    public Double getAverageEntryBytes(String cacheName) {
+        CacheStatistics cacheStatistics = statistics.get(cacheName);
+        TierStatistics offHeap = cacheStatistics != null ? cacheStatistics.getTierStatistics().get(OFF_HEAP) : null;
+        if (offHeap == null || offHeap.getMappings() <= 0) {
+            return null;
+        }
+        return (double) offHeap.getOccupiedByteSize() / offHeap.getMappings();
+    }
+
+    private void bindTier(MeterRegistry meterRegistry, String cacheName, String tier) {
+        String tag = tier.toLowerCase(Locale.ROOT);
+        Gauge
+            .builder("cache.tier.entries", this, metrics -> metrics.tier(cacheName, tier).getMappings())
+            .tags("cache", cacheName, "tier", tag)
+            .description("The number of entries in the tier of the cache")
+            .register(meterRegistry);
+        Gauge
+            .builder("cache.tier.bytes", this, metrics -> metrics.tierBytes(cacheName, tier))
+            .tags("cache", cacheName, "tier", tag)
+            .baseUnit("bytes")
+            .description("The size of the entries in the tier of the cache, estimated for the heap tier")
+            .register(meterRegistry);
+        FunctionCounter
+            .builder("cache.tier.evictions", this, metrics -> metrics.tier(cacheName, tier).getEvictions())
+            .tags("cache", cacheName, "tier", tag)
+            .description("The number of entries evicted from the tier of the cache")
+            .register(meterRegistry);
+    }
+
+    private TierStatistics tier(String cacheName, String tier) {
+        return statistics.get(cacheName).getTierStatistics().get(tier);
+    }
+
+    private double tierBytes(String cacheName, String tier) {
+        TierStatistics tierStatistics = tier(cacheName, tier);
+        long occupied = tierStatistics.getOccupiedByteSize();
+        if (occupied >= 0) {
+            return occupied;
+        }
+        Double averageEntryBytes = getAverageEntryBytes(cacheName);
+        return averageEntryBytes != null ? tierStatistics.getMappings() * averageEntryBytes : Double.NaN;
+    }
+
+    private CacheStatisticsMXBean statisticsMXBean(MBeanServer mBeanServer, String cacheName) {
+        try {
+            Set<ObjectName> names = mBeanServer.queryNames(
+                new ObjectName("javax.cache:type=CacheStatistics,CacheManager=*,Cache=" + cacheName),
+                null
+            );
+            if (names.isEmpty()) {
+                log.debug("No statistics MBean for cache {}, its latency is not measured", cacheName);
+                return null;
+            }
+            return JMX.newMXBeanProxy(mBeanServer, names.iterator().next(), CacheStatisticsMXBean.class);
+        } catch (MalformedObjectNameException e) {
+            log.debug("No statistics MBean for cache {}: {}", cacheName, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.alfredorueda.spring.criteriajpa.service.cache;
+
+import java.util.TreeSet;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import org.alfredorueda.spring.criteriajpa.service.dto.CacheSizingReport;
+import org.ehcache.config.SizedResourcePool;
+import org.ehcache.config.ResourceType;
+import org.ehcache.core.statistics.CacheStatistics;
+import org.ehcache.core.statistics.TierStatistics;
+import org.springframework.stereotype.Service;
+
+/**
+ * Recommends the number of entries of the caches for a target hit ratio, from the miss ratio curves of their sampled
+ * reads.
+ * <p>
+ * The curves are those of LRU caches, while the heap tier of Ehcache evicts the least recently used of a few sampled
+ * entries: the predicted hit ratio of the current size is reported next to the observed one to show how close they
+ * are.
+ */
+@Service
+public class CacheSizingAdvisor {
+
+    private final CacheManager cacheManager;
+
+    private final CacheAccessSampler sampler;
+
+    private final CacheRegionMetrics metrics;
+
+    public CacheSizingAdvisor(CacheManager cacheManager, CacheAccessSampler sampler, CacheRegionMetrics metrics) {
+        this.cacheManager = cacheManager;
+        this.sampler = sampler;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Recommend the size of every sampled cache.
+     *
+     * @param targetHitRatio the hit ratio to reach, between 0 and 1.
+     * @return the recommendations.
+     */
+    public CacheSizingReport advise(double targetHitRatio) {
+        CacheSizingReport report = new CacheSizingReport();
+        report.setTargetHitRatio(targetHitRatio);
+        TreeSet<String> cacheNames = new TreeSet<>();
+        cacheManager.getCacheNames().forEach(cacheNames::add);
+        for (String cacheName : cacheNames) {
+            MissRatioCurve.Snapshot snapshot = sampler.snapshot(cacheName);
+            if (snapshot != null) {
+                report.getRegions().add(region(cacheName, snapshot, targetHitRatio));
+            }
+        }
+        return report;
+    }
+
+    private CacheSizingReport.Region region(String cacheName, MissRatioCurve.Snapshot snapshot, double targetHitRatio) {
+        CacheSizingReport.Region region = new CacheSizingReport.Region();
+        region.setCache(cacheName);
+        long heapEntries = heapEntries(cacheManager.getCache(cacheName));
+        region.setHeapEntries(heapEntries);
+        CacheStatistics statistics = metrics.getStatistics(cacheName);
+        TierStatistics heap = statistics != null ? statistics.getTierStatistics().get(CacheRegionMetrics.ON_HEAP) : null;
+        if (heap != null && statistics.getCacheGets() > 0) {
+            region.setObservedHitRatio(round((double) heap.getHits() / statistics.getCacheGets()));
+        }
+        region.setAccesses(snapshot.getAccesses());
+        region.setSampledAccesses(snapshot.getSampledAccesses());
+        region.setSampledKeys(snapshot.getSampledKeys());
+        region.setSamplingRate(round(snapshot.getRate()));
+        region.setPredictedHitRatio(round(snapshot.hitRatio(heapEntries)));
+        region.setMaxHitRatio(round(snapshot.getMaxHitRatio()));
+        Long recommendedEntries = snapshot.entriesFor(targetHitRatio);
+        region.setRecommendedEntries(recommendedEntries);
+        Double averageEntryBytes = metrics.getAverageEntryBytes(cacheName);
+        if (recommendedEntries != null && averageEntryBytes != null) {
+            region.setRecommendedBytes(Math.round(recommendedEntries * averageEntryBytes));
+        }
+        for (long entries = 1; entries < 2 * snapshot.getMaxEntries(); entries *= 2) {
+            region.getCurve().add(new CacheSizingReport.Point(entries, round(snapshot.hitRatio(entries))));
+        }
+        return region;
+    }
+
+    private static long heapEntries(Cache<Object, Object> cache) {
+        SizedResourcePool heap = cache
+            .unwrap(org.ehcache.Cache.class)
+            .getRuntimeConfiguration()
+            .getResourcePools()
+            .getPoolForResource(ResourceType.Core.HEAP);
+        return heap != null ? heap.getSize() : 0;
+    }
+
+    private static double round(double ratio) {
+        return Math.round(ratio * 10000) / 10000.0;
+    }
+}
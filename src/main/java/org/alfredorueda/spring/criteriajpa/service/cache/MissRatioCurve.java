@@ -0,0 +1,271 @@
+package org.alfredorueda.spring.criteriajpa.service.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The miss ratio curve of a cache, estimated from a spatially hashed sample of its keys.
+ * <p>
+ * A key is sampled when the hash of its {@code hashCode} is under a threshold, so all the accesses to a sampled key are
+ * sampled, and the sampled keys are a fraction of the keys equal to the sampling rate. For every access to a sampled
+ * key, the number of other sampled keys accessed since its previous access, divided by the rate, estimates the number
+ * of entries an LRU cache needs to hold the key until this access: the histogram of these reuse distances gives the hit
+ * ratio of every cache size at once.
+ * <p>
+ * When more than the maximum number of keys are sampled, the keys of highest hashes are forgotten and the threshold is
+ * lowered to their hash, and the recorded accesses are weighted down to the lower rate.
+ */
+final class MissRatioCurve {
+
+    private static final int HASH_BITS = 24;
+
+    private static final long HASH_RANGE = 1L << HASH_BITS;
+
+    private final int maxKeys;
+
+    private final LongAdder accesses = new LongAdder();
+
+    private volatile long threshold;
+
+    private double rate;
+
+    /**
+     * The time of the last access of every sampled key, the time being the number of sampled accesses before it.
+     */
+    private final Map<Object, Integer> lastAccess = new HashMap<>();
+
+    private final NavigableMap<Long, List<Object>> keysByHash = new TreeMap<>();
+
+    /**
+     * Fenwick tree of the last access times: its prefix sums count the keys last accessed up to a time.
+     */
+    private int[] times;
+
+    private int clock;
+
+    /**
+     * The weight of the sampled accesses, by estimated number of entries needed to hit.
+     */
+    private final NavigableMap<Long, Double> histogram = new TreeMap<>();
+
+    private double coldMisses;
+
+    private double references;
+
+    MissRatioCurve(double rate, int maxKeys) {
+        this.maxKeys = maxKeys;
+        this.threshold = (long) (Math.min(Math.max(rate, 0), 1) * HASH_RANGE);
+        this.rate = (double) threshold / HASH_RANGE;
+        this.times = new int[4 * maxKeys + 1];
+    }
+
+    /**
+     * Record an access to a key, sampled or not.
+     *
+     * @param key the key, which must implement {@code hashCode}.
+     */
+    void record(Object key) {
+        accesses.increment();
+        long hash = hash(key);
+        if (hash >= threshold) {
+            return;
+        }
+        synchronized (this) {
+            if (hash >= threshold) {
+                return;
+            }
+            references++;
+            Integer previous = lastAccess.remove(key);
+            if (previous == null) {
+                coldMisses++;
+                keysByHash.computeIfAbsent(hash, h -> new ArrayList<>(1)).add(key);
+            } else {
+                long distance = count(clock) - count(previous);
+                histogram.merge(1 + Math.round(distance / rate), 1d, Double::sum);
+                add(previous, -1);
+            }
+            if (clock + 1 == times.length) {
+                compact();
+            }
+            clock++;
+            add(clock, 1);
+            lastAccess.put(key, clock);
+            while (lastAccess.size() > maxKeys) {
+                forgetHighestHash();
+            }
+        }
+    }
+
+    /**
+     * Forget all the recorded accesses, keeping the current sampling rate.
+     */
+    synchronized void reset() {
+        accesses.reset();
+        lastAccess.clear();
+        keysByHash.clear();
+        times = new int[times.length];
+        clock = 0;
+        histogram.clear();
+        coldMisses = 0;
+        references = 0;
+    }
+
+    synchronized Snapshot snapshot() {
+        return new Snapshot(accesses.sum(), rate, lastAccess.size(), new TreeMap<>(histogram), coldMisses, references);
+    }
+
+    private void forgetHighestHash() {
+        Map.Entry<Long, List<Object>> highest = keysByHash.pollLastEntry();
+        for (Object key : highest.getValue()) {
+            add(lastAccess.remove(key), -1);
+        }
+        double lowered = (double) highest.getKey() / HASH_RANGE;
+        double scale = lowered / rate;
+        histogram.replaceAll((entries, weight) -> weight * scale);
+        coldMisses *= scale;
+        references *= scale;
+        rate = lowered;
+        threshold = highest.getKey();
+    }
+
+    /**
+     * Renumber the last access times from 1, keeping their order, once the clock reaches the size of the tree.
+     */
+    private void compact() {
+        List<Map.Entry<Object, Integer>> entries = new ArrayList<>(lastAccess.entrySet());
+        entries.sort(Map.Entry.comparingByValue());
+        times = new int[times.length];
+        clock = 0;
+        for (Map.Entry<Object, Integer> entry : entries) {
+            clock++;
+            add(clock, 1);
+            entry.setValue(clock);
+        }
+    }
+
+    private void add(int time, int delta) {
+        for (int i = time; i < times.length; i += i & -i) {
+            times[i] += delta;
+        }
+    }
+
+    private int count(int time) {
+        int count = 0;
+        for (int i = time; i > 0; i -= i & -i) {
+            count += times[i];
+        }
+        return count;
+    }
+
+    private static long hash(Object key) {
+        long h = key.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h >>> (Long.SIZE - HASH_BITS);
+    }
+
+    /**
+     * The curve at one point in time.
+     */
+    static final class Snapshot {
+
+        private final long accesses;
+
+        private final double rate;
+
+        private final int sampledKeys;
+
+        private final NavigableMap<Long, Double> histogram;
+
+        private final double coldMisses;
+
+        private final double references;
+
+        private Snapshot(
+            long accesses,
+            double rate,
+            int sampledKeys,
+            NavigableMap<Long, Double> histogram,
+            double coldMisses,
+            double references
+        ) {
+            this.accesses = accesses;
+            this.rate = rate;
+            this.sampledKeys = sampledKeys;
+            this.histogram = histogram;
+            this.coldMisses = coldMisses;
+            this.references = references;
+        }
+
+        long getAccesses() {
+            return accesses;
+        }
+
+        double getRate() {
+            return rate;
+        }
+
+        int getSampledKeys() {
+            return sampledKeys;
+        }
+
+        /**
+         * @return the estimated number of sampled accesses, at the current rate.
+         */
+        long getSampledAccesses() {
+            return Math.round(references);
+        }
+
+        /**
+         * @return the hit ratio of a cache holding every key, bounded by the first accesses of the keys.
+         */
+        double getMaxHitRatio() {
+            return references > 0 ? 1 - coldMisses / references : 0;
+        }
+
+        /**
+         * @param entries the number of entries of an LRU cache.
+         * @return the estimated hit ratio of the cache.
+         */
+        double hitRatio(long entries) {
+            if (references == 0) {
+                return 0;
+            }
+            double hits = 0;
+            for (double weight : histogram.headMap(entries, true).values()) {
+                hits += weight;
+            }
+            return hits / references;
+        }
+
+        /**
+         * @param hitRatio the target hit ratio.
+         * @return the smallest number of entries of an LRU cache reaching the hit ratio, null when no size reaches it.
+         */
+        Long entriesFor(double hitRatio) {
+            double hits = 0;
+            for (Map.Entry<Long, Double> bucket : histogram.entrySet()) {
+                hits += bucket.getValue();
+                if (hits >= hitRatio * references) {
+                    return bucket.getKey();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the largest number of entries needed to hit, 0 when no key was accessed twice.
+         */
+        long getMaxEntries() {
+            return histogram.isEmpty() ? 0 : histogram.lastKey();
+        }
+    }
+}
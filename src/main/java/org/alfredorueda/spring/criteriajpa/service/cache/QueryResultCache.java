@@ -0,0 +1,186 @@
+package org.alfredorueda.spring.criteriajpa.service.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Cache of criteria query results, invalidated by generation counters.
+ * <p>
+ * Every entity class has a generation, which the services writing it bump with {@link #invalidate(Class)}. Results are
+ * cached under a key holding the generations of the entities they depend on, so a write makes all the results depending
+ * on the written entity unreachable; they are then dropped by the size and time to live limits of their cache.
+ * <p>
+ * Results never outlive a committed write:
+ * <ul>
+ *     <li>the generation is bumped when the write starts and again when its transaction completes;</li>
+ *     <li>while a write transaction is in flight, reads depending on its entity bypass the cache;</li>
+ *     <li>a result is only stored if the generations didn't change while it was loaded.</li>
+ * </ul>
+ * Each cache reports {@code criteria.result.cache.requests}, tagged with the cache name and a {@code result} of
+ * {@code hit}, {@code miss} or {@code bypass}. The reads which don't bypass the cache are sampled by the
+ * {@link CacheAccessSampler}.
+ */
+@Component
+public class QueryResultCache {
+
+    private final Logger log = LoggerFactory.getLogger(QueryResultCache.class);
+
+    private final Map<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, AtomicInteger> writers = new ConcurrentHashMap<>();
+
+    private final CacheManager cacheManager;
+
+    private final MeterRegistry meterRegistry;
+
+    private final CacheAccessSampler sampler;
+
+    private final boolean enabled;
+
+    public QueryResultCache(
+        CacheManager cacheManager,
+        MeterRegistry meterRegistry,
+        CacheAccessSampler sampler,
+        ApplicationProperties applicationProperties
+    ) {
+        this.cacheManager = cacheManager;
+        this.meterRegistry = meterRegistry;
+        this.sampler = sampler;
+        this.enabled = applicationProperties.getResultCache().isEnabled();
+    }
+
+    /**
+     * Get a result from the cache, or load and cache it.
+     *
+     * @param cacheName the name of the cache.
+     * @param key the key of the result, without the generations: it must implement {@code equals} and {@code hashCode}.
+     * @param dependencies the entity classes the result is computed from.
+     * @param loader the function loading the result, must not return null.
+     * @param <V> the type of the result.
+     * @return the result.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(String cacheName, Object key, Collection<Class<?>> dependencies, Supplier<V> loader) {
+        Cache<Object, Object> cache = enabled ? cacheManager.getCache(cacheName) : null;
+        long[] before = cache != null ? generations(dependencies) : null;
+        if (before == null) {
+            count(cacheName, "bypass");
+            return loader.get();
+        }
+        GenerationKey generationKey = new GenerationKey(key, before);
+        sampler.record(cacheName, generationKey);
+        V result = (V) cache.get(generationKey);
+        if (result != null) {
+            count(cacheName, "hit");
+            return result;
+        }
+        count(cacheName, "miss");
+        result = loader.get();
+        if (Arrays.equals(before, generations(dependencies))) {
+            cache.put(generationKey, result);
+        } else {
+            log.debug("Not caching result of {} in {}, written while loading", key, cacheName);
+        }
+        return result;
+    }
+
+    /**
+     * Invalidate the results depending on the given entity class. Must be called by every write of the entity, inside its
+     * transaction when there is one.
+     *
+     * @param entityClass the written entity class.
+     */
+    public void invalidate(Class<?> entityClass) {
+        AtomicLong generation = generations.computeIfAbsent(entityClass, k -> new AtomicLong());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            generation.incrementAndGet();
+            return;
+        }
+        AtomicInteger inFlight = writers.computeIfAbsent(entityClass, k -> new AtomicInteger());
+        inFlight.incrementAndGet();
+        generation.incrementAndGet();
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    generation.incrementAndGet();
+                    inFlight.decrementAndGet();
+                }
+            }
+        );
+    }
+
+    /**
+     * Read the generations of the given entity classes.
+     *
+     * @return the generations, or null when one of the entities is being written.
+     */
+    private long[] generations(Collection<Class<?>> dependencies) {
+        long[] result = new long[dependencies.size()];
+        int i = 0;
+        for (Class<?> dependency : dependencies) {
+            result[i++] = generations.computeIfAbsent(dependency, k -> new AtomicLong()).get();
+            AtomicInteger inFlight = writers.get(dependency);
+            if (inFlight != null && inFlight.get() > 0) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private void count(String cacheName, String result) {
+        meterRegistry.counter("criteria.result.cache.requests", "cache", cacheName, "result", result).increment();
+    }
+
+    private static final class GenerationKey {
+
+        private final Object key;
+
+        private final long[] generations;
+
+        private final int hashCode;
+
+        GenerationKey(Object key, long[] generations) {
+            this.key = key;
+            this.generations = generations;
+            this.hashCode = 31 * Objects.hashCode(key) + Arrays.hashCode(generations);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof GenerationKey)) {
+                return false;
+            }
+            GenerationKey that = (GenerationKey) o;
+            return Objects.equals(key, that.key) && Arrays.equals(generations, that.generations);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return key + "@" + Arrays.toString(generations);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.alfredorueda.spring.criteriajpa.service.cache.invalidation;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * An eviction to apply to the caches of the other instances.
+ */
+public final class CacheInvalidation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+        /**
+         * An entry of the second-level cache region of an entity, named by the entity name.
+         */
+        ENTITY,
+        /**
+         * An entry of the second-level cache region of a collection, named by the collection role, or the whole region
+         * when there is no key.
+         */
+        COLLECTION,
+        /**
+         * An entry of a cache of the cache manager, such as a user cache.
+         */
+        CACHE,
+        /**
+         * The query results depending on an entity, named by the entity class.
+         */
+        RESULTS,
+    }
+
+    private final Kind kind;
+
+    private final String name;
+
+    private final Serializable key;
+
+    private final long committedAt;
+
+    /**
+     * @param kind the kind of cache.
+     * @param name the name of the entity, collection or cache.
+     * @param key the key of the evicted entry, null to evict all the entries.
+     * @param committedAt the epoch milliseconds at which the write causing the eviction was committed.
+     */
+    public CacheInvalidation(Kind kind, String name, Serializable key, long committedAt) {
+        this.kind = kind;
+        this.name = name;
+        this.key = key;
+        this.committedAt = committedAt;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Serializable getKey() {
+        return key;
+    }
+
+    public long getCommittedAt() {
+        return committedAt;
+    }
+
+    /**
+     * Two invalidations are equal when they evict the same entries, whenever they were committed.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheInvalidation)) {
+            return false;
+        }
+        CacheInvalidation that = (CacheInvalidation) o;
+        return kind == that.kind && name.equals(that.name) && Objects.equals(key, that.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, name, key);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + name + (key != null ? "#" + key : "");
+    }
+}
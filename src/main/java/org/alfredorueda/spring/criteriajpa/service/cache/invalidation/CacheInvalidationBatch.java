@@ -0,0 +1,54 @@
+package org.alfredorueda.spring.criteriajpa.service.cache.invalidation;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The invalidations broadcast at once by an instance.
+ */
+public final class CacheInvalidationBatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String node;
+
+    private final long sequence;
+
+    private final long sentAt;
+
+    private final List<CacheInvalidation> invalidations;
+
+    /**
+     * @param node the identifier of the sending instance.
+     * @param sequence the number of batches sent by the instance before this one.
+     * @param sentAt the epoch milliseconds at which the batch was sent.
+     * @param invalidations the invalidations.
+     */
+    public CacheInvalidationBatch(String node, long sequence, long sentAt, List<CacheInvalidation> invalidations) {
+        this.node = node;
+        this.sequence = sequence;
+        this.sentAt = sentAt;
+        this.invalidations = List.copyOf(invalidations);
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getSentAt() {
+        return sentAt;
+    }
+
+    public List<CacheInvalidation> getInvalidations() {
+        return invalidations;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheInvalidationBatch{node=" + node + ", sequence=" + sequence + ", invalidations=" + invalidations.size() + "}";
+    }
+}
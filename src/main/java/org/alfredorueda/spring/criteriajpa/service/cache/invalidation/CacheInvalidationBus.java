@@ -0,0 +1,461 @@
+package org.alfredorueda.spring.criteriajpa.service.cache.invalidation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.annotation.PreDestroy;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.persistence.EntityManagerFactory;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.alfredorueda.spring.criteriajpa.service.cache.QueryResultCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.EntityType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Broadcast of the cache evictions of this instance to the other instances, when
+ * {@code application.cache.invalidation.enabled} is set.
+ * <p>
+ * After every committed insert, update or delete of an entity, the bus queues:
+ * <ul>
+ *     <li>the eviction of the entity from its second-level cache region, after which the other instances notify their
+ *     {@link CacheInvalidationListener} beans, to refresh the state they derived from it;</li>
+ *     <li>the eviction of the cached inverse collections holding the entity, such as {@code Team.players}, for the owners
+ *     referenced before and after the write. Hibernate doesn't evict them, so they are evicted on this instance too;</li>
+ *     <li>the invalidation of the query results depending on the entity, see {@link QueryResultCache}.</li>
+ * </ul>
+ * Services evicting entries of other caches, such as the user caches, queue them with {@link #evict(String, Object)}.
+ * <p>
+ * The queue is sent as one batch every {@code application.cache.invalidation.flush-interval}, or as soon as it holds
+ * {@code application.cache.invalidation.batch-size} invalidations, through the {@link CacheInvalidationTransport}. The
+ * other instances apply the batch to their caches and report:
+ * <ul>
+ *     <li>{@code cache.invalidation.lag}, the time from the commit on the sender to the eviction on the receiver, which
+ *     assumes synchronized clocks;</li>
+ *     <li>{@code cache.invalidation.sent}, {@code cache.invalidation.received} and {@code cache.invalidation.failures},
+ *     the number of invalidations sent, applied, and lost by a failed send.</li>
+ * </ul>
+ * An entry read from the database before a remote commit may still be cached after its eviction; such entries, and the
+ * invalidations of a failed send, are bounded by the time to live of the caches.
+ */
+@Component
+public class CacheInvalidationBus {
+
+    private final Logger log = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    private final String node = UUID.randomUUID().toString();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Queue<CacheInvalidation> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final SessionFactoryImplementor sessionFactory;
+
+    private final CacheManager cacheManager;
+
+    private final QueryResultCache queryResultCache;
+
+    private final CacheInvalidationTransport transport;
+
+    private final ObjectProvider<CacheInvalidationListener> invalidationListeners;
+
+    private final Consumer<CacheInvalidationBatch> receiver = this::receive;
+
+    private final Map<String, List<InverseCollection>> inverseCollections;
+
+    private final ScheduledExecutorService executor;
+
+    private final Timer lag;
+
+    private final Counter sent;
+
+    private final Counter received;
+
+    private final Counter failures;
+
+    public CacheInvalidationBus(
+        EntityManagerFactory entityManagerFactory,
+        CacheManager cacheManager,
+        QueryResultCache queryResultCache,
+        ObjectProvider<CacheInvalidationTransport> transport,
+        ObjectProvider<CacheInvalidationListener> invalidationListeners,
+        MeterRegistry meterRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        ApplicationProperties.Cache.Invalidation properties = applicationProperties.getCache().getInvalidation();
+        this.enabled = properties.isEnabled();
+        this.batchSize = properties.getBatchSize();
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.cacheManager = cacheManager;
+        this.queryResultCache = queryResultCache;
+        this.transport = transport.getIfAvailable(() -> LoopbackCacheInvalidationTransport.SHARED);
+        this.invalidationListeners = invalidationListeners;
+        this.inverseCollections = inverseCollections(sessionFactory);
+        this.lag =
+            Timer
+                .builder("cache.invalidation.lag")
+                .description("Time from a commit on another instance to the eviction of its cache entries on this one")
+                .register(meterRegistry);
+        this.sent =
+            Counter
+                .builder("cache.invalidation.sent")
+                .description("Invalidations sent to the other instances")
+                .register(meterRegistry);
+        this.received =
+            Counter
+                .builder("cache.invalidation.received")
+                .description("Invalidations received from the other instances")
+                .register(meterRegistry);
+        this.failures =
+            Counter
+                .builder("cache.invalidation.failures")
+                .description("Invalidations lost by a failed send")
+                .register(meterRegistry);
+        if (!enabled) {
+            this.executor = null;
+            return;
+        }
+        log.info("Broadcasting the cache invalidations of node {} through {}", node, this.transport.getClass().getSimpleName());
+        this.executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("cache-invalidation-"));
+        long interval = properties.getFlushInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        this.transport.subscribe(receiver);
+        EventListenerRegistry listeners = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        EntityListener listener = new EntityListener();
+        listeners.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        listeners.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        listeners.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+    }
+
+    /**
+     * @return the identifier of this instance in the sent batches.
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * Evict an entry of a cache of the cache manager on the other instances, after the current transaction commits if
+     * there is one. The entry must be evicted from the cache of this instance by the caller.
+     *
+     * @param cacheName the name of the cache.
+     * @param key the key of the entry, which must be serializable.
+     */
+    public void evict(String cacheName, Object key) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() ->
+            queue(new CacheInvalidation(CacheInvalidation.Kind.CACHE, cacheName, (Serializable) key, System.currentTimeMillis()))
+        );
+    }
+
+    /**
+     * Evict an entity, and the query results depending on its class, on the other instances after the current
+     * transaction commits if there is one. Only needed for the writes which bypass the Hibernate events, such as SQL
+     * updates: the entity must be evicted from the cache of this instance by the caller.
+     *
+     * @param entityClass the class of the entity.
+     * @param id the id of the entity.
+     */
+    public void evictEntity(Class<?> entityClass, Serializable id) {
+        if (!enabled) {
+            return;
+        }
+        String entityName = sessionFactory.getMetamodel().entityPersister(entityClass).getEntityName();
+        afterCommit(() -> {
+            long committedAt = System.currentTimeMillis();
+            queue(new CacheInvalidation(CacheInvalidation.Kind.ENTITY, entityName, id, committedAt));
+            queue(new CacheInvalidation(CacheInvalidation.Kind.RESULTS, entityName, null, committedAt));
+        });
+    }
+
+    /**
+     * Send the queued invalidations.
+     */
+    public void flush() {
+        try {
+            while (pendingCount.get() > 0) {
+                Set<CacheInvalidation> invalidations = new LinkedHashSet<>();
+                CacheInvalidation invalidation;
+                while (invalidations.size() < batchSize && (invalidation = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    invalidations.add(invalidation);
+                }
+                if (invalidations.isEmpty()) {
+                    return;
+                }
+                send(new ArrayList<>(invalidations));
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not flush the cache invalidations", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (enabled) {
+            executor.shutdownNow();
+            flush();
+            transport.unsubscribe(receiver);
+        }
+    }
+
+    private synchronized void send(List<CacheInvalidation> invalidations) {
+        CacheInvalidationBatch batch = new CacheInvalidationBatch(
+            node,
+            sequence.getAndIncrement(),
+            System.currentTimeMillis(),
+            invalidations
+        );
+        try {
+            transport.send(batch);
+            sent.increment(invalidations.size());
+        } catch (RuntimeException e) {
+            failures.increment(invalidations.size());
+            log.warn("Could not send {}: {}", batch, e.getMessage());
+        }
+    }
+
+    private void receive(CacheInvalidationBatch batch) {
+        if (node.equals(batch.getNode())) {
+            return;
+        }
+        log.debug("Applying {}", batch);
+        for (CacheInvalidation invalidation : batch.getInvalidations()) {
+            try {
+                apply(invalidation);
+            } catch (RuntimeException e) {
+                log.warn("Could not apply {} from node {}: {}", invalidation, batch.getNode(), e.getMessage());
+                continue;
+            }
+            received.increment();
+            lag.record(Math.max(0, System.currentTimeMillis() - invalidation.getCommittedAt()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void apply(CacheInvalidation invalidation) {
+        switch (invalidation.getKind()) {
+            case ENTITY:
+                sessionFactory.getCache().evictEntityData(invalidation.getName(), invalidation.getKey());
+                Class<?> entityClass = sessionFactory.getMetamodel().entityPersister(invalidation.getName()).getMappedClass();
+                executor.execute(() -> notifyListeners(entityClass, invalidation.getKey()));
+                break;
+            case COLLECTION:
+                if (invalidation.getKey() != null) {
+                    sessionFactory.getCache().evictCollectionData(invalidation.getName(), invalidation.getKey());
+                } else {
+                    sessionFactory.getCache().evictCollectionData(invalidation.getName());
+                }
+                break;
+            case CACHE:
+                Cache<Object, Object> cache = cacheManager.getCache(invalidation.getName());
+                if (cache != null) {
+                    cache.remove(invalidation.getKey());
+                }
+                break;
+            case RESULTS:
+                queryResultCache.invalidate(sessionFactory.getMetamodel().entityPersister(invalidation.getName()).getMappedClass());
+                break;
+        }
+    }
+
+    private void notifyListeners(Class<?> entityClass, Serializable id) {
+        for (CacheInvalidationListener listener : invalidationListeners) {
+            try {
+                listener.entityInvalidated(entityClass, id);
+            } catch (RuntimeException e) {
+                String listenerName = listener.getClass().getSimpleName();
+                log.warn("Could not notify {} of {} {}: {}", listenerName, entityClass.getSimpleName(), id, e.getMessage());
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            }
+        );
+    }
+
+    private void queue(CacheInvalidation invalidation) {
+        pending.add(invalidation);
+        if (pendingCount.incrementAndGet() >= batchSize) {
+            executor.execute(this::flush);
+        }
+    }
+
+    private void written(
+        EntityPersister persister,
+        Serializable id,
+        Object[] before,
+        Object[] after,
+        SharedSessionContractImplementor session
+    ) {
+        long committedAt = System.currentTimeMillis();
+        String entityName = persister.getEntityName();
+        if (persister.canWriteToCache()) {
+            queue(new CacheInvalidation(CacheInvalidation.Kind.ENTITY, entityName, id, committedAt));
+        }
+        for (InverseCollection collection : inverseCollections.getOrDefault(entityName, List.of())) {
+            Set<Serializable> owners = new LinkedHashSet<>();
+            boolean known = collection.owners(before, owners, session);
+            known &= collection.owners(after, owners, session);
+            if (!known) {
+                sessionFactory.getCache().evictCollectionData(collection.role);
+                queue(new CacheInvalidation(CacheInvalidation.Kind.COLLECTION, collection.role, null, committedAt));
+                continue;
+            }
+            for (Serializable owner : owners) {
+                sessionFactory.getCache().evictCollectionData(collection.role, owner);
+                queue(new CacheInvalidation(CacheInvalidation.Kind.COLLECTION, collection.role, owner, committedAt));
+            }
+        }
+        queue(new CacheInvalidation(CacheInvalidation.Kind.RESULTS, entityName, null, committedAt));
+    }
+
+    private static Map<String, List<InverseCollection>> inverseCollections(SessionFactoryImplementor sessionFactory) {
+        Map<String, List<InverseCollection>> collections = new HashMap<>();
+        for (CollectionPersister collection : sessionFactory.getMetamodel().collectionPersisters().values()) {
+            String mappedBy = collection.getMappedByProperty();
+            if (!collection.hasCache() || !collection.isInverse() || mappedBy == null || !collection.getElementType().isEntityType()) {
+                continue;
+            }
+            String elementName = ((EntityType) collection.getElementType()).getAssociatedEntityName();
+            EntityPersister element = sessionFactory.getMetamodel().entityPersister(elementName);
+            collections
+                .computeIfAbsent(elementName, name -> new ArrayList<>())
+                .add(new InverseCollection(collection.getRole(), element.getEntityMetamodel().getPropertyIndex(mappedBy), collection));
+        }
+        return collections;
+    }
+
+    /**
+     * A cached inverse collection, and the property of its elements referencing its owner.
+     */
+    private static final class InverseCollection {
+
+        private final String role;
+
+        private final int ownerProperty;
+
+        private final CollectionPersister persister;
+
+        InverseCollection(String role, int ownerProperty, CollectionPersister persister) {
+            this.role = role;
+            this.ownerProperty = ownerProperty;
+            this.persister = persister;
+        }
+
+        /**
+         * Add the identifier of the owner referenced by a state of an element.
+         *
+         * @return false if the state is unknown.
+         */
+        boolean owners(Object[] state, Set<Serializable> owners, SharedSessionContractImplementor session) {
+            if (state == null) {
+                return false;
+            }
+            Object owner = state[ownerProperty];
+            if (owner instanceof HibernateProxy) {
+                owners.add(((HibernateProxy) owner).getHibernateLazyInitializer().getIdentifier());
+            } else if (owner != null) {
+                owners.add(persister.getOwnerEntityPersister().getIdentifier(owner, session));
+            }
+            return true;
+        }
+    }
+
+    private final class EntityListener
+        implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            written(event.getPersister(), event.getId(), event.getState(), event.getState(), event.getSession());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            written(event.getPersister(), event.getId(), event.getOldState(), event.getState(), event.getSession());
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            Object[] deletedState = event.getDeletedState();
+            written(event.getPersister(), event.getId(), deletedState, deletedState, event.getSession());
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+            // Nothing was committed
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+            // Nothing was committed
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+            // Nothing was committed
+        }
+
+        // Still abstract in Hibernate 5, the default requiresPostCommitHandling replacing it delegates to it
+        @Override
+        @SuppressWarnings("deprecation")
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.alfredorueda.spring.criteriajpa.service.cache.invalidation;
+
+import java.io.Serializable;
+
+/**
+ * A bean keeping state derived from the entities, other than the caches, up to date with the writes of the other instances.
+ * <p>
+ * The {@link CacheInvalidationBus} notifies the listeners of the context of every entity written by another instance,
+ * once it is evicted from the second-level cache of this instance, one after the other on its own thread.
+ */
+public interface CacheInvalidationListener {
+    /**
+     * Called after an entity was inserted, updated or deleted by another instance.
+     *
+     * @param entityClass the class of the entity.
+     * @param id the id of the entity.
+     */
+    void entityInvalidated(Class<?> entityClass, Serializable id);
+}
@@ -0,0 +1,33 @@
+package org.alfredorueda.spring.criteriajpa.service.cache.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * The channel through which the instances exchange their cache invalidations.
+ * <p>
+ * A transport delivers every sent batch to the receivers of all the instances, the sender included, at most once and in
+ * any order. The {@link CacheInvalidationBus} uses the transport bean of the context if there is one, the
+ * {@link LoopbackCacheInvalidationTransport} otherwise.
+ */
+public interface CacheInvalidationTransport {
+    /**
+     * Broadcast a batch.
+     *
+     * @param batch the batch.
+     */
+    void send(CacheInvalidationBatch batch);
+
+    /**
+     * Receive the batches broadcast from now on.
+     *
+     * @param receiver the function receiving the batches, it must not block.
+     */
+    void subscribe(Consumer<CacheInvalidationBatch> receiver);
+
+    /**
+     * Stop receiving batches.
+     *
+     * @param receiver a subscribed function.
+     */
+    void unsubscribe(Consumer<CacheInvalidationBatch> receiver);
+}
@@ -0,0 +1,68 @@
+package org.alfredorueda.spring.criteriajpa.service.cache.invalidation;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.util.SerializationUtils;
+
+/**
+ * Transport delivering the batches to the receivers of the same JVM, such as the application contexts of a test
+ * starting several instances.
+ * <p>
+ * Batches are serialized and deserialized like a network transport would do, and delivered synchronously in the
+ * sending thread.
+ */
+public class LoopbackCacheInvalidationTransport implements CacheInvalidationTransport {
+
+    /**
+     * The transport shared by all the buses of the JVM which don't have a transport bean.
+     */
+    public static final LoopbackCacheInvalidationTransport SHARED = new LoopbackCacheInvalidationTransport();
+
+    private final Logger log = LoggerFactory.getLogger(LoopbackCacheInvalidationTransport.class);
+
+    private final List<Consumer<CacheInvalidationBatch>> receivers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void send(CacheInvalidationBatch batch) {
+        byte[] bytes = SerializationUtils.serialize(batch);
+        for (Consumer<CacheInvalidationBatch> receiver : receivers) {
+            try {
+                receiver.accept(deserialize(bytes));
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                log.warn("Could not deliver {}: {}", batch, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidationBatch> receiver) {
+        receivers.add(receiver);
+    }
+
+    @Override
+    public void unsubscribe(Consumer<CacheInvalidationBatch> receiver) {
+        receivers.remove(receiver);
+    }
+
+    /**
+     * Resolves the classes with the class loader of the application, which is not the system class loader when the
+     * application is restarted by the development tools.
+     */
+    private CacheInvalidationBatch deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (
+            ObjectInputStream in = new ConfigurableObjectInputStream(
+                new ByteArrayInputStream(bytes),
+                CacheInvalidationBatch.class.getClassLoader()
+            )
+        ) {
+            return (CacheInvalidationBatch) in.readObject();
+        }
+    }
+}
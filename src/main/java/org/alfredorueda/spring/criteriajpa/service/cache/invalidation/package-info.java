@@ -0,0 +1,4 @@
+/**
+ * Broadcast of the cache evictions of an instance to the other instances of the application.
+ */
+package org.alfredorueda.spring.criteriajpa.service.cache.invalidation;
@@ -0,0 +1,4 @@
+/**
+ * Application level caches of the criteria query results, and the meters and sizing of all the caches.
+ */
+package org.alfredorueda.spring.criteriajpa.service.cache;
@@ -0,0 +1,185 @@
+package org.alfredorueda.spring.criteriajpa.service.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+import tech.jhipster.service.filter.Filter;
+import tech.jhipster.service.filter.RangeFilter;
+
+/**
+ * A bitmap index of a column: the rows of every key, a key being either a value or a bin of values.
+ * <p>
+ * The key function must preserve the order of the values, so that a range of values is within the range of their keys.
+ * The rows selected by the index are then a superset of the matching rows, which the column narrows down.
+ */
+final class BitmapIndex {
+
+    static final long NULL = Long.MIN_VALUE;
+
+    private final NavigableMap<Long, RowBitmap> bitmaps = new TreeMap<>();
+
+    private long[] keys;
+
+    BitmapIndex(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, NULL);
+    }
+
+    void grow(int capacity) {
+        int previous = keys.length;
+        keys = Arrays.copyOf(keys, capacity);
+        Arrays.fill(keys, previous, capacity, NULL);
+    }
+
+    void set(int row, long key) {
+        remove(row);
+        keys[row] = key;
+        bitmaps.computeIfAbsent(key, k -> new RowBitmap()).add(row);
+    }
+
+    void remove(int row) {
+        RowBitmap bitmap = bitmaps.get(keys[row]);
+        if (bitmap != null) {
+            bitmap.remove(row);
+            if (bitmap.cardinality() == 0) {
+                bitmaps.remove(keys[row]);
+            }
+        }
+        keys[row] = NULL;
+    }
+
+    /**
+     * Move a row of the index to a row which is not in it.
+     */
+    void move(int from, int to) {
+        set(to, keys[from]);
+        remove(from);
+    }
+
+    /**
+     * Keep the given rows only, row {@code rows[i]} becoming row {@code i}.
+     */
+    void compact(int[] rows, int count, int capacity) {
+        long[] compacted = new long[capacity];
+        Arrays.fill(compacted, NULL);
+        bitmaps.clear();
+        for (int i = 0; i < count; i++) {
+            compacted[i] = keys[rows[i]];
+            bitmaps.computeIfAbsent(compacted[i], k -> new RowBitmap()).add(i);
+        }
+        keys = compacted;
+    }
+
+    /**
+     * Select the bitmaps of the rows which may match a filter, with the semantics of
+     * {@link tech.jhipster.service.QueryService#buildSpecification(Filter, javax.persistence.metamodel.SingularAttribute)}.
+     *
+     * @return the bitmaps, or null if the filter cannot use the index or would select more than {@code maxRows} rows.
+     */
+    List<RowBitmap> select(Filter<Long> filter, long maxRows) {
+        if (filter.getEquals() != null) {
+            return limit(keys(Collections.singleton(filter.getEquals()), Long::longValue), maxRows);
+        }
+        if (filter.getIn() != null) {
+            return limit(keys(filter.getIn(), Long::longValue), maxRows);
+        }
+        if (filter.getNotIn() != null || filter.getNotEquals() != null) {
+            return null;
+        }
+        if (Boolean.FALSE.equals(filter.getSpecified())) {
+            return limit(keys(Collections.singleton(NULL), Long::longValue), maxRows);
+        }
+        return null;
+    }
+
+    /**
+     * Select the bitmaps of the rows which may match a filter, with the semantics of
+     * {@link tech.jhipster.service.QueryService#buildRangeSpecification}.
+     *
+     * @return the bitmaps, or null if the filter cannot use the index or would select more than {@code maxRows} rows.
+     */
+    <X extends Comparable<? super X>> List<RowBitmap> select(RangeFilter<X> filter, ToLongFunction<X> key, long maxRows) {
+        if (filter.getEquals() != null) {
+            return limit(keys(Collections.singleton(filter.getEquals()), key), maxRows);
+        }
+        if (filter.getIn() != null) {
+            return limit(keys(filter.getIn(), key), maxRows);
+        }
+        long lower = NULL + 1;
+        long upper = Long.MAX_VALUE;
+        if (filter.getGreaterThan() != null) {
+            lower = Math.max(lower, key.applyAsLong(filter.getGreaterThan()));
+        }
+        if (filter.getGreaterThanOrEqual() != null) {
+            lower = Math.max(lower, key.applyAsLong(filter.getGreaterThanOrEqual()));
+        }
+        if (filter.getLessThan() != null) {
+            upper = Math.min(upper, key.applyAsLong(filter.getLessThan()));
+        }
+        if (filter.getLessThanOrEqual() != null) {
+            upper = Math.min(upper, key.applyAsLong(filter.getLessThanOrEqual()));
+        }
+        boolean bounded = lower != NULL + 1 || upper != Long.MAX_VALUE;
+        if (Boolean.FALSE.equals(filter.getSpecified())) {
+            // a null value matches no bound
+            return bounded ? Collections.emptyList() : limit(keys(Collections.singleton(NULL), Long::longValue), maxRows);
+        }
+        if (!bounded) {
+            return null;
+        }
+        if (lower > upper) {
+            return Collections.emptyList();
+        }
+        return limit(new ArrayList<>(bitmaps.subMap(lower, true, upper, true).values()), maxRows);
+    }
+
+    private <X> List<RowBitmap> keys(Collection<X> values, ToLongFunction<X> key) {
+        List<RowBitmap> selected = new ArrayList<>(values.size());
+        for (X value : values) {
+            RowBitmap bitmap = bitmaps.get(key.applyAsLong(value));
+            if (bitmap != null && !selected.contains(bitmap)) {
+                selected.add(bitmap);
+            }
+        }
+        return selected;
+    }
+
+    private static List<RowBitmap> limit(List<RowBitmap> selected, long maxRows) {
+        long rows = 0;
+        for (RowBitmap bitmap : selected) {
+            rows += bitmap.cardinality();
+            if (rows > maxRows) {
+                return null;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Clear the bits of the rows in none of the selected bitmaps.
+     */
+    static void and(List<RowBitmap> selected, long[] words, int fromWord, int toWord) {
+        long[] union = new long[toWord - fromWord];
+        for (RowBitmap bitmap : selected) {
+            bitmap.orInto(union, fromWord, toWord);
+        }
+        for (int w = fromWord; w < toWord; w++) {
+            words[w] &= union[w - fromWord];
+        }
+    }
+
+    /**
+     * Key of a {@code double} keeping its sign, its exponent and the 8 highest bits of its mantissa: bins are ordered like
+     * the values, and each bin is less than 0.4% wide relatively to its values.
+     */
+    static long bin(double value) {
+        // -0.0 is equal to 0.0 in SQL
+        long bits = Double.doubleToLongBits(value == 0 ? 0.0 : value);
+        return (bits ^ ((bits >> 63) & Long.MAX_VALUE)) >> 44;
+    }
+}
@@ -0,0 +1,143 @@
+package org.alfredorueda.spring.criteriajpa.service.columnar;
+
+import java.util.Arrays;
+import java.util.Collection;
+import tech.jhipster.service.filter.RangeFilter;
+
+/**
+ * A nullable {@code double} column, null being stored as {@link Double#NaN}, which no comparison matches.
+ * <p>
+ * Filters are evaluated 64 rows at a time into the words of a row bitmap, with branch-free inner loops
+ * skipping the words already cleared.
+ */
+final class DoubleColumn {
+
+    private double[] values;
+
+    DoubleColumn(int capacity) {
+        values = new double[capacity];
+        Arrays.fill(values, Double.NaN);
+    }
+
+    void grow(int capacity) {
+        int previous = values.length;
+        values = Arrays.copyOf(values, capacity);
+        Arrays.fill(values, previous, capacity, Double.NaN);
+    }
+
+    void set(int row, Double value) {
+        values[row] = value != null ? value : Double.NaN;
+    }
+
+    void copy(int from, int to) {
+        values[to] = values[from];
+    }
+
+    /**
+     * Keep the given rows only, row {@code rows[i]} becoming row {@code i}.
+     */
+    void compact(int[] rows, int count, int capacity) {
+        double[] compacted = new double[capacity];
+        for (int i = 0; i < count; i++) {
+            compacted[i] = values[rows[i]];
+        }
+        Arrays.fill(compacted, count, capacity, Double.NaN);
+        values = compacted;
+    }
+
+    /**
+     * Clear the bits of the rows not matching the filter, with the semantics of
+     * {@link tech.jhipster.service.QueryService#buildRangeSpecification}.
+     */
+    void and(RangeFilter<Double> filter, long[] words, int fromWord, int toWord) {
+        if (filter.getEquals() != null) {
+            between(filter.getEquals(), filter.getEquals(), words, fromWord, toWord);
+            return;
+        }
+        if (filter.getIn() != null) {
+            in(sort(filter.getIn()), true, words, fromWord, toWord);
+            return;
+        }
+        if (filter.getSpecified() != null) {
+            specified(filter.getSpecified(), words, fromWord, toWord);
+        }
+        if (filter.getNotEquals() != null) {
+            in(new double[] { filter.getNotEquals() }, false, words, fromWord, toWord);
+        }
+        if (filter.getNotIn() != null && !filter.getNotIn().isEmpty()) {
+            in(sort(filter.getNotIn()), false, words, fromWord, toWord);
+        }
+        double lower = Double.NEGATIVE_INFINITY;
+        double upper = Double.POSITIVE_INFINITY;
+        if (filter.getGreaterThan() != null) {
+            lower = Math.max(lower, Math.nextUp(filter.getGreaterThan()));
+        }
+        if (filter.getGreaterThanOrEqual() != null) {
+            lower = Math.max(lower, filter.getGreaterThanOrEqual());
+        }
+        if (filter.getLessThan() != null) {
+            upper = Math.min(upper, Math.nextDown(filter.getLessThan()));
+        }
+        if (filter.getLessThanOrEqual() != null) {
+            upper = Math.min(upper, filter.getLessThanOrEqual());
+        }
+        if (lower != Double.NEGATIVE_INFINITY || upper != Double.POSITIVE_INFINITY) {
+            between(lower, upper, words, fromWord, toWord);
+        }
+    }
+
+    private static double[] sort(Collection<Double> values) {
+        double[] sorted = values.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private void between(double lower, double upper, long[] words, int fromWord, int toWord) {
+        double[] v = values;
+        for (int w = fromWord; w < toWord; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            long bits = 0;
+            for (int j = 0; j < 64; j++) {
+                double value = v[base + j];
+                bits |= (value >= lower & value <= upper ? 1L : 0L) << j;
+            }
+            words[w] &= bits;
+        }
+    }
+
+    private void in(double[] sorted, boolean included, long[] words, int fromWord, int toWord) {
+        double[] v = values;
+        for (int w = fromWord; w < toWord; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            long bits = 0;
+            for (int j = 0; j < 64; j++) {
+                double value = v[base + j];
+                boolean found = Arrays.binarySearch(sorted, value) >= 0;
+                bits |= (value == value & found == included ? 1L : 0L) << j;
+            }
+            words[w] &= bits;
+        }
+    }
+
+    private void specified(boolean specified, long[] words, int fromWord, int toWord) {
+        double[] v = values;
+        for (int w = fromWord; w < toWord; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            long bits = 0;
+            for (int j = 0; j < 64; j++) {
+                double value = v[base + j];
+                bits |= ((value == value) == specified ? 1L : 0L) << j;
+            }
+            words[w] &= bits;
+        }
+    }
+}
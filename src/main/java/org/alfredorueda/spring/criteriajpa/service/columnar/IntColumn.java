@@ -0,0 +1,161 @@
+package org.alfredorueda.spring.criteriajpa.service.columnar;
+
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+import tech.jhipster.service.filter.RangeFilter;
+
+/**
+ * A nullable {@code int} column, null being stored as {@link Integer#MIN_VALUE}.
+ * <p>
+ * Filters are evaluated 64 rows at a time into the words of a row bitmap, with branch-free inner loops
+ * skipping the words already cleared.
+ */
+final class IntColumn {
+
+    static final int NULL = Integer.MIN_VALUE;
+
+    private int[] values;
+
+    IntColumn(int capacity) {
+        values = new int[capacity];
+        Arrays.fill(values, NULL);
+    }
+
+    void grow(int capacity) {
+        int previous = values.length;
+        values = Arrays.copyOf(values, capacity);
+        Arrays.fill(values, previous, capacity, NULL);
+    }
+
+    void set(int row, int value) {
+        values[row] = value;
+    }
+
+    void copy(int from, int to) {
+        values[to] = values[from];
+    }
+
+    /**
+     * Keep the given rows only, row {@code rows[i]} becoming row {@code i}.
+     */
+    void compact(int[] rows, int count, int capacity) {
+        int[] compacted = new int[capacity];
+        for (int i = 0; i < count; i++) {
+            compacted[i] = values[rows[i]];
+        }
+        Arrays.fill(compacted, count, capacity, NULL);
+        values = compacted;
+    }
+
+    /**
+     * Clear the bits of the rows not matching the filter, with the semantics of
+     * {@link tech.jhipster.service.QueryService#buildRangeSpecification}.
+     */
+    <X extends Comparable<? super X>> void and(
+        RangeFilter<X> filter,
+        ToIntFunction<X> encoder,
+        long[] words,
+        int fromWord,
+        int toWord
+    ) {
+        if (filter.getEquals() != null) {
+            int value = encoder.applyAsInt(filter.getEquals());
+            between(value, value, words, fromWord, toWord);
+            return;
+        }
+        if (filter.getIn() != null) {
+            in(encode(filter.getIn(), encoder), true, words, fromWord, toWord);
+            return;
+        }
+        if (filter.getSpecified() != null) {
+            specified(filter.getSpecified(), words, fromWord, toWord);
+        }
+        if (filter.getNotEquals() != null) {
+            in(new int[] { encoder.applyAsInt(filter.getNotEquals()) }, false, words, fromWord, toWord);
+        }
+        if (filter.getNotIn() != null && !filter.getNotIn().isEmpty()) {
+            in(encode(filter.getNotIn(), encoder), false, words, fromWord, toWord);
+        }
+        long lower = Long.MIN_VALUE;
+        long upper = Long.MAX_VALUE;
+        if (filter.getGreaterThan() != null) {
+            lower = Math.max(lower, encoder.applyAsInt(filter.getGreaterThan()) + 1L);
+        }
+        if (filter.getGreaterThanOrEqual() != null) {
+            lower = Math.max(lower, encoder.applyAsInt(filter.getGreaterThanOrEqual()));
+        }
+        if (filter.getLessThan() != null) {
+            upper = Math.min(upper, encoder.applyAsInt(filter.getLessThan()) - 1L);
+        }
+        if (filter.getLessThanOrEqual() != null) {
+            upper = Math.min(upper, encoder.applyAsInt(filter.getLessThanOrEqual()));
+        }
+        if (lower != Long.MIN_VALUE || upper != Long.MAX_VALUE) {
+            between(lower, upper, words, fromWord, toWord);
+        }
+    }
+
+    private static <X> int[] encode(Iterable<X> values, ToIntFunction<X> encoder) {
+        int[] encoded = new int[0];
+        int size = 0;
+        for (X value : values) {
+            if (size == encoded.length) {
+                encoded = Arrays.copyOf(encoded, Math.max(8, size * 2));
+            }
+            encoded[size++] = encoder.applyAsInt(value);
+        }
+        encoded = Arrays.copyOf(encoded, size);
+        Arrays.sort(encoded);
+        return encoded;
+    }
+
+    private void between(long lower, long upper, long[] words, int fromWord, int toWord) {
+        int[] v = values;
+        // the null marker is the smallest int, never in a range
+        long lo = Math.max(lower, NULL + 1L);
+        for (int w = fromWord; w < toWord; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            long bits = 0;
+            for (int j = 0; j < 64; j++) {
+                long value = v[base + j];
+                bits |= (value >= lo & value <= upper ? 1L : 0L) << j;
+            }
+            words[w] &= bits;
+        }
+    }
+
+    private void in(int[] sorted, boolean included, long[] words, int fromWord, int toWord) {
+        int[] v = values;
+        for (int w = fromWord; w < toWord; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            long bits = 0;
+            for (int j = 0; j < 64; j++) {
+                int value = v[base + j];
+                boolean found = Arrays.binarySearch(sorted, value) >= 0;
+                bits |= (value != NULL & found == included ? 1L : 0L) << j;
+            }
+            words[w] &= bits;
+        }
+    }
+
+    private void specified(boolean specified, long[] words, int fromWord, int toWord) {
+        int[] v = values;
+        for (int w = fromWord; w < toWord; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            long bits = 0;
+            for (int j = 0; j < 64; j++) {
+                bits |= ((v[base + j] != NULL) == specified ? 1L : 0L) << j;
+            }
+            words[w] &= bits;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.alfredorueda.spring.criteriajpa.service.columnar;
+
+import java.util.Arrays;
+import java.util.Collection;
+import tech.jhipster.service.filter.Filter;
+import tech.jhipster.service.filter.RangeFilter;
+
+/**
+ * A nullable {@code long} column, null being stored as {@link Long#MIN_VALUE}.
+ * <p>
+ * Filters are evaluated 64 rows at a time into the words of a row bitmap, with branch-free inner loops
+ * skipping the words already cleared.
+ */
+final class LongColumn {
+
+    static final long NULL = Long.MIN_VALUE;
+
+    private long[] values;
+
+    LongColumn(int capacity) {
+        values = new long[capacity];
+        Arrays.fill(values, NULL);
+    }
+
+    void grow(int capacity) {
+        int previous = values.length;
+        values = Arrays.copyOf(values, capacity);
+        Arrays.fill(values, previous, capacity, NULL);
+    }
+
+    void set(int row, long value) {
+        values[row] = value;
+    }
+
+    void copy(int from, int to) {
+        values[to] = values[from];
+    }
+
+    /**
+     * Keep the given rows only, row {@code rows[i]} becoming row {@code i}.
+     */
+    void compact(int[] rows, int count, int capacity) {
+        long[] compacted = new long[capacity];
+        for (int i = 0; i < count; i++) {
+            compacted[i] = values[rows[i]];
+        }
+        Arrays.fill(compacted, count, capacity, NULL);
+        values = compacted;
+    }
+
+    long get(int row) {
+        return values[row];
+    }
+
+    /**
+     * Clear the bits of the rows not matching the filter, with the semantics of
+     * {@link tech.jhipster.service.QueryService#buildSpecification}.
+     */
+    void and(Filter<Long> filter, long[] words, int fromWord, int toWord) {
+        if (filter.getEquals() != null) {
+            between(filter.getEquals(), filter.getEquals(), words, fromWord, toWord);
+        } else if (filter.getIn() != null) {
+            in(sort(filter.getIn()), true, words, fromWord, toWord);
+        } else if (filter.getNotIn() != null) {
+            if (!filter.getNotIn().isEmpty()) {
+                in(sort(filter.getNotIn()), false, words, fromWord, toWord);
+            }
+        } else if (filter.getNotEquals() != null) {
+            in(new long[] { filter.getNotEquals() }, false, words, fromWord, toWord);
+        } else if (filter.getSpecified() != null) {
+            specified(filter.getSpecified(), words, fromWord, toWord);
+        }
+    }
+
+    /**
+     * Clear the bits of the rows not matching the filter, with the semantics of
+     * {@link tech.jhipster.service.QueryService#buildRangeSpecification}.
+     */
+    void and(RangeFilter<Long> filter, long[] words, int fromWord, int toWord) {
+        if (filter.getEquals() != null || filter.getIn() != null) {
+            and((Filter<Long>) filter, words, fromWord, toWord);
+            return;
+        }
+        if (filter.getSpecified() != null) {
+            specified(filter.getSpecified(), words, fromWord, toWord);
+        }
+        if (filter.getNotEquals() != null) {
+            in(new long[] { filter.getNotEquals() }, false, words, fromWord, toWord);
+        }
+        if (filter.getNotIn() != null && !filter.getNotIn().isEmpty()) {
+            in(sort(filter.getNotIn()), false, words, fromWord, toWord);
+        }
+        long lower = NULL + 1;
+        long upper = Long.MAX_VALUE;
+        boolean empty = false;
+        if (filter.getGreaterThan() != null) {
+            empty = filter.getGreaterThan() == Long.MAX_VALUE;
+            lower = Math.max(lower, filter.getGreaterThan() + 1);
+        }
+        if (filter.getGreaterThanOrEqual() != null) {
+            lower = Math.max(lower, filter.getGreaterThanOrEqual());
+        }
+        if (filter.getLessThan() != null) {
+            empty |= filter.getLessThan() <= NULL + 1;
+            upper = Math.min(upper, filter.getLessThan() - 1);
+        }
+        if (filter.getLessThanOrEqual() != null) {
+            upper = Math.min(upper, filter.getLessThanOrEqual());
+        }
+        if (empty) {
+            Arrays.fill(words, fromWord, toWord, 0L);
+        } else if (lower != NULL + 1 || upper != Long.MAX_VALUE) {
+            between(lower, upper, words, fromWord, toWord);
+        }
+    }
+
+    private static long[] sort(Collection<Long> values) {
+        long[] sorted = values.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private void between(long lower, long upper, long[] words, int fromWord, int toWord) {
+        long[] v = values;
+        // the null marker is the smallest long, never in a range
+        long lo = Math.max(lower, NULL + 1);
+        for (int w = fromWord; w < toWord; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            long bits = 0;
+            for (int j = 0; j < 64; j++) {
+                long value = v[base + j];
+                bits |= (value >= lo & value <= upper ? 1L : 0L) << j;
+            }
+            words[w] &= bits;
+        }
+    }
+
+    private void in(long[] sorted, boolean included, long[] words, int fromWord, int toWord) {
+        long[] v = values;
+        for (int w = fromWord; w < toWord; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            long bits = 0;
+            for (int j = 0; j < 64; j++) {
+                long value = v[base + j];
+                boolean found = Arrays.binarySearch(sorted, value) >= 0;
+                bits |= (value != NULL & found == included ? 1L : 0L) << j;
+            }
+            words[w] &= bits;
+        }
+    }
+
+    private void specified(boolean specified, long[] words, int fromWord, int toWord) {
+        long[] v = values;
+        for (int w = fromWord; w < toWord; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            long bits = 0;
+            for (int j = 0; j < 64; j++) {
+                bits |= ((v[base + j] != NULL) == specified ? 1L : 0L) << j;
+            }
+            words[w] &= bits;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.alfredorueda.spring.criteriajpa.service.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.alfredorueda.spring.criteriajpa.service.criteria.CriteriaMatcher;
+import tech.jhipster.service.filter.StringFilter;
+
+/**
+ * A nullable dictionary encoded string column: each row holds the code of its value in the dictionary, or -1 for null.
+ * <p>
+ * A filter is evaluated once per distinct value, the rows are then matched by code.
+ */
+final class NameColumn {
+
+    static final int NULL = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    private final List<String> dictionary = new ArrayList<>();
+
+    private int[] values;
+
+    NameColumn(int capacity) {
+        values = new int[capacity];
+        Arrays.fill(values, NULL);
+    }
+
+    void grow(int capacity) {
+        int previous = values.length;
+        values = Arrays.copyOf(values, capacity);
+        Arrays.fill(values, previous, capacity, NULL);
+    }
+
+    void set(int row, String value) {
+        if (value == null) {
+            values[row] = NULL;
+            return;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            codes.put(value, code);
+        }
+        values[row] = code;
+    }
+
+    void copy(int from, int to) {
+        values[to] = values[from];
+    }
+
+    /**
+     * Keep the given rows only, row {@code rows[i]} becoming row {@code i}, and the values they still use.
+     */
+    void compact(int[] rows, int count, int capacity) {
+        List<String> previous = new ArrayList<>(dictionary);
+        int[] recoded = new int[previous.size()];
+        Arrays.fill(recoded, NULL);
+        dictionary.clear();
+        codes.clear();
+        int[] compacted = new int[capacity];
+        for (int i = 0; i < count; i++) {
+            int code = values[rows[i]];
+            if (code != NULL && recoded[code] == NULL) {
+                recoded[code] = dictionary.size();
+                dictionary.add(previous.get(code));
+                codes.put(previous.get(code), recoded[code]);
+            }
+            compacted[i] = code != NULL ? recoded[code] : NULL;
+        }
+        Arrays.fill(compacted, count, capacity, NULL);
+        values = compacted;
+    }
+
+    /**
+     * Evaluate the filter on every value of the dictionary.
+     *
+     * @return the matches, indexed by code + 1, null being at index 0.
+     */
+    boolean[] accepted(StringFilter filter) {
+        boolean[] accepted = new boolean[dictionary.size() + 1];
+        accepted[0] = CriteriaMatcher.string(filter, null);
+        for (int code = 0; code < dictionary.size(); code++) {
+            accepted[code + 1] = CriteriaMatcher.string(filter, dictionary.get(code));
+        }
+        return accepted;
+    }
+
+    /**
+     * Clear the bits of the rows whose value is not accepted.
+     */
+    void and(boolean[] accepted, long[] words, int fromWord, int toWord) {
+        int[] v = values;
+        for (int w = fromWord; w < toWord; w++) {
+            if (words[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            long bits = 0;
+            for (int j = 0; j < 64; j++) {
+                bits |= (accepted[v[base + j] + 1] ? 1L : 0L) << j;
+            }
+            words[w] &= bits;
+        }
+    }
+}
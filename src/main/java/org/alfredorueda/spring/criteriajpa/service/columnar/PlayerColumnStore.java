@@ -0,0 +1,797 @@
+package org.alfredorueda.spring.criteriajpa.service.columnar;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.alfredorueda.spring.criteriajpa.domain.Player;
+import org.alfredorueda.spring.criteriajpa.service.criteria.PlayerCriteria;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.jhipster.service.filter.Filter;
+
+/**
+ * Optional in-memory copy of the {@code player} table, stored as primitive column arrays.
+ * <p>
+ * When {@code application.columnar.enabled} is set, the table is loaded once the application is ready, then kept up to
+ * date by the writes of {@link org.alfredorueda.spring.criteriajpa.service.PlayerService}, applied after their commit.
+ * Writes committed while the table is loading are replayed once it is loaded.
+ * <p>
+ * A {@link PlayerCriteria} is evaluated into a bitmap of the matching rows, one column filter after the other, 64 rows at
+ * a time. Large tables are split in chunks evaluated in parallel on the common fork join pool.
+ * When {@code application.columnar.bitmap-indexes} is set, selective filters on the team, the birth year and the binned
+ * numeric columns first narrow the rows down with compressed {@link BitmapIndex bitmap indexes}, and the column scans
+ * skip the words they cleared.
+ * The {@code player.column.store.scan} timer measures the evaluations.
+ */
+@Component
+public class PlayerColumnStore {
+
+    private static final String ID = "id";
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int CHUNK_WORDS = 256;
+
+    /**
+     * Maximum number of rows shifted to insert a row in id order, beyond which the columns are compacted instead.
+     */
+    private static final int MAX_SHIFTED_ROWS = 1024;
+
+    /**
+     * Minimum number of deleted rows before the columns are compacted, once they are also a quarter of the rows.
+     */
+    private static final int MIN_COMPACTED_ROWS = 1024;
+
+    private final Logger log = LoggerFactory.getLogger(PlayerColumnStore.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Columnar properties;
+
+    private final Timer scanTimer;
+
+    /**
+     * The loaded table, null until it is loaded.
+     */
+    private Columns columns;
+
+    /**
+     * The changes committed while the table is loading, null when it is not.
+     */
+    private List<Row> pending;
+
+    public PlayerColumnStore(
+        EntityManager entityManager,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getColumnar();
+        this.scanTimer =
+            Timer.builder("player.column.store.scan").description("Evaluation of a criteria on the player columns").register(meterRegistry);
+        Gauge
+            .builder("player.column.store.rows", this, PlayerColumnStore::size)
+            .description("Rows of the player columns")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Load the player table, if the store is enabled, before the other listeners of the event such as the warm-up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void load() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Columns loaded = new Columns(INITIAL_CAPACITY);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (
+                    Stream<Object[]> rows = entityManager
+                        .createQuery(
+                            "select p.id, p.name, p.birthDate, p.height, p.weight, p.baskets, p.assists, t.id " +
+                            "from Player p left join p.team t order by p.id",
+                            Object[].class
+                        )
+                        .setHint("org.hibernate.fetchSize", 1000)
+                        .getResultStream()
+                ) {
+                    rows.forEach(row ->
+                        loaded.apply(
+                            new Row(
+                                (Long) row[0],
+                                (String) row[1],
+                                (LocalDate) row[2],
+                                (Double) row[3],
+                                (Double) row[4],
+                                (Integer) row[5],
+                                (Integer) row[6],
+                                (Long) row[7]
+                            )
+                        )
+                    );
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("Could not load the player columns, criteria queries will use the database", e);
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pending.forEach(loaded::apply);
+            loaded.compactIfNeeded();
+            pending = null;
+            columns = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Loaded {} players in columns in {} ms", loaded.rowById.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Apply a created or updated player once the current transaction commits.
+     *
+     * @param player the saved player.
+     */
+    public void put(Player player) {
+        afterCommit(() -> Row.of(player));
+    }
+
+    /**
+     * Apply a partial update of a player once the current transaction commits: the fields of the patch which are not
+     * null replace those of the stored player. The team of the player is not updated.
+     *
+     * @param patch the updated fields of the player, with its id.
+     */
+    public void patch(Player patch) {
+        afterCommit(() -> Row.patch(patch));
+    }
+
+    /**
+     * Apply a deleted player once the current transaction commits.
+     *
+     * @param id the id of the deleted player.
+     */
+    public void remove(Long id) {
+        afterCommit(() -> Row.deleted(id));
+    }
+
+    private void afterCommit(Supplier<Row> change) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(change.get());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change.get());
+                }
+            }
+        );
+    }
+
+    private void apply(Row change) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(change);
+            }
+            if (columns != null) {
+                columns.apply(change);
+                columns.compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the table is loaded and queries can be routed to the store.
+     */
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return columns != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Count the players matching the criteria.
+     *
+     * @param criteria the criteria, may be null.
+     * @return the number of matching players, or empty if the store is not ready.
+     */
+    public OptionalLong count(PlayerCriteria criteria) {
+        lock.readLock().lock();
+        try {
+            if (columns == null) {
+                return OptionalLong.empty();
+            }
+            long count = 0;
+            for (long word : scan(criteria)) {
+                count += Long.bitCount(word);
+            }
+            return OptionalLong.of(count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find a page of the ids of the players matching the criteria, in id order.
+     *
+     * @param criteria the criteria, may be null.
+     * @param page the page, unsorted or sorted by id only.
+     * @return the page of ids, or empty if the store is not ready or the sort is not supported.
+     */
+    public Optional<Page<Long>> findIds(PlayerCriteria criteria, Pageable page) {
+        if (!supports(page.getSort())) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            if (columns == null) {
+                return Optional.empty();
+            }
+            long[] words = scan(criteria);
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            boolean descending = page.getSort().stream().anyMatch(Sort.Order::isDescending);
+            int from = page.isPaged() ? (int) Math.min(page.getOffset(), count) : 0;
+            int to = page.isPaged() ? (int) Math.min((long) from + page.getPageSize(), count) : count;
+            List<Long> content = new ArrayList<>(to - from);
+            // rows are in id order, only the ids of the page are read
+            int index = 0;
+            for (int i = 0; i < words.length && index < to; i++) {
+                int w = descending ? words.length - 1 - i : i;
+                int bits = Long.bitCount(words[w]);
+                if (index + bits <= from) {
+                    index += bits;
+                    continue;
+                }
+                for (long word = words[w]; word != 0 && index < to; index++) {
+                    int bit = descending ? 63 - Long.numberOfLeadingZeros(word) : Long.numberOfTrailingZeros(word);
+                    word &= ~(1L << bit);
+                    if (index >= from) {
+                        content.add(columns.ids.get((w << 6) + bit));
+                    }
+                }
+            }
+            return Optional.of(new PageImpl<>(content, page, count));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean supports(Sort sort) {
+        Iterator<Sort.Order> orders = sort.iterator();
+        if (!orders.hasNext()) {
+            return true;
+        }
+        Sort.Order order = orders.next();
+        return !orders.hasNext() && ID.equals(order.getProperty());
+    }
+
+    /**
+     * Evaluate the criteria into a bitmap of the matching rows. Must be called with the read lock held.
+     */
+    private long[] scan(PlayerCriteria criteria) {
+        Columns table = columns;
+        int wordCount = (table.size + 63) >>> 6;
+        long[] words = new long[wordCount];
+        boolean[] acceptedNames = criteria != null && criteria.getName() != null ? table.names.accepted(criteria.getName()) : null;
+        List<List<RowBitmap>> selections = properties.isBitmapIndexes() ? table.select(criteria) : Collections.emptyList();
+        scanTimer.record(() -> {
+            if (table.size >= properties.getParallelThreshold()) {
+                int chunks = (wordCount + CHUNK_WORDS - 1) / CHUNK_WORDS;
+                IntStream
+                    .range(0, chunks)
+                    .parallel()
+                    .forEach(chunk -> {
+                        int toWord = Math.min(wordCount, (chunk + 1) * CHUNK_WORDS);
+                        table.evaluate(criteria, acceptedNames, selections, words, chunk * CHUNK_WORDS, toWord);
+                    });
+            } else {
+                table.evaluate(criteria, acceptedNames, selections, words, 0, wordCount);
+            }
+        });
+        return words;
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return columns != null ? columns.rowById.size() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The columns of the table in id order, with a bitmap of the live rows.
+     * <p>
+     * A new row is inserted at its position in id order, shifting the following rows up to the next deleted row, whose
+     * place it takes, or to the end. Deleted rows are cleared from the bitmap, and dropped by compacting the columns once
+     * they are a quarter of the rows. Rows which would shift too many rows are appended, and the columns compacted right
+     * away to restore the id order.
+     */
+    private static final class Columns {
+
+        private final Map<Long, Integer> rowById = new HashMap<>();
+
+        private final LongColumn ids;
+
+        private final NameColumn names;
+
+        private final IntColumn birthDates;
+
+        private final DoubleColumn heights;
+
+        private final DoubleColumn weights;
+
+        private final IntColumn baskets;
+
+        private final IntColumn assists;
+
+        private final LongColumn teamIds;
+
+        private final BitmapIndex birthYearIndex;
+
+        private final BitmapIndex heightIndex;
+
+        private final BitmapIndex weightIndex;
+
+        private final BitmapIndex basketsIndex;
+
+        private final BitmapIndex assistsIndex;
+
+        private final BitmapIndex teamIdIndex;
+
+        private long[] live;
+
+        private int capacity;
+
+        private int size;
+
+        private boolean sortedById = true;
+
+        Columns(int capacity) {
+            this.capacity = capacity;
+            this.live = new long[capacity >>> 6];
+            this.ids = new LongColumn(capacity);
+            this.names = new NameColumn(capacity);
+            this.birthDates = new IntColumn(capacity);
+            this.heights = new DoubleColumn(capacity);
+            this.weights = new DoubleColumn(capacity);
+            this.baskets = new IntColumn(capacity);
+            this.assists = new IntColumn(capacity);
+            this.teamIds = new LongColumn(capacity);
+            this.birthYearIndex = new BitmapIndex(capacity);
+            this.heightIndex = new BitmapIndex(capacity);
+            this.weightIndex = new BitmapIndex(capacity);
+            this.basketsIndex = new BitmapIndex(capacity);
+            this.assistsIndex = new BitmapIndex(capacity);
+            this.teamIdIndex = new BitmapIndex(capacity);
+        }
+
+        void apply(Row change) {
+            if (change.deleted) {
+                Integer row = rowById.remove(change.id);
+                if (row != null) {
+                    live[row >>> 6] &= ~(1L << row);
+                    birthYearIndex.remove(row);
+                    heightIndex.remove(row);
+                    weightIndex.remove(row);
+                    basketsIndex.remove(row);
+                    assistsIndex.remove(row);
+                    teamIdIndex.remove(row);
+                }
+                return;
+            }
+            Integer row = rowById.get(change.id);
+            if (change.patch) {
+                if (row != null) {
+                    patch(row, change);
+                }
+                return;
+            }
+            if (row == null) {
+                row = insert(change.id);
+            }
+            ids.set(row, change.id);
+            names.set(row, change.name);
+            birthDates.set(row, change.birthDate != null ? (int) change.birthDate.toEpochDay() : IntColumn.NULL);
+            heights.set(row, change.height);
+            weights.set(row, change.weight);
+            baskets.set(row, change.baskets != null ? change.baskets : IntColumn.NULL);
+            assists.set(row, change.assists != null ? change.assists : IntColumn.NULL);
+            teamIds.set(row, change.teamId != null ? change.teamId : LongColumn.NULL);
+            birthYearIndex.set(row, change.birthDate != null ? change.birthDate.getYear() : BitmapIndex.NULL);
+            heightIndex.set(row, change.height != null ? BitmapIndex.bin(change.height) : BitmapIndex.NULL);
+            weightIndex.set(row, change.weight != null ? BitmapIndex.bin(change.weight) : BitmapIndex.NULL);
+            basketsIndex.set(row, change.baskets != null ? BitmapIndex.bin(change.baskets) : BitmapIndex.NULL);
+            assistsIndex.set(row, change.assists != null ? BitmapIndex.bin(change.assists) : BitmapIndex.NULL);
+            teamIdIndex.set(row, change.teamId != null ? change.teamId : BitmapIndex.NULL);
+        }
+
+        /**
+         * Make room for a new row, in id order when it shifts few enough rows.
+         *
+         * @return the row of the id.
+         */
+        private int insert(long id) {
+            int position = position(id);
+            int free = position;
+            while (free < size && free - position <= MAX_SHIFTED_ROWS && (live[free >>> 6] & (1L << free)) != 0) {
+                free++;
+            }
+            if (free - position > MAX_SHIFTED_ROWS) {
+                position = free = size;
+                sortedById = false;
+            }
+            if (free == size) {
+                if (size == capacity) {
+                    grow(capacity * 2);
+                }
+                size++;
+            }
+            for (int row = free; row > position; row--) {
+                move(row - 1, row);
+            }
+            rowById.put(id, position);
+            live[position >>> 6] |= 1L << position;
+            return position;
+        }
+
+        /**
+         * The first row whose id is not lower than the given one, deleted rows included.
+         */
+        private int position(long id) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (ids.get(middle) < id) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Move a live row to a row which is not, the moved row is left live until it is overwritten.
+         */
+        private void move(int from, int to) {
+            ids.copy(from, to);
+            names.copy(from, to);
+            birthDates.copy(from, to);
+            heights.copy(from, to);
+            weights.copy(from, to);
+            baskets.copy(from, to);
+            assists.copy(from, to);
+            teamIds.copy(from, to);
+            birthYearIndex.move(from, to);
+            heightIndex.move(from, to);
+            weightIndex.move(from, to);
+            basketsIndex.move(from, to);
+            assistsIndex.move(from, to);
+            teamIdIndex.move(from, to);
+            rowById.put(ids.get(to), to);
+            live[to >>> 6] |= 1L << to;
+        }
+
+        /**
+         * Drop the deleted rows and restore the id order of the rows, when needed.
+         */
+        void compactIfNeeded() {
+            int deleted = size - rowById.size();
+            if (sortedById && (deleted < MIN_COMPACTED_ROWS || deleted < size / 4)) {
+                return;
+            }
+            long[] liveIds = rowById.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            int count = liveIds.length;
+            int[] rows = new int[count];
+            for (int i = 0; i < count; i++) {
+                rows[i] = rowById.get(liveIds[i]);
+            }
+            int newCapacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(count, 1)) << 1);
+            ids.compact(rows, count, newCapacity);
+            names.compact(rows, count, newCapacity);
+            birthDates.compact(rows, count, newCapacity);
+            heights.compact(rows, count, newCapacity);
+            weights.compact(rows, count, newCapacity);
+            baskets.compact(rows, count, newCapacity);
+            assists.compact(rows, count, newCapacity);
+            teamIds.compact(rows, count, newCapacity);
+            birthYearIndex.compact(rows, count, newCapacity);
+            heightIndex.compact(rows, count, newCapacity);
+            weightIndex.compact(rows, count, newCapacity);
+            basketsIndex.compact(rows, count, newCapacity);
+            assistsIndex.compact(rows, count, newCapacity);
+            teamIdIndex.compact(rows, count, newCapacity);
+            live = new long[newCapacity >>> 6];
+            Arrays.fill(live, 0, count >>> 6, -1L);
+            if ((count & 63) != 0) {
+                live[count >>> 6] = (1L << count) - 1;
+            }
+            rowById.clear();
+            for (int i = 0; i < count; i++) {
+                rowById.put(liveIds[i], i);
+            }
+            size = count;
+            capacity = newCapacity;
+            sortedById = true;
+        }
+
+        private void patch(int row, Row change) {
+            if (change.name != null) {
+                names.set(row, change.name);
+            }
+            if (change.birthDate != null) {
+                birthDates.set(row, (int) change.birthDate.toEpochDay());
+                birthYearIndex.set(row, change.birthDate.getYear());
+            }
+            if (change.height != null) {
+                heights.set(row, change.height);
+                heightIndex.set(row, BitmapIndex.bin(change.height));
+            }
+            if (change.weight != null) {
+                weights.set(row, change.weight);
+                weightIndex.set(row, BitmapIndex.bin(change.weight));
+            }
+            if (change.baskets != null) {
+                baskets.set(row, change.baskets);
+                basketsIndex.set(row, BitmapIndex.bin(change.baskets));
+            }
+            if (change.assists != null) {
+                assists.set(row, change.assists);
+                assistsIndex.set(row, BitmapIndex.bin(change.assists));
+            }
+        }
+
+        private void grow(int newCapacity) {
+            live = Arrays.copyOf(live, newCapacity >>> 6);
+            ids.grow(newCapacity);
+            names.grow(newCapacity);
+            birthDates.grow(newCapacity);
+            heights.grow(newCapacity);
+            weights.grow(newCapacity);
+            baskets.grow(newCapacity);
+            assists.grow(newCapacity);
+            teamIds.grow(newCapacity);
+            birthYearIndex.grow(newCapacity);
+            heightIndex.grow(newCapacity);
+            weightIndex.grow(newCapacity);
+            basketsIndex.grow(newCapacity);
+            assistsIndex.grow(newCapacity);
+            teamIdIndex.grow(newCapacity);
+            capacity = newCapacity;
+        }
+
+        /**
+         * Select the bitmaps of the rows which may match each filter of the criteria, for the filters whose index
+         * narrows the scan down to less than half of the rows.
+         */
+        List<List<RowBitmap>> select(PlayerCriteria criteria) {
+            List<List<RowBitmap>> selections = new ArrayList<>();
+            if (criteria == null) {
+                return selections;
+            }
+            long maxRows = rowById.size() / 2;
+            if (criteria.getBirthDate() != null) {
+                selections.add(birthYearIndex.select(criteria.getBirthDate(), LocalDate::getYear, maxRows));
+            }
+            if (criteria.getHeight() != null) {
+                selections.add(heightIndex.select(criteria.getHeight(), BitmapIndex::bin, maxRows));
+            }
+            if (criteria.getWeight() != null) {
+                selections.add(weightIndex.select(criteria.getWeight(), BitmapIndex::bin, maxRows));
+            }
+            if (criteria.getBaskets() != null) {
+                selections.add(basketsIndex.select(criteria.getBaskets(), value -> BitmapIndex.bin(value), maxRows));
+            }
+            if (criteria.getAssists() != null) {
+                selections.add(assistsIndex.select(criteria.getAssists(), value -> BitmapIndex.bin(value), maxRows));
+            }
+            if (criteria.getTeamId() != null) {
+                selections.add(teamIdIndex.select((Filter<Long>) criteria.getTeamId(), maxRows));
+            }
+            selections.removeIf(Objects::isNull);
+            return selections;
+        }
+
+        void evaluate(
+            PlayerCriteria criteria,
+            boolean[] acceptedNames,
+            List<List<RowBitmap>> selections,
+            long[] words,
+            int fromWord,
+            int toWord
+        ) {
+            System.arraycopy(live, fromWord, words, fromWord, toWord - fromWord);
+            if (criteria == null) {
+                return;
+            }
+            // the indexes first, so that the columns skip the words they clear
+            for (List<RowBitmap> selection : selections) {
+                BitmapIndex.and(selection, words, fromWord, toWord);
+            }
+            if (criteria.getId() != null) {
+                ids.and(criteria.getId(), words, fromWord, toWord);
+            }
+            if (acceptedNames != null) {
+                names.and(acceptedNames, words, fromWord, toWord);
+            }
+            if (criteria.getBirthDate() != null) {
+                birthDates.and(criteria.getBirthDate(), date -> (int) date.toEpochDay(), words, fromWord, toWord);
+            }
+            if (criteria.getHeight() != null) {
+                heights.and(criteria.getHeight(), words, fromWord, toWord);
+            }
+            if (criteria.getWeight() != null) {
+                weights.and(criteria.getWeight(), words, fromWord, toWord);
+            }
+            if (criteria.getBaskets() != null) {
+                baskets.and(criteria.getBaskets(), Integer::intValue, words, fromWord, toWord);
+            }
+            if (criteria.getAssists() != null) {
+                assists.and(criteria.getAssists(), Integer::intValue, words, fromWord, toWord);
+            }
+            if (criteria.getTeamId() != null) {
+                // Like the specification, the team id filter has the equals, notEquals, in, notIn and specified semantics,
+                // not the range ones
+                teamIds.and((Filter<Long>) criteria.getTeamId(), words, fromWord, toWord);
+            }
+        }
+    }
+
+    /**
+     * A committed change of a player row.
+     */
+    private static final class Row {
+
+        private final Long id;
+
+        private final String name;
+
+        private final LocalDate birthDate;
+
+        private final Double height;
+
+        private final Double weight;
+
+        private final Integer baskets;
+
+        private final Integer assists;
+
+        private final Long teamId;
+
+        private final boolean deleted;
+
+        /**
+         * Whether the null fields of the change are unchanged rather than null.
+         */
+        private final boolean patch;
+
+        Row(Long id, String name, LocalDate birthDate, Double height, Double weight, Integer baskets, Integer assists, Long teamId) {
+            this(id, name, birthDate, height, weight, baskets, assists, teamId, false, false);
+        }
+
+        private Row(
+            Long id,
+            String name,
+            LocalDate birthDate,
+            Double height,
+            Double weight,
+            Integer baskets,
+            Integer assists,
+            Long teamId,
+            boolean deleted,
+            boolean patch
+        ) {
+            this.id = id;
+            this.name = name;
+            this.birthDate = birthDate;
+            this.height = height;
+            this.weight = weight;
+            this.baskets = baskets;
+            this.assists = assists;
+            this.teamId = teamId;
+            this.deleted = deleted;
+            this.patch = patch;
+        }
+
+        static Row of(Player player) {
+            return new Row(
+                player.getId(),
+                player.getName(),
+                player.getBirthDate(),
+                player.getHeight(),
+                player.getWeight(),
+                player.getBaskets(),
+                player.getAssists(),
+                player.getTeam() != null ? player.getTeam().getId() : null
+            );
+        }
+
+        static Row patch(Player patch) {
+            return new Row(
+                patch.getId(),
+                patch.getName(),
+                patch.getBirthDate(),
+                patch.getHeight(),
+                patch.getWeight(),
+                patch.getBaskets(),
+                patch.getAssists(),
+                null,
+                false,
+                true
+            );
+        }
+
+        static Row deleted(Long id) {
+            return new Row(id, null, null, null, null, null, null, null, true, false);
+        }
+    }
+}
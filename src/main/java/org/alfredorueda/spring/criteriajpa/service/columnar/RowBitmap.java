@@ -0,0 +1,153 @@
+package org.alfredorueda.spring.criteriajpa.service.columnar;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of rows, in the spirit of Roaring bitmaps.
+ * <p>
+ * Rows are split in chunks of 65536 by their high 16 bits. A chunk with few rows keeps their low 16 bits in a sorted
+ * {@code char[]}, a denser chunk is stored as a plain bitmap of 1024 words aligned with the words of a row bitmap.
+ */
+final class RowBitmap {
+
+    private static final int CHUNK_BITS = 16;
+
+    private static final int CHUNK_WORDS = 1 << (CHUNK_BITS - 6);
+
+    /**
+     * Above this cardinality an array chunk takes more memory than a bitmap chunk.
+     */
+    private static final int MAX_ARRAY_SIZE = 4096;
+
+    /**
+     * Below this cardinality a bitmap chunk is converted back to an array, lower than the maximum to avoid flapping.
+     */
+    private static final int MIN_BITMAP_SIZE = MAX_ARRAY_SIZE / 2;
+
+    private char[][] arrays = new char[0][];
+
+    private long[][] bitmaps = new long[0][];
+
+    private int[] sizes = new int[0];
+
+    private long cardinality;
+
+    void add(int row) {
+        int chunk = row >>> CHUNK_BITS;
+        if (chunk >= sizes.length) {
+            int length = Math.max(chunk + 1, sizes.length * 2);
+            arrays = Arrays.copyOf(arrays, length);
+            bitmaps = Arrays.copyOf(bitmaps, length);
+            sizes = Arrays.copyOf(sizes, length);
+        }
+        char low = (char) row;
+        if (bitmaps[chunk] != null) {
+            long[] bitmap = bitmaps[chunk];
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) == 0) {
+                bitmap[low >>> 6] |= bit;
+                sizes[chunk]++;
+                cardinality++;
+            }
+            return;
+        }
+        char[] array = arrays[chunk] != null ? arrays[chunk] : new char[4];
+        int size = sizes[chunk];
+        int index = Arrays.binarySearch(array, 0, size, low);
+        if (index >= 0) {
+            return;
+        }
+        if (size == MAX_ARRAY_SIZE) {
+            long[] bitmap = new long[CHUNK_WORDS];
+            for (int i = 0; i < size; i++) {
+                bitmap[array[i] >>> 6] |= 1L << array[i];
+            }
+            bitmap[low >>> 6] |= 1L << low;
+            bitmaps[chunk] = bitmap;
+            arrays[chunk] = null;
+        } else {
+            index = -index - 1;
+            if (size == array.length) {
+                array = Arrays.copyOf(array, Math.min(MAX_ARRAY_SIZE, size * 2));
+            }
+            System.arraycopy(array, index, array, index + 1, size - index);
+            array[index] = low;
+            arrays[chunk] = array;
+        }
+        sizes[chunk]++;
+        cardinality++;
+    }
+
+    void remove(int row) {
+        int chunk = row >>> CHUNK_BITS;
+        if (chunk >= sizes.length || sizes[chunk] == 0) {
+            return;
+        }
+        char low = (char) row;
+        if (bitmaps[chunk] != null) {
+            long[] bitmap = bitmaps[chunk];
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) == 0) {
+                return;
+            }
+            bitmap[low >>> 6] &= ~bit;
+            if (--sizes[chunk] < MIN_BITMAP_SIZE) {
+                char[] array = new char[sizes[chunk]];
+                int index = 0;
+                for (int w = 0; w < CHUNK_WORDS; w++) {
+                    for (long word = bitmap[w]; word != 0; word &= word - 1) {
+                        array[index++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                    }
+                }
+                arrays[chunk] = array;
+                bitmaps[chunk] = null;
+            }
+        } else {
+            char[] array = arrays[chunk];
+            int index = Arrays.binarySearch(array, 0, sizes[chunk], low);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(array, index + 1, array, index, sizes[chunk] - index - 1);
+            sizes[chunk]--;
+        }
+        cardinality--;
+    }
+
+    long cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Set the bits of the rows of this set in the words of a row bitmap, from word {@code fromWord} to word
+     * {@code toWord} excluded, {@code words[0]} being the word {@code fromWord}.
+     */
+    void orInto(long[] words, int fromWord, int toWord) {
+        int lastChunk = Math.min(sizes.length - 1, (toWord - 1) >> (CHUNK_BITS - 6));
+        for (int chunk = fromWord >>> (CHUNK_BITS - 6); chunk <= lastChunk; chunk++) {
+            if (sizes[chunk] == 0) {
+                continue;
+            }
+            int chunkWord = chunk << (CHUNK_BITS - 6);
+            int from = Math.max(fromWord, chunkWord);
+            int to = Math.min(toWord, chunkWord + CHUNK_WORDS);
+            if (bitmaps[chunk] != null) {
+                long[] bitmap = bitmaps[chunk];
+                for (int w = from; w < to; w++) {
+                    words[w - fromWord] |= bitmap[w - chunkWord];
+                }
+            } else {
+                char[] array = arrays[chunk];
+                int size = sizes[chunk];
+                int index = Arrays.binarySearch(array, 0, size, (char) ((from - chunkWord) << 6));
+                for (int i = index >= 0 ? index : -index - 1; i < size; i++) {
+                    int w = chunkWord + (array[i] >>> 6);
+                    if (w >= to) {
+                        break;
+                    }
+                    words[w - fromWord] |= 1L << array[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * In-memory columnar copy of the player table, to evaluate criteria with primitive array scans.
+ */
+package org.alfredorueda.spring.criteriajpa.service.columnar;
@@ -0,0 +1,16 @@
+package org.alfredorueda.spring.criteriajpa.service.criteria;
+
+/**
+ * How a filter on the elements of a to-many association, such as the players of a team, is applied.
+ */
+public enum CollectionFilterStrategy {
+    /**
+     * Left join the elements: the entity is returned, and counted, once per matching element unless {@code distinct} is set.
+     */
+    JOIN,
+    /**
+     * Test the elements with an {@code EXISTS} subquery: the entity is returned once if any element matches, so the
+     * queries and counts only read the rows of the entity.
+     */
+    EXISTS,
+}
@@ -0,0 +1,134 @@
+package org.alfredorueda.spring.criteriajpa.service.criteria;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+import tech.jhipster.service.filter.Filter;
+import tech.jhipster.service.filter.RangeFilter;
+import tech.jhipster.service.filter.StringFilter;
+
+/**
+ * Evaluates the filters of a criteria against attribute values in memory, with the same result as the SQL generated by
+ * {@link tech.jhipster.service.QueryService}: the same precedence between the operators of a filter, and no match for
+ * null values except with {@code specified=false}.
+ */
+public final class CriteriaMatcher {
+
+    private CriteriaMatcher() {}
+
+    /**
+     * Tell if a value matches a {@link Filter}.
+     *
+     * @param filter the filter, may be null.
+     * @param value the value of the attribute, may be null.
+     * @param <X> the type of the attribute.
+     * @return true if the filter is null or the value matches it.
+     */
+    public static <X> boolean filter(Filter<X> filter, X value) {
+        if (filter == null) {
+            return true;
+        }
+        if (filter.getEquals() != null) {
+            return value != null && value.equals(filter.getEquals());
+        }
+        if (filter.getIn() != null) {
+            return value != null && filter.getIn().contains(value);
+        }
+        if (filter.getNotIn() != null) {
+            return filter.getNotIn().isEmpty() || (value != null && !filter.getNotIn().contains(value));
+        }
+        if (filter.getNotEquals() != null) {
+            return value != null && !value.equals(filter.getNotEquals());
+        }
+        if (filter.getSpecified() != null) {
+            return filter.getSpecified() == (value != null);
+        }
+        return true;
+    }
+
+    /**
+     * Tell if a value matches a {@link StringFilter}.
+     *
+     * @param filter the filter, may be null.
+     * @param value the value of the attribute, may be null.
+     * @return true if the filter is null or the value matches it.
+     */
+    public static boolean string(StringFilter filter, String value) {
+        if (filter == null) {
+            return true;
+        }
+        if (filter.getEquals() != null || filter.getIn() != null || filter.getNotIn() != null) {
+            return filter(filter, value);
+        }
+        if (filter.getContains() != null) {
+            return value != null && contains(value, filter.getContains());
+        }
+        if (filter.getDoesNotContain() != null) {
+            return value != null && !contains(value, filter.getDoesNotContain());
+        }
+        return filter(filter, value);
+    }
+
+    /**
+     * Tell if a value matches a {@link RangeFilter}.
+     *
+     * @param filter the filter, may be null.
+     * @param value the value of the attribute, may be null.
+     * @param <X> the type of the attribute.
+     * @return true if the filter is null or the value matches it.
+     */
+    public static <X extends Comparable<? super X>> boolean range(RangeFilter<X> filter, X value) {
+        if (filter == null) {
+            return true;
+        }
+        if (filter.getEquals() != null || filter.getIn() != null) {
+            return filter(filter, value);
+        }
+        if (filter.getSpecified() != null && filter.getSpecified() != (value != null)) {
+            return false;
+        }
+        if (filter.getNotEquals() != null && (value == null || value.equals(filter.getNotEquals()))) {
+            return false;
+        }
+        if (filter.getNotIn() != null && !filter.getNotIn().isEmpty() && (value == null || filter.getNotIn().contains(value))) {
+            return false;
+        }
+        if (filter.getGreaterThan() != null && (value == null || value.compareTo(filter.getGreaterThan()) <= 0)) {
+            return false;
+        }
+        if (filter.getGreaterThanOrEqual() != null && (value == null || value.compareTo(filter.getGreaterThanOrEqual()) < 0)) {
+            return false;
+        }
+        if (filter.getLessThan() != null && (value == null || value.compareTo(filter.getLessThan()) >= 0)) {
+            return false;
+        }
+        return filter.getLessThanOrEqual() == null || (value != null && value.compareTo(filter.getLessThanOrEqual()) <= 0);
+    }
+
+    /**
+     * Same as {@code upper(value) like '%TEXT%'}, where {@code %} and {@code _} in the text are wildcards.
+     */
+    private static boolean contains(String value, String text) {
+        String upperValue = value.toUpperCase(Locale.ROOT);
+        String upperText = text.toUpperCase(Locale.ROOT);
+        if (upperText.indexOf('%') < 0 && upperText.indexOf('_') < 0) {
+            return upperValue.contains(upperText);
+        }
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : upperText.toCharArray()) {
+            if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL).matcher(upperValue).find();
+    }
+}
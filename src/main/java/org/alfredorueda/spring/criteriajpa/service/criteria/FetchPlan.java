@@ -0,0 +1,49 @@
+package org.alfredorueda.spring.criteriajpa.service.criteria;
+
+import java.util.List;
+
+/**
+ * The associations to load together with the entities returned by a criteria query, from the {@code include} request
+ * parameter.
+ * <p>
+ * To-one associations are fetch joined by the query reading the entities, which keeps the query paginated by the
+ * database. Collections are initialized afterwards by one query for the whole page, since fetch joining them would
+ * paginate the joined rows in memory.
+ */
+public final class FetchPlan {
+
+    /**
+     * The plan loading no association beyond the mapping defaults.
+     */
+    public static final FetchPlan NONE = new FetchPlan(List.of(), List.of());
+
+    private final List<String> joins;
+
+    private final List<String> collections;
+
+    /**
+     * @param joins the to-one associations to fetch join.
+     * @param collections the collections to initialize.
+     */
+    public FetchPlan(List<String> joins, List<String> collections) {
+        this.joins = List.copyOf(joins);
+        this.collections = List.copyOf(collections);
+    }
+
+    public List<String> getJoins() {
+        return joins;
+    }
+
+    public List<String> getCollections() {
+        return collections;
+    }
+
+    public boolean isEmpty() {
+        return joins.isEmpty() && collections.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "FetchPlan{joins=" + joins + ", collections=" + collections + "}";
+    }
+}
@@ -0,0 +1,174 @@
+package org.alfredorueda.spring.criteriajpa.service.criteria;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Opaque position inside a keyset (seek) paginated result.
+ * <p>
+ * A cursor remembers the sort property and direction together with the sort key and id of the last row
+ * returned, so the next page can be read with {@code WHERE (key, id) > (:key, :id)} instead of an {@code OFFSET}.
+ * The first page is represented by a cursor without a last row.
+ */
+public final class KeysetCursor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String VERSION = "k1";
+
+    private static final char SEPARATOR = '\n';
+
+    private static final String NULL_VALUE = "N";
+
+    private static final String PRESENT_VALUE = "V";
+
+    private final String property;
+
+    private final Sort.Direction direction;
+
+    private final Long lastId;
+
+    private final String lastValue;
+
+    private KeysetCursor(String property, Sort.Direction direction, Long lastId, String lastValue) {
+        this.property = Objects.requireNonNull(property);
+        this.direction = Objects.requireNonNull(direction);
+        this.lastId = lastId;
+        this.lastValue = lastValue;
+    }
+
+    /**
+     * Cursor pointing before the first row of a result ordered by the given property.
+     *
+     * @param order the sort order of the result, or {@code null} to order by id ascending.
+     * @return the cursor of the first page.
+     */
+    public static KeysetCursor first(Sort.Order order) {
+        if (order == null) {
+            return new KeysetCursor("id", Sort.Direction.ASC, null, null);
+        }
+        return new KeysetCursor(order.getProperty(), order.getDirection(), null, null);
+    }
+
+    /**
+     * Cursor pointing after the given row.
+     *
+     * @param property the sort property.
+     * @param direction the sort direction.
+     * @param lastId the id of the last row returned.
+     * @param lastValue the sort key of the last row returned, {@code null} if the column was null.
+     * @return the cursor of the next page.
+     */
+    public static KeysetCursor after(String property, Sort.Direction direction, Long lastId, Object lastValue) {
+        return new KeysetCursor(property, direction, Objects.requireNonNull(lastId), lastValue == null ? null : lastValue.toString());
+    }
+
+    /**
+     * Decode a token previously produced by {@link #encode()}.
+     *
+     * @param token the opaque token sent by the client.
+     * @return the decoded cursor.
+     * @throws IllegalArgumentException if the token is malformed.
+     */
+    public static KeysetCursor decode(String token) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        String[] parts = decoded.split(String.valueOf(SEPARATOR), 5);
+        if (parts.length != 5 || !VERSION.equals(parts[0]) || parts[4].isEmpty()) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        Sort.Direction direction = Sort.Direction.fromOptionalString(parts[2]).orElseThrow(() ->
+            new IllegalArgumentException("Malformed cursor")
+        );
+        Long lastId;
+        try {
+            lastId = Long.valueOf(parts[3]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        String lastValue = parts[4].startsWith(PRESENT_VALUE) ? parts[4].substring(1) : null;
+        return new KeysetCursor(parts[1], direction, lastId, lastValue);
+    }
+
+    /**
+     * Encode this cursor as an opaque, URL safe token.
+     *
+     * @return the token.
+     */
+    public String encode() {
+        if (isFirst()) {
+            throw new IllegalStateException("The first page has no cursor token");
+        }
+        String raw =
+            VERSION +
+            SEPARATOR +
+            property +
+            SEPARATOR +
+            direction.name() +
+            SEPARATOR +
+            lastId +
+            SEPARATOR +
+            (lastValue == null ? NULL_VALUE : PRESENT_VALUE + lastValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isFirst() {
+        return lastId == null;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+
+    public String getLastValue() {
+        return lastValue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        KeysetCursor that = (KeysetCursor) o;
+        return (
+            property.equals(that.property) &&
+            direction == that.direction &&
+            Objects.equals(lastId, that.lastId) &&
+            Objects.equals(lastValue, that.lastValue)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(property, direction, lastId, lastValue);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "KeysetCursor{" +
+            "property='" + property + "'" +
+            ", direction=" + direction +
+            ", lastId=" + lastId +
+            ", lastValue='" + lastValue + "'" +
+            "}";
+    }
+}
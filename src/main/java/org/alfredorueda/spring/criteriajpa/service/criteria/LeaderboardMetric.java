@@ -0,0 +1,30 @@
+package org.alfredorueda.spring.criteriajpa.service.criteria;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The {@link org.alfredorueda.spring.criteriajpa.domain.Player} attributes players are ranked by in leaderboards,
+ * highest first.
+ */
+public enum LeaderboardMetric {
+    BASKETS("baskets"),
+    ASSISTS("assists");
+
+    private final String parameter;
+
+    LeaderboardMetric(String parameter) {
+        this.parameter = parameter;
+    }
+
+    /**
+     * @return the name of the metric in requests, which is also the name of the ranked attribute.
+     */
+    public String getParameter() {
+        return parameter;
+    }
+
+    public static Optional<LeaderboardMetric> fromParameter(String parameter) {
+        return Arrays.stream(values()).filter(metric -> metric.parameter.equals(parameter)).findFirst();
+    }
+}
@@ -0,0 +1,36 @@
+package org.alfredorueda.spring.criteriajpa.service.criteria;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The dimensions {@link org.alfredorueda.spring.criteriajpa.domain.Player} statistics can be grouped by.
+ */
+public enum PlayerStatsGroupBy {
+    /**
+     * The team of the player, by id. Players without a team are grouped under a null key.
+     */
+    TEAM("team"),
+    /**
+     * The city of the team of the player.
+     */
+    TEAM_CITY("teamCity"),
+    /**
+     * The year of the birth date of the player.
+     */
+    BIRTH_YEAR("birthYear");
+
+    private final String parameter;
+
+    PlayerStatsGroupBy(String parameter) {
+        this.parameter = parameter;
+    }
+
+    public String getParameter() {
+        return parameter;
+    }
+
+    public static Optional<PlayerStatsGroupBy> fromParameter(String parameter) {
+        return Arrays.stream(values()).filter(groupBy -> groupBy.parameter.equals(parameter)).findFirst();
+    }
+}
@@ -0,0 +1,135 @@
+package org.alfredorueda.spring.criteriajpa.service.criteria;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Root;
+import org.alfredorueda.spring.criteriajpa.domain.Player;
+
+/**
+ * An aggregate of a numeric {@link Player} attribute, written {@code <attribute>.<function>} in requests, like
+ * {@code baskets.sum} or {@code height.avg}.
+ */
+public final class PlayerStatsMetric {
+
+    /**
+     * The numeric attributes which can be aggregated.
+     */
+    public enum Attribute {
+        BASKETS("baskets"),
+        ASSISTS("assists"),
+        HEIGHT("height"),
+        WEIGHT("weight");
+
+        private final String name;
+
+        Attribute(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * The aggregate functions.
+     */
+    public enum Function {
+        SUM,
+        AVG,
+        MIN,
+        MAX
+    }
+
+    private final Attribute attribute;
+
+    private final Function function;
+
+    public PlayerStatsMetric(Attribute attribute, Function function) {
+        this.attribute = attribute;
+        this.function = function;
+    }
+
+    /**
+     * Parse a metric from its request parameter.
+     *
+     * @param parameter the parameter, like {@code baskets.sum}.
+     * @return the metric, or empty if the parameter is not a valid metric.
+     */
+    public static Optional<PlayerStatsMetric> fromParameter(String parameter) {
+        int dot = parameter.lastIndexOf('.');
+        if (dot < 0) {
+            return Optional.empty();
+        }
+        String attributeName = parameter.substring(0, dot);
+        String functionName = parameter.substring(dot + 1).toUpperCase(Locale.ROOT);
+        Optional<Attribute> attribute = Arrays.stream(Attribute.values()).filter(a -> a.name.equals(attributeName)).findFirst();
+        Optional<Function> function = Arrays.stream(Function.values()).filter(f -> f.name().equals(functionName)).findFirst();
+        if (attribute.isEmpty() || function.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new PlayerStatsMetric(attribute.orElseThrow(), function.orElseThrow()));
+    }
+
+    /**
+     * Build the aggregate expression of this metric.
+     *
+     * @param root the player root of the query.
+     * @param cb the criteria builder.
+     * @return the expression.
+     */
+    public Expression<? extends Number> toExpression(Root<Player> root, CriteriaBuilder cb) {
+        Expression<Number> value = root.get(attribute.name);
+        switch (function) {
+            case SUM:
+                return cb.sum(value);
+            case AVG:
+                return cb.avg(value);
+            case MIN:
+                return cb.min(value);
+            default:
+                return cb.max(value);
+        }
+    }
+
+    public Attribute getAttribute() {
+        return attribute;
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    /**
+     * @return the name of the metric, as written in requests.
+     */
+    public String getName() {
+        return attribute.name + "." + function.name().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PlayerStatsMetric that = (PlayerStatsMetric) o;
+        return attribute == that.attribute && function == that.function;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(attribute, function);
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -29,6 +29,8 @@ public class TeamCriteria implements Serializable, Criteria {
 
     private LongFilter playerId;
 
+    private CollectionFilterStrategy playerIdStrategy;
+
     private Boolean distinct;
 
     public TeamCriteria() {}
@@ -38,6 +40,7 @@ public class TeamCriteria implements Serializable, Criteria {
         this.name = other.name == null ? null : other.name.copy();
         this.city = other.city == null ? null : other.city.copy();
         this.playerId = other.playerId == null ? null : other.playerId.copy();
+        this.playerIdStrategy = other.playerIdStrategy;
         this.distinct = other.distinct;
     }
 
@@ -106,6 +109,14 @@ public class TeamCriteria implements Serializable, Criteria {
         this.playerId = playerId;
     }
 
+    public CollectionFilterStrategy getPlayerIdStrategy() {
+        return playerIdStrategy;
+    }
+
+    public void setPlayerIdStrategy(CollectionFilterStrategy playerIdStrategy) {
+        this.playerIdStrategy = playerIdStrategy;
+    }
+
     public Boolean getDistinct() {
         return distinct;
     }
@@ -128,13 +139,14 @@ public class TeamCriteria implements Serializable, Criteria {
             Objects.equals(name, that.name) &&
             Objects.equals(city, that.city) &&
             Objects.equals(playerId, that.playerId) &&
+            Objects.equals(playerIdStrategy, that.playerIdStrategy) &&
             Objects.equals(distinct, that.distinct)
         );
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, city, playerId, distinct);
+        return Objects.hash(id, name, city, playerId, playerIdStrategy, distinct);
     }
 
     // prettier-ignore
@@ -145,6 +157,7 @@ public class TeamCriteria implements Serializable, Criteria {
             (name != null ? "name=" + name + ", " : "") +
             (city != null ? "city=" + city + ", " : "") +
             (playerId != null ? "playerId=" + playerId + ", " : "") +
+            (playerIdStrategy != null ? "playerIdStrategy=" + playerIdStrategy + ", " : "") +
             (distinct != null ? "distinct=" + distinct + ", " : "") +
             "}";
     }
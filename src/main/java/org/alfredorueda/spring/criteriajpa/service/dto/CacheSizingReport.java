@@ -0,0 +1,268 @@
+package org.alfredorueda.spring.criteriajpa.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO for the sizes recommended by the cache sizing advisor, with the miss ratio curves they are computed from.
+ */
+public class CacheSizingReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private double targetHitRatio;
+
+    private List<Region> regions = new ArrayList<>();
+
+    public CacheSizingReport() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public double getTargetHitRatio() {
+        return targetHitRatio;
+    }
+
+    public void setTargetHitRatio(double targetHitRatio) {
+        this.targetHitRatio = targetHitRatio;
+    }
+
+    /**
+     * @return the caches whose reads were sampled, by name.
+     */
+    public List<Region> getRegions() {
+        return regions;
+    }
+
+    public void setRegions(List<Region> regions) {
+        this.regions = regions;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CacheSizingReport{" +
+            "targetHitRatio=" + getTargetHitRatio() +
+            ", regions=" + getRegions() +
+            "}";
+    }
+
+    /**
+     * The recommended size of one cache.
+     */
+    public static class Region implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String cache;
+
+        private long heapEntries;
+
+        private Double observedHitRatio;
+
+        private long accesses;
+
+        private long sampledAccesses;
+
+        private int sampledKeys;
+
+        private double samplingRate;
+
+        private double predictedHitRatio;
+
+        private double maxHitRatio;
+
+        private Long recommendedEntries;
+
+        private Long recommendedBytes;
+
+        private List<Point> curve = new ArrayList<>();
+
+        public Region() {
+            // Empty constructor needed for Jackson.
+        }
+
+        public String getCache() {
+            return cache;
+        }
+
+        public void setCache(String cache) {
+            this.cache = cache;
+        }
+
+        /**
+         * @return the maximum number of entries of the heap tier of the cache.
+         */
+        public long getHeapEntries() {
+            return heapEntries;
+        }
+
+        public void setHeapEntries(long heapEntries) {
+            this.heapEntries = heapEntries;
+        }
+
+        /**
+         * @return the hit ratio of the heap tier measured by the cache since it was created, or null if it was not read.
+         */
+        public Double getObservedHitRatio() {
+            return observedHitRatio;
+        }
+
+        public void setObservedHitRatio(Double observedHitRatio) {
+            this.observedHitRatio = observedHitRatio;
+        }
+
+        /**
+         * @return the number of recorded reads, sampled or not.
+         */
+        public long getAccesses() {
+            return accesses;
+        }
+
+        public void setAccesses(long accesses) {
+            this.accesses = accesses;
+        }
+
+        /**
+         * @return the number of sampled reads the curve is computed from, weighted to the current sampling rate.
+         */
+        public long getSampledAccesses() {
+            return sampledAccesses;
+        }
+
+        public void setSampledAccesses(long sampledAccesses) {
+            this.sampledAccesses = sampledAccesses;
+        }
+
+        public int getSampledKeys() {
+            return sampledKeys;
+        }
+
+        public void setSampledKeys(int sampledKeys) {
+            this.sampledKeys = sampledKeys;
+        }
+
+        public double getSamplingRate() {
+            return samplingRate;
+        }
+
+        public void setSamplingRate(double samplingRate) {
+            this.samplingRate = samplingRate;
+        }
+
+        /**
+         * @return the hit ratio of the heap tier predicted by the curve, to compare with the observed hit ratio.
+         */
+        public double getPredictedHitRatio() {
+            return predictedHitRatio;
+        }
+
+        public void setPredictedHitRatio(double predictedHitRatio) {
+            this.predictedHitRatio = predictedHitRatio;
+        }
+
+        /**
+         * @return the hit ratio of a cache holding every key, which misses only the first read of every key.
+         */
+        public double getMaxHitRatio() {
+            return maxHitRatio;
+        }
+
+        public void setMaxHitRatio(double maxHitRatio) {
+            this.maxHitRatio = maxHitRatio;
+        }
+
+        /**
+         * @return the smallest number of entries reaching the target hit ratio, or null if no size reaches it.
+         */
+        public Long getRecommendedEntries() {
+            return recommendedEntries;
+        }
+
+        public void setRecommendedEntries(Long recommendedEntries) {
+            this.recommendedEntries = recommendedEntries;
+        }
+
+        /**
+         * @return the size of the recommended entries, from the average size of the off-heap entries, or null if the
+         * cache has no off-heap entry.
+         */
+        public Long getRecommendedBytes() {
+            return recommendedBytes;
+        }
+
+        public void setRecommendedBytes(Long recommendedBytes) {
+            this.recommendedBytes = recommendedBytes;
+        }
+
+        /**
+         * @return the predicted hit ratio of increasing numbers of entries.
+         */
+        public List<Point> getCurve() {
+            return curve;
+        }
+
+        public void setCurve(List<Point> curve) {
+            this.curve = curve;
+        }
+
+        // prettier-ignore
+        @Override
+        public String toString() {
+            return "Region{" +
+                "cache='" + getCache() + "'" +
+                ", heapEntries=" + getHeapEntries() +
+                ", observedHitRatio=" + getObservedHitRatio() +
+                ", sampledAccesses=" + getSampledAccesses() +
+                ", predictedHitRatio=" + getPredictedHitRatio() +
+                ", recommendedEntries=" + getRecommendedEntries() +
+                "}";
+        }
+    }
+
+    /**
+     * A point of a miss ratio curve.
+     */
+    public static class Point implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private long entries;
+
+        private double hitRatio;
+
+        public Point() {
+            // Empty constructor needed for Jackson.
+        }
+
+        public Point(long entries, double hitRatio) {
+            this.entries = entries;
+            this.hitRatio = hitRatio;
+        }
+
+        public long getEntries() {
+            return entries;
+        }
+
+        public void setEntries(long entries) {
+            this.entries = entries;
+        }
+
+        public double getHitRatio() {
+            return hitRatio;
+        }
+
+        public void setHitRatio(double hitRatio) {
+            this.hitRatio = hitRatio;
+        }
+
+        // prettier-ignore
+        @Override
+        public String toString() {
+            return "Point{" +
+                "entries=" + getEntries() +
+                ", hitRatio=" + getHitRatio() +
+                "}";
+        }
+    }
+}
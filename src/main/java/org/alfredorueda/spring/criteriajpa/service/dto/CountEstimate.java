@@ -0,0 +1,56 @@
+package org.alfredorueda.spring.criteriajpa.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * The number of entities matching a criteria, either counted or estimated from a sample.
+ * <p>
+ * The error bound of an estimate is the half width of its 95% confidence interval: the exact count is in
+ * {@code [count - errorBound, count + errorBound]} with a 95% probability, as of the time the sample was taken.
+ */
+public class CountEstimate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long count;
+
+    private final long errorBound;
+
+    private final boolean estimated;
+
+    private CountEstimate(long count, long errorBound, boolean estimated) {
+        this.count = count;
+        this.errorBound = errorBound;
+        this.estimated = estimated;
+    }
+
+    public static CountEstimate exact(long count) {
+        return new CountEstimate(count, 0, false);
+    }
+
+    public static CountEstimate estimated(long count, long errorBound) {
+        return new CountEstimate(count, errorBound, true);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrorBound() {
+        return errorBound;
+    }
+
+    public boolean isEstimated() {
+        return estimated;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CountEstimate{" +
+            "count=" + getCount() +
+            ", errorBound=" + getErrorBound() +
+            ", estimated=" + isEstimated() +
+            "}";
+    }
+}
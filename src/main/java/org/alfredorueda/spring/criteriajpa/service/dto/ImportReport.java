@@ -0,0 +1,152 @@
+package org.alfredorueda.spring.criteriajpa.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO for the outcome of a CSV import.
+ */
+public class ImportReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String entity;
+
+    private long rows;
+
+    private long imported;
+
+    private long rejected;
+
+    private long durationMillis;
+
+    private List<Rejection> rejections = new ArrayList<>();
+
+    public ImportReport() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public void setEntity(String entity) {
+        this.entity = entity;
+    }
+
+    /**
+     * @return the number of non blank lines after the header.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * @return the number of rows read per second, imported or rejected.
+     */
+    public long getRowsPerSecond() {
+        return durationMillis > 0 ? rows * 1000 / durationMillis : rows;
+    }
+
+    /**
+     * @return the first rejected rows, up to {@code application.import.max-reported-rejections}.
+     */
+    public List<Rejection> getRejections() {
+        return rejections;
+    }
+
+    public void setRejections(List<Rejection> rejections) {
+        this.rejections = rejections;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ImportReport{" +
+            "entity='" + getEntity() + "'" +
+            ", rows=" + getRows() +
+            ", imported=" + getImported() +
+            ", rejected=" + getRejected() +
+            ", durationMillis=" + getDurationMillis() +
+            ", rowsPerSecond=" + getRowsPerSecond() +
+            "}";
+    }
+
+    /**
+     * A rejected row.
+     */
+    public static class Rejection implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private long line;
+
+        private String reason;
+
+        public Rejection() {
+            // Empty constructor needed for Jackson.
+        }
+
+        public Rejection(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        /**
+         * @return the number of the line in the file, the header being line 1.
+         */
+        public long getLine() {
+            return line;
+        }
+
+        public void setLine(long line) {
+            this.line = line;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public void setReason(String reason) {
+            this.reason = reason;
+        }
+
+        // prettier-ignore
+        @Override
+        public String toString() {
+            return "Rejection{" +
+                "line=" + getLine() +
+                ", reason='" + getReason() + "'" +
+                "}";
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package org.alfredorueda.spring.criteriajpa.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO for the recommendations of the index advisor, with the recorded criteria queries they are computed from.
+ */
+public class IndexAdvisorReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long droppedExecutions;
+
+    private List<QueryUsage> queries = new ArrayList<>();
+
+    private List<Recommendation> recommendations = new ArrayList<>();
+
+    public IndexAdvisorReport() {
+        // Empty constructor needed for Jackson.
+    }
+
+    /**
+     * @return the number of executions which were not recorded, because too many criteria shapes were already recorded.
+     */
+    public long getDroppedExecutions() {
+        return droppedExecutions;
+    }
+
+    public void setDroppedExecutions(long droppedExecutions) {
+        this.droppedExecutions = droppedExecutions;
+    }
+
+    /**
+     * @return the recorded queries, by decreasing total duration.
+     */
+    public List<QueryUsage> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<QueryUsage> queries) {
+        this.queries = queries;
+    }
+
+    /**
+     * @return the recommended indexes, by decreasing total duration of the queries they serve.
+     */
+    public List<Recommendation> getRecommendations() {
+        return recommendations;
+    }
+
+    public void setRecommendations(List<Recommendation> recommendations) {
+        this.recommendations = recommendations;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "IndexAdvisorReport{" +
+            "droppedExecutions=" + getDroppedExecutions() +
+            ", queries=" + getQueries() +
+            ", recommendations=" + getRecommendations() +
+            "}";
+    }
+
+    /**
+     * The executions of the criteria queries of one entity, shape and sort.
+     */
+    public static class QueryUsage implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String entity;
+
+        private String shape;
+
+        private List<String> sort = new ArrayList<>();
+
+        private long executions;
+
+        private double totalMillis;
+
+        private double maxMillis;
+
+        private String index;
+
+        public QueryUsage() {
+            // Empty constructor needed for Jackson.
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        public void setEntity(String entity) {
+            this.entity = entity;
+        }
+
+        /**
+         * @return the filters and operators of the criteria, for example {@code e.name.contains;left join e.team t;t.id.eq;}.
+         */
+        public String getShape() {
+            return shape;
+        }
+
+        public void setShape(String shape) {
+            this.shape = shape;
+        }
+
+        /**
+         * @return the sort properties of the queries.
+         */
+        public List<String> getSort() {
+            return sort;
+        }
+
+        public void setSort(List<String> sort) {
+            this.sort = sort;
+        }
+
+        public long getExecutions() {
+            return executions;
+        }
+
+        public void setExecutions(long executions) {
+            this.executions = executions;
+        }
+
+        public double getTotalMillis() {
+            return totalMillis;
+        }
+
+        public void setTotalMillis(double totalMillis) {
+            this.totalMillis = totalMillis;
+        }
+
+        public double getMeanMillis() {
+            return executions > 0 ? Math.round(totalMillis * 1000 / executions) / 1000.0 : 0;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        public void setMaxMillis(double maxMillis) {
+            this.maxMillis = maxMillis;
+        }
+
+        /**
+         * @return the name of the existing or recommended index serving the queries, or null if no index can serve them.
+         */
+        public String getIndex() {
+            return index;
+        }
+
+        public void setIndex(String index) {
+            this.index = index;
+        }
+
+        // prettier-ignore
+        @Override
+        public String toString() {
+            return "QueryUsage{" +
+                "entity='" + getEntity() + "'" +
+                ", shape='" + getShape() + "'" +
+                ", sort=" + getSort() +
+                ", executions=" + getExecutions() +
+                ", totalMillis=" + getTotalMillis() +
+                ", index='" + getIndex() + "'" +
+                "}";
+        }
+    }
+
+    /**
+     * A recommended index.
+     */
+    public static class Recommendation implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String table;
+
+        private String name;
+
+        private List<String> columns = new ArrayList<>();
+
+        private long executions;
+
+        private double totalMillis;
+
+        private Boolean verified;
+
+        private String plan;
+
+        public Recommendation() {
+            // Empty constructor needed for Jackson.
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public void setTable(String table) {
+            this.table = table;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        public void setColumns(List<String> columns) {
+            this.columns = columns;
+        }
+
+        /**
+         * @return the number of recorded executions of the queries the index would serve.
+         */
+        public long getExecutions() {
+            return executions;
+        }
+
+        public void setExecutions(long executions) {
+            this.executions = executions;
+        }
+
+        /**
+         * @return the total duration of the recorded queries the index would serve.
+         */
+        public double getTotalMillis() {
+            return totalMillis;
+        }
+
+        public void setTotalMillis(double totalMillis) {
+            this.totalMillis = totalMillis;
+        }
+
+        /**
+         * @return whether the H2 query plan of the heaviest served query uses the index, or null if it was not verified.
+         */
+        public Boolean getVerified() {
+            return verified;
+        }
+
+        public void setVerified(Boolean verified) {
+            this.verified = verified;
+        }
+
+        /**
+         * @return the H2 query plan the verification is based on.
+         */
+        public String getPlan() {
+            return plan;
+        }
+
+        public void setPlan(String plan) {
+            this.plan = plan;
+        }
+
+        // prettier-ignore
+        @Override
+        public String toString() {
+            return "Recommendation{" +
+                "table='" + getTable() + "'" +
+                ", name='" + getName() + "'" +
+                ", columns=" + getColumns() +
+                ", executions=" + getExecutions() +
+                ", totalMillis=" + getTotalMillis() +
+                ", verified=" + getVerified() +
+                "}";
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.alfredorueda.spring.criteriajpa.service.dto;
+
+import java.util.List;
+import org.alfredorueda.spring.criteriajpa.service.criteria.KeysetCursor;
+
+/**
+ * A page of a keyset paginated result, together with the cursor of the next page.
+ * No total count is computed for it.
+ */
+public class KeysetSlice<T> {
+
+    private final List<T> content;
+
+    private final KeysetCursor next;
+
+    public KeysetSlice(List<T> content, KeysetCursor next) {
+        this.content = content;
+        this.next = next;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    /**
+     * @return the cursor of the next page, or {@code null} if this is the last page.
+     */
+    public KeysetCursor getNext() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
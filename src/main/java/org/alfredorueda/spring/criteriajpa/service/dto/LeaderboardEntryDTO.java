@@ -0,0 +1,98 @@
+package org.alfredorueda.spring.criteriajpa.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for the position of a {@link org.alfredorueda.spring.criteriajpa.domain.Player} in a leaderboard.
+ */
+public class LeaderboardEntryDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer rank;
+
+    private Integer teamRank;
+
+    private Long playerId;
+
+    private String playerName;
+
+    private Long teamId;
+
+    private Integer score;
+
+    public LeaderboardEntryDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    /**
+     * @return the rank of the player in the leaderboard, 1 plus the number of players with a higher score: players with
+     * the same score share the same rank. Null when the player has no score.
+     */
+    public Integer getRank() {
+        return rank;
+    }
+
+    public void setRank(Integer rank) {
+        this.rank = rank;
+    }
+
+    /**
+     * @return the rank of the player in the leaderboard of their team, only returned with the rank of a single player.
+     */
+    public Integer getTeamRank() {
+        return teamRank;
+    }
+
+    public void setTeamRank(Integer teamRank) {
+        this.teamRank = teamRank;
+    }
+
+    public Long getPlayerId() {
+        return playerId;
+    }
+
+    public void setPlayerId(Long playerId) {
+        this.playerId = playerId;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public void setPlayerName(String playerName) {
+        this.playerName = playerName;
+    }
+
+    public Long getTeamId() {
+        return teamId;
+    }
+
+    public void setTeamId(Long teamId) {
+        this.teamId = teamId;
+    }
+
+    /**
+     * @return the value of the ranked attribute.
+     */
+    public Integer getScore() {
+        return score;
+    }
+
+    public void setScore(Integer score) {
+        this.score = score;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "LeaderboardEntryDTO{" +
+            "rank=" + getRank() +
+            ", teamRank=" + getTeamRank() +
+            ", playerId=" + getPlayerId() +
+            ", playerName='" + getPlayerName() + "'" +
+            ", teamId=" + getTeamId() +
+            ", score=" + getScore() +
+            "}";
+    }
+}
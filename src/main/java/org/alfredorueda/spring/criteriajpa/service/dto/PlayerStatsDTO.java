@@ -0,0 +1,81 @@
+package org.alfredorueda.spring.criteriajpa.service.dto;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A DTO for one group of {@link org.alfredorueda.spring.criteriajpa.domain.Player} statistics.
+ */
+public class PlayerStatsDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Object key;
+
+    private String name;
+
+    private long count;
+
+    private Map<String, Number> metrics = new LinkedHashMap<>();
+
+    public PlayerStatsDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    /**
+     * @return the value of the group by dimension: a team id, a city or a year. Null for the players without one.
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    public void setKey(Object key) {
+        this.key = key;
+    }
+
+    /**
+     * @return the name of the team, when grouping by team.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the number of players in the group.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * @return the requested metrics by name, like {@code baskets.sum}. The value is null when all the players of the
+     * group have a null attribute.
+     */
+    public Map<String, Number> getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Map<String, Number> metrics) {
+        this.metrics = metrics;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "PlayerStatsDTO{" +
+            "key=" + getKey() +
+            ", name='" + getName() + "'" +
+            ", count=" + getCount() +
+            ", metrics=" + getMetrics() +
+            "}";
+    }
+}
@@ -0,0 +1,97 @@
+package org.alfredorueda.spring.criteriajpa.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for a {@link org.alfredorueda.spring.criteriajpa.domain.Team} together with the aggregates of its roster.
+ */
+public class TeamSummaryDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private String name;
+
+    private String city;
+
+    private long playerCount;
+
+    private long baskets;
+
+    private long assists;
+
+    public TeamSummaryDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    /**
+     * @return the number of players of the team.
+     */
+    public long getPlayerCount() {
+        return playerCount;
+    }
+
+    public void setPlayerCount(long playerCount) {
+        this.playerCount = playerCount;
+    }
+
+    /**
+     * @return the total baskets of the players of the team, 0 when none is known.
+     */
+    public long getBaskets() {
+        return baskets;
+    }
+
+    public void setBaskets(long baskets) {
+        this.baskets = baskets;
+    }
+
+    /**
+     * @return the total assists of the players of the team, 0 when none is known.
+     */
+    public long getAssists() {
+        return assists;
+    }
+
+    public void setAssists(long assists) {
+        this.assists = assists;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "TeamSummaryDTO{" +
+            "id=" + getId() +
+            ", name='" + getName() + "'" +
+            ", city='" + getCity() + "'" +
+            ", playerCount=" + getPlayerCount() +
+            ", baskets=" + getBaskets() +
+            ", assists=" + getAssists() +
+            "}";
+    }
+}
@@ -0,0 +1,215 @@
+package org.alfredorueda.spring.criteriajpa.service.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO for the timing of a warm-up of the application.
+ */
+public class WarmupReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Instant startedAt;
+
+    private long totalMillis;
+
+    private long queryMillis;
+
+    private long loadMillis;
+
+    private boolean timedOut;
+
+    private long loadedPlayers;
+
+    private long loadedTeams;
+
+    private List<QueryTiming> queries = new ArrayList<>();
+
+    public WarmupReport() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public void setTotalMillis(long totalMillis) {
+        this.totalMillis = totalMillis;
+    }
+
+    /**
+     * @return the duration of the replay of the criteria queries.
+     */
+    public long getQueryMillis() {
+        return queryMillis;
+    }
+
+    public void setQueryMillis(long queryMillis) {
+        this.queryMillis = queryMillis;
+    }
+
+    /**
+     * @return the duration of the loads by id of the entities returned by the queries.
+     */
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    public void setLoadMillis(long loadMillis) {
+        this.loadMillis = loadMillis;
+    }
+
+    /**
+     * @return whether the warm-up was interrupted by its timeout.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public void setTimedOut(boolean timedOut) {
+        this.timedOut = timedOut;
+    }
+
+    public long getLoadedPlayers() {
+        return loadedPlayers;
+    }
+
+    public void setLoadedPlayers(long loadedPlayers) {
+        this.loadedPlayers = loadedPlayers;
+    }
+
+    public long getLoadedTeams() {
+        return loadedTeams;
+    }
+
+    public void setLoadedTeams(long loadedTeams) {
+        this.loadedTeams = loadedTeams;
+    }
+
+    public List<QueryTiming> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<QueryTiming> queries) {
+        this.queries = queries;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "WarmupReport{" +
+            "startedAt=" + getStartedAt() +
+            ", totalMillis=" + getTotalMillis() +
+            ", queryMillis=" + getQueryMillis() +
+            ", loadMillis=" + getLoadMillis() +
+            ", timedOut=" + isTimedOut() +
+            ", loadedPlayers=" + getLoadedPlayers() +
+            ", loadedTeams=" + getLoadedTeams() +
+            "}";
+    }
+
+    /**
+     * The executions of one warm-up query.
+     */
+    public static class QueryTiming implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String entity;
+
+        private String query;
+
+        private long executions;
+
+        private long errors;
+
+        private double firstMillis;
+
+        private double lastMillis;
+
+        public QueryTiming() {
+            // Empty constructor needed for Jackson.
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        public void setEntity(String entity) {
+            this.entity = entity;
+        }
+
+        /**
+         * @return the query string of the query.
+         */
+        public String getQuery() {
+            return query;
+        }
+
+        public void setQuery(String query) {
+            this.query = query;
+        }
+
+        public long getExecutions() {
+            return executions;
+        }
+
+        public void setExecutions(long executions) {
+            this.executions = executions;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public void setErrors(long errors) {
+            this.errors = errors;
+        }
+
+        /**
+         * @return the duration of the first, cold, execution.
+         */
+        public double getFirstMillis() {
+            return firstMillis;
+        }
+
+        public void setFirstMillis(double firstMillis) {
+            this.firstMillis = firstMillis;
+        }
+
+        /**
+         * @return the duration of the last, warmest, execution.
+         */
+        public double getLastMillis() {
+            return lastMillis;
+        }
+
+        public void setLastMillis(double lastMillis) {
+            this.lastMillis = lastMillis;
+        }
+
+        // prettier-ignore
+        @Override
+        public String toString() {
+            return "QueryTiming{" +
+                "entity='" + getEntity() + "'" +
+                ", query='" + getQuery() + "'" +
+                ", executions=" + getExecutions() +
+                ", errors=" + getErrors() +
+                ", firstMillis=" + getFirstMillis() +
+                ", lastMillis=" + getLastMillis() +
+                "}";
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.alfredorueda.spring.criteriajpa.service.estimate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.alfredorueda.spring.criteriajpa.service.dto.CountEstimate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Estimates the number of entities matching a criteria from a uniform sample of the entities.
+ * <p>
+ * The sample holds at most {@code sample-size} entities together with the total number of rows. It is only taken once
+ * estimates are enabled and asked for, and always in the background so no request waits for it: the counts are exact
+ * until the first sample is taken, and the first estimate after {@code refresh-interval} takes it again while the
+ * estimates keep using the previous one. The estimate is the share of the sampled entities matching the criteria, times
+ * the number of rows. No estimate is given when:
+ * <ul>
+ *     <li>estimates are disabled, or the criteria can't be evaluated in memory;</li>
+ *     <li>the first sample isn't taken yet;</li>
+ *     <li>fewer than {@code min-sampled-matches} sampled entities match, as the filter is too selective for the
+ *     sample to tell;</li>
+ *     <li>the estimate is below {@code min-estimate}, as such counts are cheap enough to be exact.</li>
+ * </ul>
+ *
+ * @param <ENTITY> the type of the entity.
+ * @param <CRITERIA> the type of the criteria.
+ */
+public class CountEstimator<ENTITY, CRITERIA> {
+
+    /**
+     * Quantile of the normal distribution for a 95% confidence interval.
+     */
+    private static final double Z_95 = 1.96;
+
+    private final Logger log = LoggerFactory.getLogger(CountEstimator.class);
+
+    private final String entityName;
+
+    private final ApplicationProperties.Estimate properties;
+
+    private final Predicate<CRITERIA> supported;
+
+    private final BiPredicate<CRITERIA, ENTITY> matcher;
+
+    private final Sampler<ENTITY> sampler;
+
+    private final Executor executor;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile Sample<ENTITY> sample;
+
+    /**
+     * @param entityName the name of the entity, for logging.
+     * @param properties the sampling and fallback settings.
+     * @param supported tells if a criteria can be evaluated in memory.
+     * @param matcher tells if an entity matches a criteria, with the same semantics as the database query.
+     * @param sampler takes the sample, in its own transaction.
+     * @param executor runs the sampler.
+     */
+    public CountEstimator(
+        String entityName,
+        ApplicationProperties.Estimate properties,
+        Predicate<CRITERIA> supported,
+        BiPredicate<CRITERIA, ENTITY> matcher,
+        Sampler<ENTITY> sampler,
+        Executor executor
+    ) {
+        this.entityName = entityName;
+        this.properties = properties;
+        this.supported = supported;
+        this.matcher = matcher;
+        this.sampler = sampler;
+        this.executor = executor;
+    }
+
+    /**
+     * Estimate the number of entities matching the criteria, taking the sample in the background if there is none or it is
+     * stale.
+     *
+     * @param criteria the criteria.
+     * @return the estimate, or empty when the count should be exact.
+     */
+    public Optional<CountEstimate> estimate(CRITERIA criteria) {
+        if (!properties.isEnabled() || !supported.test(criteria)) {
+            return Optional.empty();
+        }
+        Sample<ENTITY> current = currentSample();
+        if (current == null || current.rows.isEmpty()) {
+            return Optional.empty();
+        }
+        long matches = current.rows.stream().filter(entity -> matcher.test(criteria, entity)).count();
+        if (matches < properties.getMinSampledMatches()) {
+            return Optional.empty();
+        }
+        double n = current.rows.size();
+        double total = current.total;
+        double share = matches / n;
+        long count = Math.round(share * total);
+        if (count < properties.getMinEstimate()) {
+            return Optional.empty();
+        }
+        double finitePopulationCorrection = total > 1 ? (total - n) / (total - 1) : 0;
+        double standardError = Math.sqrt(share * (1 - share) / n * finitePopulationCorrection);
+        long errorBound = (long) Math.ceil(Z_95 * standardError * total);
+        return Optional.of(CountEstimate.estimated(count, errorBound));
+    }
+
+    private Sample<ENTITY> currentSample() {
+        Sample<ENTITY> current = sample;
+        boolean stale = current == null || System.nanoTime() - current.takenAt > properties.getRefreshInterval().toNanos();
+        if (stale && refreshing.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::refresh);
+            } catch (RejectedExecutionException e) {
+                refreshing.set(false);
+                log.warn("Could not schedule the sampling of {} rows: {}", entityName, e.getMessage());
+            }
+        }
+        return current;
+    }
+
+    private void refresh() {
+        try {
+            sample = take();
+        } catch (RuntimeException e) {
+            log.warn("Could not sample {} rows: {}", entityName, e.getMessage());
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private Sample<ENTITY> take() {
+        long start = System.currentTimeMillis();
+        Sample<ENTITY> taken = sampler.sample(properties.getSampleSize());
+        log.debug("Sampled {} of {} {} rows in {} ms", taken.rows.size(), taken.total, entityName, System.currentTimeMillis() - start);
+        return taken;
+    }
+
+    /**
+     * Takes a uniform sample of the entities.
+     *
+     * @param <ENTITY> the type of the entity.
+     */
+    @FunctionalInterface
+    public interface Sampler<ENTITY> {
+        /**
+         * @param size the maximum number of entities to sample.
+         * @return the sampled entities, which must stay usable by the matcher once detached, and the number of rows.
+         */
+        Sample<ENTITY> sample(int size);
+    }
+
+    /**
+     * The sampled entities and the number of rows they were sampled from.
+     *
+     * @param <ENTITY> the type of the entity.
+     */
+    public static final class Sample<ENTITY> {
+
+        private final List<ENTITY> rows;
+
+        private final long total;
+
+        private final long takenAt = System.nanoTime();
+
+        public Sample(List<ENTITY> rows, long total) {
+            this.rows = rows;
+            this.total = total;
+        }
+    }
+}
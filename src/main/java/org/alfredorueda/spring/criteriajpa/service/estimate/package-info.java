@@ -0,0 +1,4 @@
+/**
+ * Estimation of the number of entities matching a criteria.
+ */
+package org.alfredorueda.spring.criteriajpa.service.estimate;
@@ -0,0 +1,174 @@
+package org.alfredorueda.spring.criteriajpa.service.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A CSV file read through memory mapped, line aligned chunks, which can be parsed in parallel.
+ * <p>
+ * The first line is the header. The separator is {@code ;} if the header contains one, {@code ,} otherwise. Fields may
+ * be quoted with {@code "}, but a record must not span several lines.
+ */
+final class CsvFile implements Closeable {
+
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private final List<String> header;
+
+    private final char separator;
+
+    private final long dataStart;
+
+    private CsvFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.dataStart = nextLine(0);
+        String line = decode(0, dataStart).toString().replace("\uFEFF", "").trim();
+        this.separator = line.indexOf(';') >= 0 ? ';' : ',';
+        this.header = new ArrayList<>();
+        for (String name : split(line, separator)) {
+            header.add(normalize(name));
+        }
+    }
+
+    static CsvFile open(Path path) throws IOException {
+        return new CsvFile(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * @return the names of the columns, lower case and without underscores so that {@code birth_date} and
+     * {@code birthDate} are the same column.
+     */
+    List<String> getHeader() {
+        return header;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Split the records of the file in chunks of about the given number of bytes, each ending at the end of a line.
+     */
+    List<Chunk> split(long chunkSize) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long start = dataStart;
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : nextLine(start + chunkSize);
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Parse the lines of a chunk, blank lines being returned as null.
+     */
+    List<String[]> parse(Chunk chunk) throws IOException {
+        CharBuffer chars = decode(chunk.start, chunk.end);
+        List<String[]> lines = new ArrayList<>();
+        int lineStart = 0;
+        for (int i = 0; i <= chars.length(); i++) {
+            if (i == chars.length() || chars.charAt(i) == '\n') {
+                if (i == chars.length() && i == lineStart) {
+                    break;
+                }
+                String line = chars.subSequence(lineStart, i).toString().trim();
+                lines.add(line.isEmpty() ? null : split(line, separator));
+                lineStart = i + 1;
+            }
+        }
+        return lines;
+    }
+
+    private CharBuffer decode(long start, long end) throws IOException {
+        return StandardCharsets.UTF_8.decode(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+    }
+
+    /**
+     * @return the position right after the first line feed at or after the given position, or the size of the file.
+     */
+    private long nextLine(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static String[] split(String line, char separator) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private static String normalize(String name) {
+        return name.trim().replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A range of bytes of the file, made of whole lines.
+     */
+    static final class Chunk {
+
+        private final long start;
+
+        private final long end;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        long getLength() {
+            return end - start;
+        }
+    }
+}
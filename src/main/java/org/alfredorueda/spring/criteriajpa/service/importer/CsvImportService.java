@@ -0,0 +1,374 @@
+package org.alfredorueda.spring.criteriajpa.service.importer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.alfredorueda.spring.criteriajpa.domain.Player;
+import org.alfredorueda.spring.criteriajpa.domain.Team;
+import org.alfredorueda.spring.criteriajpa.service.cache.QueryResultCache;
+import org.alfredorueda.spring.criteriajpa.service.columnar.PlayerColumnStore;
+import org.alfredorueda.spring.criteriajpa.service.dto.ImportReport;
+import org.alfredorueda.spring.criteriajpa.service.leaderboard.PlayerLeaderboardService;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service for importing {@link Player} and {@link Team} entities from CSV files, shaped like the files of
+ * {@code config/liquibase/fake-data}.
+ * <p>
+ * The file is memory mapped and split in line aligned chunks. Chunks are parsed in parallel, a wave of chunks at a time
+ * so that the memory used does not depend on the size of the file. The rows of a wave are then inserted by batches in
+ * transactions of {@code application.import.batch-size} rows, bypassing the second level cache. Team references of
+ * players are checked with a query per wave.
+ * <p>
+ * The {@code id} column is ignored: imported rows are always created, with new ids. Progress is logged after each wave
+ * and counted by the {@code import.rows} counter.
+ */
+@Service
+public class CsvImportService {
+
+    private static final int MAX_NAME_LENGTH = 255;
+
+    private static final int IN_LIST_SIZE = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(CsvImportService.class);
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Import properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final QueryResultCache queryResultCache;
+
+    private final PlayerColumnStore playerColumnStore;
+
+    private final PlayerLeaderboardService playerLeaderboardService;
+
+    public CsvImportService(
+        EntityManager entityManager,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry,
+        QueryResultCache queryResultCache,
+        PlayerColumnStore playerColumnStore,
+        PlayerLeaderboardService playerLeaderboardService
+    ) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getImport();
+        this.meterRegistry = meterRegistry;
+        this.queryResultCache = queryResultCache;
+        this.playerColumnStore = playerColumnStore;
+        this.playerLeaderboardService = playerLeaderboardService;
+    }
+
+    /**
+     * Import players from a CSV file with a {@code name} column, and optionally {@code birth_date}, {@code height},
+     * {@code weight}, {@code baskets}, {@code assists} and {@code team_id} columns.
+     *
+     * @param path the path of the file.
+     * @return the report of the import.
+     * @throws IOException if the file couldn't be read.
+     * @throws IllegalArgumentException if the file has no {@code name} column.
+     */
+    public ImportReport importPlayers(Path path) throws IOException {
+        log.debug("Request to import Players from : {}", path);
+        return importFile("players", path, CsvImportService::playerMapper, this::insertPlayers);
+    }
+
+    /**
+     * Import teams from a CSV file with a {@code name} column, and optionally a {@code city} column.
+     *
+     * @param path the path of the file.
+     * @return the report of the import.
+     * @throws IOException if the file couldn't be read.
+     * @throws IllegalArgumentException if the file has no {@code name} column.
+     */
+    public ImportReport importTeams(Path path) throws IOException {
+        log.debug("Request to import Teams from : {}", path);
+        return importFile("teams", path, CsvImportService::teamMapper, this::insertTeams);
+    }
+
+    private <T> ImportReport importFile(
+        String entity,
+        Path path,
+        Function<List<String>, Function<String[], T>> mapperFactory,
+        Function<List<Row<T>>, List<Row<T>>> inserter
+    ) throws IOException {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        report.setEntity(entity);
+        Counter imported = Counter.builder("import.rows").tag("entity", entity).tag("result", "imported").register(meterRegistry);
+        Counter rejected = Counter.builder("import.rows").tag("entity", entity).tag("result", "rejected").register(meterRegistry);
+        try (CsvFile file = CsvFile.open(path)) {
+            Function<String[], T> mapper = mapperFactory.apply(file.getHeader());
+            List<CsvFile.Chunk> chunks = file.split(properties.getChunkSize().toBytes());
+            int waveSize = ForkJoinPool.getCommonPoolParallelism();
+            long line = 1;
+            long readBytes = 0;
+            for (int from = 0; from < chunks.size(); from += waveSize) {
+                List<CsvFile.Chunk> wave = chunks.subList(from, Math.min(chunks.size(), from + waveSize));
+                List<ParsedChunk<T>> parsed = wave.parallelStream().map(chunk -> parse(file, chunk, mapper)).collect(Collectors.toList());
+                List<Row<T>> valid = new ArrayList<>();
+                List<Row<T>> invalid = new ArrayList<>();
+                for (int i = 0; i < wave.size(); i++) {
+                    for (Row<T> row : parsed.get(i).rows) {
+                        row.line += line;
+                        (row.error == null ? valid : invalid).add(row);
+                    }
+                    line += parsed.get(i).lines;
+                    readBytes += wave.get(i).getLength();
+                }
+                report.setRows(report.getRows() + valid.size() + invalid.size());
+                invalid.addAll(inserter.apply(valid));
+                report.setImported(report.getImported() + valid.size());
+                report.setRejected(report.getRejected() + invalid.size());
+                imported.increment(valid.size());
+                rejected.increment(invalid.size());
+                invalid.sort(Comparator.comparingLong(row -> row.line));
+                for (Row<T> row : invalid) {
+                    if (report.getRejections().size() < properties.getMaxReportedRejections()) {
+                        report.getRejections().add(new ImportReport.Rejection(row.line, row.error));
+                    }
+                }
+                long elapsed = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+                log.info(
+                    "Import of {}: {}% read, {} rows imported, {} rejected, {} rows/s",
+                    entity,
+                    readBytes * 100 / Math.max(1, file.getSize()),
+                    report.getImported(),
+                    report.getRejected(),
+                    report.getRows() * 1000 / elapsed
+                );
+            }
+        }
+        report.setDurationMillis((System.nanoTime() - start) / 1_000_000);
+        log.info("Imported {} from {}: {}", entity, path, report);
+        return report;
+    }
+
+    private static <T> ParsedChunk<T> parse(CsvFile file, CsvFile.Chunk chunk, Function<String[], T> mapper) {
+        List<String[]> lines;
+        try {
+            lines = file.parse(chunk);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ParsedChunk<T> parsed = new ParsedChunk<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i) == null) {
+                continue;
+            }
+            Row<T> row = new Row<>(i + 1);
+            try {
+                row.entity = mapper.apply(lines.get(i));
+            } catch (IllegalArgumentException e) {
+                row.error = e.getMessage();
+            }
+            parsed.rows.add(row);
+        }
+        return parsed;
+    }
+
+    private List<Row<Player>> insertPlayers(List<Row<Player>> rows) {
+        Set<Long> teamIds = rows
+            .stream()
+            .filter(row -> row.entity.getTeam() != null)
+            .map(row -> row.entity.getTeam().getId())
+            .collect(Collectors.toSet());
+        Set<Long> existingTeamIds = existingTeamIds(teamIds);
+        List<Row<Player>> rejected = new ArrayList<>();
+        List<Row<Player>> accepted = new ArrayList<>(rows.size());
+        for (Row<Player> row : rows) {
+            if (row.entity.getTeam() != null && !existingTeamIds.contains(row.entity.getTeam().getId())) {
+                row.error = "Unknown team id " + row.entity.getTeam().getId();
+                rejected.add(row);
+            } else {
+                accepted.add(row);
+            }
+        }
+        rejected.addAll(
+            insert(
+                accepted,
+                Player.class,
+                player -> {
+                    if (player.getTeam() != null) {
+                        player.setTeam(entityManager.getReference(Team.class, player.getTeam().getId()));
+                    }
+                },
+                player -> {
+                    playerColumnStore.put(player);
+                    playerLeaderboardService.put(player);
+                }
+            )
+        );
+        rows.removeAll(new HashSet<>(rejected));
+        return rejected;
+    }
+
+    private List<Row<Team>> insertTeams(List<Row<Team>> rows) {
+        List<Row<Team>> rejected = insert(rows, Team.class, team -> {}, team -> {});
+        rows.removeAll(new HashSet<>(rejected));
+        return rejected;
+    }
+
+    private Set<Long> existingTeamIds(Set<Long> teamIds) {
+        Set<Long> existing = new HashSet<>();
+        List<Long> ids = new ArrayList<>(teamIds);
+        for (int from = 0; from < ids.size(); from += IN_LIST_SIZE) {
+            List<Long> page = ids.subList(from, Math.min(ids.size(), from + IN_LIST_SIZE));
+            existing.addAll(
+                transactionTemplate.execute(status ->
+                    entityManager
+                        .createQuery("select t.id from Team t where t.id in :ids", Long.class)
+                        .setParameter("ids", page)
+                        .getResultList()
+                )
+            );
+        }
+        return existing;
+    }
+
+    /**
+     * Insert the entities of the rows by transactions of {@code application.import.batch-size} rows.
+     *
+     * @return the rows of the transactions which failed, with the cause of the failure.
+     */
+    private <T> List<Row<T>> insert(List<Row<T>> rows, Class<T> entityClass, Consumer<T> beforeInsert, Consumer<T> afterInsert) {
+        List<Row<T>> rejected = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += properties.getBatchSize()) {
+            List<Row<T>> batch = rows.subList(from, Math.min(rows.size(), from + properties.getBatchSize()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+                    queryResultCache.invalidate(entityClass);
+                    for (Row<T> row : batch) {
+                        beforeInsert.accept(row.entity);
+                        entityManager.persist(row.entity);
+                        afterInsert.accept(row.entity);
+                    }
+                });
+            } catch (RuntimeException e) {
+                log.warn("Could not insert the {} rows from line {}: {}", entityClass.getSimpleName(), batch.get(0).line, e.getMessage());
+                for (Row<T> row : batch) {
+                    row.error = "Insert failed: " + e.getMessage();
+                    rejected.add(row);
+                }
+            }
+        }
+        return rejected;
+    }
+
+    private static Function<String[], Player> playerMapper(List<String> header) {
+        int name = column(header, "name", true);
+        int birthDate = column(header, "birthdate", false);
+        int height = column(header, "height", false);
+        int weight = column(header, "weight", false);
+        int baskets = column(header, "baskets", false);
+        int assists = column(header, "assists", false);
+        int teamId = column(header, "teamid", false);
+        return fields -> {
+            Long team = value(fields, teamId, "team_id", Long::valueOf);
+            return new Player()
+                .name(name(fields, name))
+                .birthDate(value(fields, birthDate, "birth_date", LocalDate::parse))
+                .height(value(fields, height, "height", Double::valueOf))
+                .weight(value(fields, weight, "weight", Double::valueOf))
+                .baskets(value(fields, baskets, "baskets", Integer::valueOf))
+                .assists(value(fields, assists, "assists", Integer::valueOf))
+                .team(team != null ? new Team().id(team) : null);
+        };
+    }
+
+    private static Function<String[], Team> teamMapper(List<String> header) {
+        int name = column(header, "name", true);
+        int city = column(header, "city", false);
+        return fields -> new Team().name(name(fields, name)).city(value(fields, city, "city", Function.identity()));
+    }
+
+    private static int column(List<String> header, String name, boolean required) {
+        int index = header.indexOf(name);
+        if (index < 0 && required) {
+            throw new IllegalArgumentException("The header has no " + name + " column");
+        }
+        return index;
+    }
+
+    private static String name(String[] fields, int index) {
+        String name = value(fields, index, "name", Function.identity());
+        if (name == null) {
+            throw new IllegalArgumentException("Missing name");
+        }
+        if (name.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Name longer than " + MAX_NAME_LENGTH + " characters");
+        }
+        return name;
+    }
+
+    private static <X> X value(String[] fields, int index, String column, Function<String, X> parser) {
+        if (index < 0 || index >= fields.length || fields[index].isBlank()) {
+            return null;
+        }
+        String value = fields[index].trim();
+        try {
+            return parser.apply(value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid " + column + " '" + value + "'");
+        }
+    }
+
+    /**
+     * The non blank rows of a chunk, and its number of lines.
+     */
+    private static final class ParsedChunk<T> {
+
+        private final List<Row<T>> rows = new ArrayList<>();
+
+        private final int lines;
+
+        ParsedChunk(int lines) {
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * A line of the file, and its entity or the reason why it is rejected.
+     */
+    private static final class Row<T> {
+
+        /**
+         * The number of the line, within its chunk until the lines of the previous chunks are counted.
+         */
+        private long line;
+
+        private T entity;
+
+        private String error;
+
+        Row(long line) {
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Bulk import of entities from CSV files.
+ */
+package org.alfredorueda.spring.criteriajpa.service.importer;
@@ -0,0 +1,444 @@
+package org.alfredorueda.spring.criteriajpa.service.leaderboard;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.alfredorueda.spring.criteriajpa.domain.Player;
+import org.alfredorueda.spring.criteriajpa.service.criteria.LeaderboardMetric;
+import org.alfredorueda.spring.criteriajpa.service.dto.LeaderboardEntryDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service for the leaderboards of the {@link Player} entities by {@link LeaderboardMetric}, global and per team.
+ * <p>
+ * When enabled, the leaderboards are order statistic trees, loaded from the database once the application is ready and
+ * kept up to date by the writes of {@link org.alfredorueda.spring.criteriajpa.service.PlayerService}, applied after their
+ * commit. Pages of a leaderboard and ranks of a player are then read in logarithmic time, without any database query.
+ * Until they are loaded, or when disabled, the same results are read from the database.
+ */
+@Service
+public class PlayerLeaderboardService {
+
+    private final Logger log = LoggerFactory.getLogger(PlayerLeaderboardService.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Leaderboard properties;
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    private final Map<LeaderboardMetric, RankTree> global = new EnumMap<>(LeaderboardMetric.class);
+
+    private final Map<LeaderboardMetric, Map<Long, RankTree>> byTeam = new EnumMap<>(LeaderboardMetric.class);
+
+    /**
+     * Whether the leaderboards are loaded. Until then, the entries and trees are only written by the load, without the lock.
+     */
+    private boolean loaded;
+
+    /**
+     * The changes committed while the leaderboards are loading, null when they are not.
+     */
+    private List<Entry> pending;
+
+    public PlayerLeaderboardService(
+        EntityManager entityManager,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.entityManager = entityManager;
+        this.properties = applicationProperties.getLeaderboard();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        for (LeaderboardMetric metric : LeaderboardMetric.values()) {
+            global.put(metric, new RankTree());
+            byTeam.put(metric, new HashMap<>());
+        }
+    }
+
+    /**
+     * Load the leaderboards from the database, if they are enabled.
+     * <p>
+     * The load runs in the background, so the application is ready before it ends: the leaderboards are read from the
+     * database meanwhile. The rows are streamed into the trees, which are only read once loaded, the changes committed
+     * in the meantime being applied after them.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        long[] count = { 0 };
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (
+                    Stream<Object[]> rows = entityManager
+                        .createQuery("select " + Entry.COLUMNS + " from Player p left join p.team t", Object[].class)
+                        .setHint("org.hibernate.fetchSize", 1000)
+                        .getResultStream()
+                ) {
+                    rows.forEach(row -> {
+                        apply(Entry.of(row));
+                        count[0]++;
+                    });
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("Could not load the player leaderboards, they will be read from the database", e);
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pending.forEach(this::apply);
+            pending = null;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Loaded the leaderboards of {} players in {} ms", count[0], System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Apply a created or updated player once the current transaction commits.
+     *
+     * @param player the saved player.
+     */
+    public void put(Player player) {
+        afterCommit(() -> Entry.of(player));
+    }
+
+    /**
+     * Apply a partial update of a player once the current transaction commits: the fields of the patch which are not
+     * null replace those of the ranked player. The team of the player is not updated.
+     *
+     * @param patch the updated fields of the player, with its id.
+     */
+    public void patch(Player patch) {
+        afterCommit(() -> new Entry(patch.getId(), patch.getName(), null, patch.getBaskets(), patch.getAssists(), false, true));
+    }
+
+    /**
+     * Apply a deleted player once the current transaction commits.
+     *
+     * @param id the id of the deleted player.
+     */
+    public void remove(Long id) {
+        afterCommit(() -> new Entry(id, null, null, null, null, true));
+    }
+
+    private void afterCommit(Supplier<Entry> change) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyLocked(change.get());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyLocked(change.get());
+                }
+            }
+        );
+    }
+
+    private void applyLocked(Entry change) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(change);
+            } else if (loaded) {
+                apply(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Entry change) {
+        if (change.patch) {
+            Entry patched = entries.get(change.id);
+            if (patched == null) {
+                return;
+            }
+            change = patched.merge(change);
+        }
+        Entry previous = change.deleted ? entries.remove(change.id) : entries.put(change.id, change);
+        for (LeaderboardMetric metric : LeaderboardMetric.values()) {
+            if (previous != null && previous.score(metric) != null) {
+                global.get(metric).remove(previous.score(metric), previous.id);
+                if (previous.teamId != null) {
+                    RankTree team = byTeam.get(metric).get(previous.teamId);
+                    team.remove(previous.score(metric), previous.id);
+                    if (team.size() == 0) {
+                        byTeam.get(metric).remove(previous.teamId);
+                    }
+                }
+            }
+            if (!change.deleted && change.score(metric) != null) {
+                global.get(metric).add(change.score(metric), change.id);
+                if (change.teamId != null) {
+                    byTeam.get(metric).computeIfAbsent(change.teamId, id -> new RankTree()).add(change.score(metric), change.id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a page of a leaderboard. Players without a value for the metric are not ranked.
+     *
+     * @param metric the metric the players are ranked by.
+     * @param teamId the id of the team whose players are ranked, or null to rank all the players.
+     * @param page the page, whose sort is ignored.
+     * @return the page of the leaderboard.
+     */
+    public Page<LeaderboardEntryDTO> findLeaderboard(LeaderboardMetric metric, Long teamId, Pageable page) {
+        log.debug("Request to get the {} leaderboard of team : {}, page: {}", metric, teamId, page);
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                RankTree tree = teamId != null ? byTeam.get(metric).get(teamId) : global.get(metric);
+                if (tree == null) {
+                    return new PageImpl<>(new ArrayList<>(), page, 0);
+                }
+                List<LeaderboardEntryDTO> content = new ArrayList<>();
+                if (page.getOffset() < tree.size()) {
+                    tree.forEach(
+                        (int) page.getOffset(),
+                        (score, id) -> {
+                            content.add(toDto(entries.get(id), metric, null));
+                            return content.size() < page.getPageSize();
+                        }
+                    );
+                }
+                rank(content, page, tree::countAbove);
+                return new PageImpl<>(content, page, tree.size());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return transactionTemplate.execute(status -> findLeaderboardFromDatabase(metric, teamId, page));
+    }
+
+    /**
+     * Get the ranks of a player, in the global leaderboard and in the leaderboard of their team.
+     *
+     * @param metric the metric the players are ranked by.
+     * @param playerId the id of the player.
+     * @return the ranks of the player, null if they have no value for the metric, or empty if the player does not exist.
+     */
+    public Optional<LeaderboardEntryDTO> findRank(LeaderboardMetric metric, Long playerId) {
+        log.debug("Request to get the {} rank of Player : {}", metric, playerId);
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                return Optional
+                    .ofNullable(entries.get(playerId))
+                    .map(entry -> {
+                        Integer score = entry.score(metric);
+                        if (score == null) {
+                            return toDto(entry, metric, null);
+                        }
+                        LeaderboardEntryDTO dto = toDto(entry, metric, global.get(metric).countAbove(score) + 1);
+                        if (entry.teamId != null) {
+                            dto.setTeamRank(byTeam.get(metric).get(entry.teamId).countAbove(score) + 1);
+                        }
+                        return dto;
+                    });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return transactionTemplate.execute(status -> findRankFromDatabase(metric, playerId));
+    }
+
+    /**
+     * Set the ranks of the entries of a page: 1 plus the number of entries with a higher score.
+     */
+    private static void rank(List<LeaderboardEntryDTO> content, Pageable page, ScoreCounter countAbove) {
+        for (int i = 0; i < content.size(); i++) {
+            LeaderboardEntryDTO entry = content.get(i);
+            if (i == 0) {
+                entry.setRank(countAbove.countAbove(entry.getScore()) + 1);
+            } else if (entry.getScore().equals(content.get(i - 1).getScore())) {
+                entry.setRank(content.get(i - 1).getRank());
+            } else {
+                entry.setRank((int) page.getOffset() + i + 1);
+            }
+        }
+    }
+
+    private Page<LeaderboardEntryDTO> findLeaderboardFromDatabase(LeaderboardMetric metric, Long teamId, Pageable page) {
+        String attribute = "p." + metric.getParameter();
+        String from = " from Player p left join p.team t where " + attribute + " is not null";
+        if (teamId != null) {
+            from += " and t.id = :teamId";
+        }
+        TypedQuery<Object[]> query = entityManager
+            .createQuery("select " + Entry.COLUMNS + from + " order by " + attribute + " desc, p.id", Object[].class)
+            .setFirstResult((int) page.getOffset())
+            .setMaxResults(page.getPageSize());
+        TypedQuery<Long> count = entityManager.createQuery("select count(p)" + from, Long.class);
+        if (teamId != null) {
+            query.setParameter("teamId", teamId);
+            count.setParameter("teamId", teamId);
+        }
+        List<LeaderboardEntryDTO> content = new ArrayList<>();
+        for (Object[] row : query.getResultList()) {
+            content.add(toDto(Entry.of(row), metric, null));
+        }
+        rank(content, page, score -> countAboveFromDatabase(metric, teamId, score));
+        return new PageImpl<>(content, page, count.getSingleResult());
+    }
+
+    private Optional<LeaderboardEntryDTO> findRankFromDatabase(LeaderboardMetric metric, Long playerId) {
+        return Optional
+            .ofNullable(entityManager.find(Player.class, playerId))
+            .map(player -> {
+                Entry entry = Entry.of(player);
+                Integer score = entry.score(metric);
+                if (score == null) {
+                    return toDto(entry, metric, null);
+                }
+                LeaderboardEntryDTO dto = toDto(entry, metric, countAboveFromDatabase(metric, null, score) + 1);
+                if (entry.teamId != null) {
+                    dto.setTeamRank(countAboveFromDatabase(metric, entry.teamId, score) + 1);
+                }
+                return dto;
+            });
+    }
+
+    private int countAboveFromDatabase(LeaderboardMetric metric, Long teamId, int score) {
+        String jpql = "select count(p) from Player p where p." + metric.getParameter() + " > :score";
+        if (teamId != null) {
+            jpql += " and p.team.id = :teamId";
+        }
+        TypedQuery<Long> query = entityManager.createQuery(jpql, Long.class).setParameter("score", score);
+        if (teamId != null) {
+            query.setParameter("teamId", teamId);
+        }
+        return query.getSingleResult().intValue();
+    }
+
+    private static LeaderboardEntryDTO toDto(Entry entry, LeaderboardMetric metric, Integer rank) {
+        LeaderboardEntryDTO dto = new LeaderboardEntryDTO();
+        dto.setRank(rank);
+        dto.setPlayerId(entry.id);
+        dto.setPlayerName(entry.name);
+        dto.setTeamId(entry.teamId);
+        dto.setScore(entry.score(metric));
+        return dto;
+    }
+
+    @FunctionalInterface
+    private interface ScoreCounter {
+        int countAbove(int score);
+    }
+
+    /**
+     * The ranked attributes of a player, or the deletion of a player.
+     */
+    private static final class Entry {
+
+        /**
+         * The JPQL selection read by {@link #of(Object[])}.
+         */
+        static final String COLUMNS = "p.id, p.name, t.id, p.baskets, p.assists";
+
+        private final Long id;
+
+        private final String name;
+
+        private final Long teamId;
+
+        private final Integer baskets;
+
+        private final Integer assists;
+
+        private final boolean deleted;
+
+        /**
+         * Whether the null fields of the change are unchanged rather than null.
+         */
+        private final boolean patch;
+
+        Entry(Long id, String name, Long teamId, Integer baskets, Integer assists, boolean deleted) {
+            this(id, name, teamId, baskets, assists, deleted, false);
+        }
+
+        Entry(Long id, String name, Long teamId, Integer baskets, Integer assists, boolean deleted, boolean patch) {
+            this.id = id;
+            this.name = name;
+            this.teamId = teamId;
+            this.baskets = baskets;
+            this.assists = assists;
+            this.deleted = deleted;
+            this.patch = patch;
+        }
+
+        static Entry of(Player player) {
+            Long teamId = player.getTeam() != null ? player.getTeam().getId() : null;
+            return new Entry(player.getId(), player.getName(), teamId, player.getBaskets(), player.getAssists(), false);
+        }
+
+        static Entry of(Object[] row) {
+            return new Entry((Long) row[0], (String) row[1], (Long) row[2], (Integer) row[3], (Integer) row[4], false);
+        }
+
+        Entry merge(Entry patch) {
+            return new Entry(
+                id,
+                patch.name != null ? patch.name : name,
+                teamId,
+                patch.baskets != null ? patch.baskets : baskets,
+                patch.assists != null ? patch.assists : assists,
+                false
+            );
+        }
+
+        Integer score(LeaderboardMetric metric) {
+            return metric == LeaderboardMetric.BASKETS ? baskets : assists;
+        }
+    }
+}
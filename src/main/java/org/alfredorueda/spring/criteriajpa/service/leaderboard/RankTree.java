@@ -0,0 +1,178 @@
+package org.alfredorueda.spring.criteriajpa.service.leaderboard;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.SplittableRandom;
+
+/**
+ * An order statistic tree of players by score, highest score first and lowest id first between equal scores.
+ * <p>
+ * It is a treap whose nodes know the size of their subtree: adding, removing, ranking and seeking to a position all take
+ * logarithmic time. It is not thread safe.
+ */
+final class RankTree {
+
+    /**
+     * Receives the entries of the tree, in order.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+        /**
+         * @return false to stop the iteration.
+         */
+        boolean accept(long score, long id);
+    }
+
+    private static final class Node {
+
+        private final long score;
+
+        private final long id;
+
+        private final int priority;
+
+        private int size = 1;
+
+        private Node left;
+
+        private Node right;
+
+        Node(long score, long id, int priority) {
+            this.score = score;
+            this.id = id;
+            this.priority = priority;
+        }
+    }
+
+    private final SplittableRandom random = new SplittableRandom();
+
+    private Node root;
+
+    int size() {
+        return size(root);
+    }
+
+    void add(long score, long id) {
+        Node[] parts = split(root, score, id);
+        root = merge(merge(parts[0], new Node(score, id, random.nextInt())), parts[1]);
+    }
+
+    void remove(long score, long id) {
+        root = remove(root, score, id);
+    }
+
+    /**
+     * @return the number of entries with a strictly higher score.
+     */
+    int countAbove(long score) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.score > score) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Iterate over the entries in order, from the entry at the given position.
+     */
+    void forEach(int offset, EntryConsumer consumer) {
+        Deque<Node> stack = new ArrayDeque<>();
+        Node node = root;
+        int skip = offset;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (skip < leftSize) {
+                stack.push(node);
+                node = node.left;
+            } else if (skip == leftSize) {
+                stack.push(node);
+                break;
+            } else {
+                skip -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        while (!stack.isEmpty()) {
+            node = stack.pop();
+            if (!consumer.accept(node.score, node.id)) {
+                return;
+            }
+            for (Node next = node.right; next != null; next = next.left) {
+                stack.push(next);
+            }
+        }
+    }
+
+    private static int size(Node node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static Node update(Node node) {
+        node.size = size(node.left) + 1 + size(node.right);
+        return node;
+    }
+
+    private static int compare(long score, long id, Node node) {
+        int result = Long.compare(node.score, score);
+        return result != 0 ? result : Long.compare(id, node.id);
+    }
+
+    /**
+     * Split a subtree into the entries before the given one, and the others.
+     */
+    private static Node[] split(Node node, long score, long id) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (compare(score, id, node) > 0) {
+            Node[] parts = split(node.right, score, id);
+            node.right = parts[0];
+            parts[0] = update(node);
+            return parts;
+        }
+        Node[] parts = split(node.left, score, id);
+        node.left = parts[1];
+        parts[1] = update(node);
+        return parts;
+    }
+
+    /**
+     * Merge two subtrees, all the entries of the first one being before the entries of the second one.
+     */
+    private static Node merge(Node first, Node second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            return update(first);
+        }
+        second.left = merge(first, second.left);
+        return update(second);
+    }
+
+    private static Node remove(Node node, long score, long id) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compare(score, id, node);
+        if (comparison == 0) {
+            return merge(node.left, node.right);
+        }
+        if (comparison < 0) {
+            node.left = remove(node.left, score, id);
+        } else {
+            node.right = remove(node.right, score, id);
+        }
+        return update(node);
+    }
+}
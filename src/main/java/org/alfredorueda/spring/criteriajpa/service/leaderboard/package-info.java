@@ -0,0 +1,4 @@
+/**
+ * In-memory leaderboards of the players.
+ */
+package org.alfredorueda.spring.criteriajpa.service.leaderboard;
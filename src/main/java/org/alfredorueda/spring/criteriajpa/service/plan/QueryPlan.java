@@ -0,0 +1,84 @@
+package org.alfredorueda.spring.criteriajpa.service.plan;
+
+import java.util.List;
+import java.util.function.Function;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+/**
+ * The JPQL queries matching one shape of criteria, with the binders of their named parameters.
+ * <p>
+ * A plan is immutable and shared by all the criteria of the same shape: only the parameter values are read from the
+ * criteria when a query is created.
+ *
+ * @param <C> the type of the criteria.
+ */
+public final class QueryPlan<C> {
+
+    static final String PARAMETER_PREFIX = "p";
+
+    private final String shape;
+
+    private final String selectJpql;
+
+    private final String countJpql;
+
+    private final List<Function<C, Object>> binders;
+
+    QueryPlan(String shape, String selectJpql, String countJpql, List<Function<C, Object>> binders) {
+        this.shape = shape;
+        this.selectJpql = selectJpql;
+        this.countJpql = countJpql;
+        this.binders = List.copyOf(binders);
+    }
+
+    /**
+     * Create the query selecting the matching entities, with its parameters bound to the values of the criteria.
+     *
+     * @param entityManager the entity manager.
+     * @param entityClass the class of the entity.
+     * @param criteria the criteria, of the same shape as this plan.
+     * @param orderBy the order by clause to append, may be empty.
+     * @param <T> the type of the entity.
+     * @return the query.
+     */
+    public <T> TypedQuery<T> createSelectQuery(EntityManager entityManager, Class<T> entityClass, C criteria, String orderBy) {
+        String jpql = orderBy.isEmpty() ? selectJpql : selectJpql + orderBy;
+        return bind(entityManager.createQuery(jpql, entityClass), criteria);
+    }
+
+    /**
+     * Create the query counting the matching entities, with its parameters bound to the values of the criteria.
+     *
+     * @param entityManager the entity manager.
+     * @param criteria the criteria, of the same shape as this plan.
+     * @return the query.
+     */
+    public TypedQuery<Long> createCountQuery(EntityManager entityManager, C criteria) {
+        return bind(entityManager.createQuery(countJpql, Long.class), criteria);
+    }
+
+    private <T> TypedQuery<T> bind(TypedQuery<T> query, C criteria) {
+        for (int i = 0; i < binders.size(); i++) {
+            query.setParameter(PARAMETER_PREFIX + i, binders.get(i).apply(criteria));
+        }
+        return query;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public String getSelectJpql() {
+        return selectJpql;
+    }
+
+    public String getCountJpql() {
+        return countJpql;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryPlan{shape='" + shape + "', selectJpql='" + selectJpql + "'}";
+    }
+}
@@ -0,0 +1,294 @@
+package org.alfredorueda.spring.criteriajpa.service.plan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import tech.jhipster.service.filter.Filter;
+import tech.jhipster.service.filter.RangeFilter;
+import tech.jhipster.service.filter.StringFilter;
+
+/**
+ * Describes the filters of a criteria as JPQL, following the same rules as the {@link tech.jhipster.service.QueryService}
+ * specification builders.
+ * <p>
+ * Every filter contributes a token to the <em>shape</em> of the criteria: which filters and operators are set,
+ * ignoring their values. When compiling, it also contributes a JPQL predicate with named parameters, and a binder
+ * reading the parameter value from any criteria of the same shape.
+ *
+ * @param <C> the type of the criteria.
+ */
+public class QueryPlanBuilder<C> {
+
+    static final String ALIAS = "e";
+
+    private final boolean compile;
+
+    private final StringBuilder shape;
+
+    private final Set<String> joins = new LinkedHashSet<>();
+
+    private final List<String> predicates = new ArrayList<>();
+
+    private final List<Function<C, Object>> binders;
+
+    private boolean distinct;
+
+    QueryPlanBuilder(boolean compile) {
+        this(compile, new StringBuilder(), new ArrayList<>());
+    }
+
+    private QueryPlanBuilder(boolean compile, StringBuilder shape, List<Function<C, Object>> binders) {
+        this.compile = compile;
+        this.shape = shape;
+        this.binders = binders;
+    }
+
+    /**
+     * Select distinct entities.
+     *
+     * @param distinct the distinct flag of the criteria, may be null.
+     * @return this builder.
+     */
+    public QueryPlanBuilder<C> distinct(Boolean distinct) {
+        if (distinct != null) {
+            shape.append("distinct=").append(distinct).append(';');
+            this.distinct = distinct;
+        }
+        return this;
+    }
+
+    /**
+     * Add a join to the query, only once whatever the number of filters using it.
+     *
+     * @param join the JPQL join, for example {@code left join e.team t}.
+     * @return this builder.
+     */
+    public QueryPlanBuilder<C> join(String join) {
+        if (joins.add(join)) {
+            shape.append(join).append(';');
+        }
+        return this;
+    }
+
+    /**
+     * Add the predicates of a {@link Filter}.
+     *
+     * @param path the JPQL path of the filtered attribute.
+     * @param filter the filter of the criteria.
+     * @param getter the function reading the same filter from another criteria.
+     * @param <X> the type of the filtered attribute.
+     * @return this builder.
+     */
+    public <X> QueryPlanBuilder<C> filter(String path, Filter<X> filter, Function<C, ? extends Filter<X>> getter) {
+        if (filter.getEquals() != null) {
+            return predicate(path, "eq", path + " = ?", c -> getter.apply(c).getEquals());
+        }
+        if (filter.getIn() != null) {
+            return in(path, filter.getIn(), c -> getter.apply(c).getIn());
+        }
+        if (filter.getNotIn() != null) {
+            return notIn(path, filter.getNotIn(), c -> getter.apply(c).getNotIn());
+        }
+        if (filter.getNotEquals() != null) {
+            return predicate(path, "ne", path + " <> ?", c -> getter.apply(c).getNotEquals());
+        }
+        if (filter.getSpecified() != null) {
+            return specified(path, filter.getSpecified());
+        }
+        return this;
+    }
+
+    /**
+     * Add the predicates of a {@link StringFilter}.
+     *
+     * @param path the JPQL path of the filtered attribute.
+     * @param filter the filter of the criteria.
+     * @param getter the function reading the same filter from another criteria.
+     * @return this builder.
+     */
+    public QueryPlanBuilder<C> string(String path, StringFilter filter, Function<C, StringFilter> getter) {
+        if (filter.getEquals() != null) {
+            return predicate(path, "eq", path + " = ?", c -> getter.apply(c).getEquals());
+        }
+        if (filter.getIn() != null) {
+            return in(path, filter.getIn(), c -> getter.apply(c).getIn());
+        }
+        if (filter.getNotIn() != null) {
+            return notIn(path, filter.getNotIn(), c -> getter.apply(c).getNotIn());
+        }
+        if (filter.getContains() != null) {
+            return predicate(path, "contains", "upper(" + path + ") like ?", c -> wrapLikeQuery(getter.apply(c).getContains()));
+        }
+        if (filter.getDoesNotContain() != null) {
+            return predicate(
+                path,
+                "doesNotContain",
+                "upper(" + path + ") not like ?",
+                c -> wrapLikeQuery(getter.apply(c).getDoesNotContain())
+            );
+        }
+        if (filter.getNotEquals() != null) {
+            return predicate(path, "ne", path + " <> ?", c -> getter.apply(c).getNotEquals());
+        }
+        if (filter.getSpecified() != null) {
+            return specified(path, filter.getSpecified());
+        }
+        return this;
+    }
+
+    /**
+     * Add the predicates of a {@link RangeFilter}.
+     *
+     * @param path the JPQL path of the filtered attribute.
+     * @param filter the filter of the criteria.
+     * @param getter the function reading the same filter from another criteria.
+     * @param <X> the type of the filtered attribute.
+     * @return this builder.
+     */
+    public <X extends Comparable<? super X>> QueryPlanBuilder<C> range(
+        String path,
+        RangeFilter<X> filter,
+        Function<C, ? extends RangeFilter<X>> getter
+    ) {
+        if (filter.getEquals() != null) {
+            return predicate(path, "eq", path + " = ?", c -> getter.apply(c).getEquals());
+        }
+        if (filter.getIn() != null) {
+            return in(path, filter.getIn(), c -> getter.apply(c).getIn());
+        }
+        if (filter.getSpecified() != null) {
+            specified(path, filter.getSpecified());
+        }
+        if (filter.getNotEquals() != null) {
+            predicate(path, "ne", path + " <> ?", c -> getter.apply(c).getNotEquals());
+        }
+        if (filter.getNotIn() != null) {
+            notIn(path, filter.getNotIn(), c -> getter.apply(c).getNotIn());
+        }
+        if (filter.getGreaterThan() != null) {
+            predicate(path, "gt", path + " > ?", c -> getter.apply(c).getGreaterThan());
+        }
+        if (filter.getGreaterThanOrEqual() != null) {
+            predicate(path, "gte", path + " >= ?", c -> getter.apply(c).getGreaterThanOrEqual());
+        }
+        if (filter.getLessThan() != null) {
+            predicate(path, "lt", path + " < ?", c -> getter.apply(c).getLessThan());
+        }
+        if (filter.getLessThanOrEqual() != null) {
+            predicate(path, "lte", path + " <= ?", c -> getter.apply(c).getLessThanOrEqual());
+        }
+        return this;
+    }
+
+    /**
+     * Add the predicates of a {@link RangeFilter} on the elements of a to-many association, as {@code EXISTS} subqueries
+     * following the same rules as a join on the association: an entity matches when one of its elements matches.
+     * <p>
+     * The {@code specified} operator tells if the entity has any element at all, since an element is never null.
+     *
+     * @param from the JPQL range of the elements, for example {@code Player p}.
+     * @param correlation the JPQL predicate linking an element to the entity, for example {@code p.team = e}.
+     * @param path the JPQL path of the filtered attribute of the element.
+     * @param filter the filter of the criteria.
+     * @param getter the function reading the same filter from another criteria.
+     * @param <X> the type of the filtered attribute.
+     * @return this builder.
+     */
+    public <X extends Comparable<? super X>> QueryPlanBuilder<C> exists(
+        String from,
+        String correlation,
+        String path,
+        RangeFilter<X> filter,
+        Function<C, ? extends RangeFilter<X>> getter
+    ) {
+        if (Boolean.FALSE.equals(filter.getSpecified())) {
+            shape.append("notExists ").append(from).append(';');
+            if (compile) {
+                predicates.add("not exists (select 1 from " + from + " where " + correlation + ")");
+            }
+        }
+        RangeFilter<X> values = filter.copy();
+        values.setSpecified(null);
+        if (Boolean.TRUE.equals(filter.getSpecified()) || hasValues(values)) {
+            QueryPlanBuilder<C> elements = new QueryPlanBuilder<>(compile, shape, binders);
+            shape.append("exists ").append(from).append('(');
+            elements.range(path, values, getter);
+            shape.append(");");
+            if (compile) {
+                List<String> conditions = new ArrayList<>(elements.predicates);
+                conditions.add(0, correlation);
+                predicates.add("exists (select 1 from " + from + " where " + String.join(" and ", conditions) + ")");
+            }
+        }
+        return this;
+    }
+
+    private static boolean hasValues(RangeFilter<?> filter) {
+        return (
+            filter.getEquals() != null ||
+            filter.getNotEquals() != null ||
+            filter.getIn() != null ||
+            filter.getNotIn() != null ||
+            filter.getGreaterThan() != null ||
+            filter.getGreaterThanOrEqual() != null ||
+            filter.getLessThan() != null ||
+            filter.getLessThanOrEqual() != null
+        );
+    }
+
+    private QueryPlanBuilder<C> in(String path, Collection<?> values, Function<C, Object> binder) {
+        if (values.isEmpty()) {
+            return predicate(path, "in0", "1 = 0", null);
+        }
+        return predicate(path, "in", path + " in (?)", binder);
+    }
+
+    private QueryPlanBuilder<C> notIn(String path, Collection<?> values, Function<C, Object> binder) {
+        if (values.isEmpty()) {
+            return predicate(path, "notIn0", "1 = 1", null);
+        }
+        return predicate(path, "notIn", path + " not in (?)", binder);
+    }
+
+    private QueryPlanBuilder<C> specified(String path, boolean specified) {
+        return predicate(path, specified ? "specified" : "unspecified", path + (specified ? " is not null" : " is null"), null);
+    }
+
+    private QueryPlanBuilder<C> predicate(String path, String operator, String jpql, Function<C, Object> binder) {
+        shape.append(path).append('.').append(operator).append(';');
+        if (compile) {
+            if (binder == null) {
+                predicates.add(jpql);
+            } else {
+                predicates.add(jpql.replace("?", ":" + QueryPlan.PARAMETER_PREFIX + binders.size()));
+                binders.add(binder);
+            }
+        }
+        return this;
+    }
+
+    private static String wrapLikeQuery(String txt) {
+        return "%" + txt.toUpperCase() + '%';
+    }
+
+    String getShape() {
+        return shape.toString();
+    }
+
+    QueryPlan<C> build(String entityName) {
+        if (!compile) {
+            throw new IllegalStateException("This builder only computes the shape of the criteria");
+        }
+        StringBuilder from = new StringBuilder(" from ").append(entityName).append(' ').append(ALIAS);
+        joins.forEach(join -> from.append(' ').append(join));
+        if (!predicates.isEmpty()) {
+            from.append(" where ").append(String.join(" and ", predicates));
+        }
+        String selectJpql = "select " + (distinct ? "distinct " : "") + ALIAS + from;
+        String countJpql = "select count(" + (distinct ? "distinct " : "") + ALIAS + ")" + from;
+        return new QueryPlan<>(getShape(), selectJpql, countJpql, binders);
+    }
+}
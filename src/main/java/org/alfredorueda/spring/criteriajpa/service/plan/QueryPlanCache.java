@@ -0,0 +1,119 @@
+package org.alfredorueda.spring.criteriajpa.service.plan;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded cache of the {@link QueryPlan} of one entity, keyed by the shape of the criteria.
+ * <p>
+ * Looking up a plan only walks the set filters of the criteria; the JPQL is generated once per shape. Once the cache is
+ * full, the plans of new shapes are compiled for each request without being cached.
+ * <p>
+ * The following meters are registered, tagged with the entity name:
+ * <ul>
+ *     <li>{@code criteria.query.plan.cache.requests}, tagged with {@code result} {@code hit} or {@code miss},
+ *     from which the hit rate is computed;</li>
+ *     <li>{@code criteria.query.plan.cache.size}, the number of cached plans;</li>
+ *     <li>{@code criteria.query.plan.lookup}, the time spent getting a plan, tagged with {@code result}, which shows
+ *     the cost of a compilation compared to a cache hit.</li>
+ * </ul>
+ *
+ * @param <C> the type of the criteria.
+ */
+public class QueryPlanCache<C> {
+
+    private final Map<String, QueryPlan<C>> plans = new ConcurrentHashMap<>();
+
+    private final String entityName;
+
+    private final int maxSize;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Timer hitTimer;
+
+    private final Timer missTimer;
+
+    public QueryPlanCache(String entityName, int maxSize, MeterRegistry meterRegistry) {
+        this.entityName = entityName;
+        this.maxSize = maxSize;
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.hitTimer = lookup(meterRegistry, "hit");
+        this.missTimer = lookup(meterRegistry, "miss");
+        Gauge
+            .builder("criteria.query.plan.cache.size", plans, Map::size)
+            .description("Number of cached criteria query plans")
+            .tag("entity", entityName)
+            .register(meterRegistry);
+    }
+
+    private Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter
+            .builder("criteria.query.plan.cache.requests")
+            .description("Criteria query plan cache lookups")
+            .tag("entity", entityName)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private Timer lookup(MeterRegistry meterRegistry, String result) {
+        return Timer
+            .builder("criteria.query.plan.lookup")
+            .description("Time spent getting a criteria query plan")
+            .tag("entity", entityName)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Get the plan of the shape of the given criteria, compiling it if needed.
+     *
+     * @param criteria the criteria, may be null.
+     * @param describer the function describing the filters of a criteria to a {@link QueryPlanBuilder}.
+     * @return the plan.
+     */
+    public QueryPlan<C> get(C criteria, BiConsumer<C, QueryPlanBuilder<C>> describer) {
+        long start = System.nanoTime();
+        QueryPlanBuilder<C> shapeBuilder = new QueryPlanBuilder<>(false);
+        describer.accept(criteria, shapeBuilder);
+        String shape = shapeBuilder.getShape();
+        QueryPlan<C> plan = plans.get(shape);
+        if (plan != null) {
+            hits.increment();
+            hitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return plan;
+        }
+        QueryPlanBuilder<C> compiler = new QueryPlanBuilder<>(true);
+        describer.accept(criteria, compiler);
+        plan = compiler.build(entityName);
+        if (plans.size() < maxSize) {
+            QueryPlan<C> existing = plans.putIfAbsent(shape, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        misses.increment();
+        missTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return plan;
+    }
+
+    /**
+     * Remove all the cached plans.
+     */
+    public void clear() {
+        plans.clear();
+    }
+
+    public int size() {
+        return plans.size();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Precompiled JPQL query plans of the criteria query services, cached by criteria shape.
+ */
+package org.alfredorueda.spring.criteriajpa.service.plan;
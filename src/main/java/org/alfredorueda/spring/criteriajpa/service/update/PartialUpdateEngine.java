@@ -0,0 +1,220 @@
+package org.alfredorueda.spring.criteriajpa.service.update;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import javax.persistence.EntityManager;
+import org.alfredorueda.spring.criteriajpa.service.cache.invalidation.CacheInvalidationBus;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.orm.hibernate5.SessionFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Engine writing some columns of an entity by a single SQL {@code update} statement, without reading the entity first.
+ * <p>
+ * Only the columns of the given properties are written, and the version is incremented by the statement itself. When a
+ * version is given, the statement only matches the entity if it still has this version. To-one associations are written
+ * as their foreign key, from the id of the associated entity, which isn't read. The entity is detached from the
+ * persistence context, whose pending changes are flushed first.
+ * <p>
+ * The second level cache entry of the entity is soft locked before the statement, like Hibernate does for its own
+ * updates, and unlocked once the transaction completes: until then, the entity is read from the database and not cached
+ * again, and the next read caches its new state. The other instances evict it through the {@link CacheInvalidationBus}.
+ */
+@Component
+public class PartialUpdateEngine {
+
+    private final Logger log = LoggerFactory.getLogger(PartialUpdateEngine.class);
+
+    private final EntityManager entityManager;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public PartialUpdateEngine(EntityManager entityManager, CacheInvalidationBus cacheInvalidationBus) {
+        this.entityManager = entityManager;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    /**
+     * Update some properties of an entity.
+     *
+     * @param entityClass the class of the entity.
+     * @param id the id of the entity.
+     * @param version the version the entity must have, or null to update it whatever its version.
+     * @param values the new values of the properties, by name. Only basic and to-one, updatable properties can be updated.
+     * @return true if the entity was updated, false if there is no entity with the id, and version if given.
+     * @throws IllegalArgumentException if a property can't be updated.
+     * @throws org.springframework.dao.DataAccessException if the statement fails, such as a
+     * {@link org.springframework.dao.DataIntegrityViolationException} for a foreign key which doesn't exist.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean update(Class<?> entityClass, Serializable id, Long version, Map<String, Object> values) {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("No property to update");
+        }
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        AbstractEntityPersister persister = (AbstractEntityPersister) session.getFactory().getMetamodel().entityPersister(entityClass);
+        if (version != null && !persister.isVersioned()) {
+            throw new IllegalArgumentException(persister.getEntityName() + " is not versioned");
+        }
+        List<Integer> properties = new ArrayList<>(values.size());
+        StringJoiner assignments = new StringJoiner(", ");
+        for (String name : values.keySet()) {
+            int property = updatableProperty(persister, name);
+            properties.add(property);
+            assignments.add(persister.getPropertyColumnNames(property)[0] + "=?");
+        }
+        if (persister.isVersioned()) {
+            assignments.add(persister.getVersionColumnName() + "=" + persister.getVersionColumnName() + "+1");
+        }
+        String sql =
+            "update " +
+            persister.getTableName() +
+            " set " +
+            assignments +
+            " where " +
+            persister.getIdentifierColumnNames()[0] +
+            "=?" +
+            (version != null ? " and " + persister.getVersionColumnName() + "=?" : "");
+
+        session.flush();
+        EntityKey entityKey = session.generateEntityKey(id, persister);
+        Object managed = session.getPersistenceContextInternal().getEntity(entityKey);
+        if (managed != null) {
+            session.evict(managed);
+        }
+        lockCacheEntry(session, persister, id, version);
+
+        Object[] parameters = values.values().toArray();
+        JdbcCoordinator jdbcCoordinator = session.getJdbcCoordinator();
+        PreparedStatement statement = jdbcCoordinator.getStatementPreparer().prepareStatement(sql);
+        int rows;
+        try {
+            int index = 1;
+            for (int i = 0; i < parameters.length; i++) {
+                Type type = persister.getPropertyTypes()[properties.get(i)];
+                type.nullSafeSet(statement, parameters[i], index, session);
+                index += type.getColumnSpan(session.getFactory());
+            }
+            persister.getIdentifierType().nullSafeSet(statement, id, index++, session);
+            if (version != null) {
+                persister.getVersionType().nullSafeSet(statement, version, index, session);
+            }
+            rows = jdbcCoordinator.getResultSetReturn().executeUpdate(statement);
+        } catch (SQLException e) {
+            throw SessionFactoryUtils.convertHibernateAccessException(
+                session.getJdbcServices().getSqlExceptionHelper().convert(e, "Could not update " + persister.getEntityName(), sql)
+            );
+        } finally {
+            jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(statement);
+            jdbcCoordinator.afterStatementExecution();
+        }
+        log.debug("Updated {} {} {} with {}", rows, persister.getEntityName(), id, values.keySet());
+        if (rows > 0) {
+            cacheInvalidationBus.evictEntity(entityClass, id);
+        }
+        return rows > 0;
+    }
+
+    /**
+     * Get the values of a patch of an entity: its basic, updatable properties which are not null. Associations are
+     * ignored.
+     *
+     * @param patch the patch, an instance of the entity class.
+     * @return the values of the properties by name, in the order of the mapping.
+     */
+    public Map<String, Object> nonNullValues(Object patch) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        AbstractEntityPersister persister = (AbstractEntityPersister) session.getFactory().getMetamodel().entityPersister(patch.getClass());
+        Object[] values = persister.getPropertyValues(patch);
+        Map<String, Object> nonNullValues = new LinkedHashMap<>();
+        for (int property = 0; property < values.length; property++) {
+            Type type = persister.getPropertyTypes()[property];
+            if (
+                values[property] != null &&
+                !type.isAssociationType() &&
+                !type.isComponentType() &&
+                property != persister.getVersionProperty() &&
+                persister.getPropertyUpdateability()[property]
+            ) {
+                nonNullValues.put(persister.getPropertyNames()[property], values[property]);
+            }
+        }
+        return nonNullValues;
+    }
+
+    /**
+     * Get all the values of an entity which {@link #update} can write: its basic and to-one, updatable properties, null or
+     * not. The version is left out.
+     *
+     * @param entity an instance of the entity class.
+     * @return the values of the properties by name, in the order of the mapping.
+     */
+    public Map<String, Object> values(Object entity) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        AbstractEntityPersister persister = (AbstractEntityPersister) session
+            .getFactory()
+            .getMetamodel()
+            .entityPersister(entity.getClass());
+        Object[] values = persister.getPropertyValues(entity);
+        Map<String, Object> updatableValues = new LinkedHashMap<>();
+        for (int property = 0; property < values.length; property++) {
+            if (isUpdatable(persister, property)) {
+                updatableValues.put(persister.getPropertyNames()[property], values[property]);
+            }
+        }
+        return updatableValues;
+    }
+
+    private static int updatableProperty(AbstractEntityPersister persister, String name) {
+        int property;
+        try {
+            property = persister.getEntityMetamodel().getPropertyIndex(name);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Unknown property " + persister.getEntityName() + "." + name);
+        }
+        if (!isUpdatable(persister, property)) {
+            throw new IllegalArgumentException("The property " + persister.getEntityName() + "." + name + " can't be partially updated");
+        }
+        return property;
+    }
+
+    private static boolean isUpdatable(AbstractEntityPersister persister, int property) {
+        Type type = persister.getPropertyTypes()[property];
+        return (
+            (!type.isAssociationType() || type.isEntityType()) &&
+            !type.isComponentType() &&
+            property != persister.getVersionProperty() &&
+            persister.getPropertyUpdateability()[property] &&
+            persister.getPropertyColumnNames(property).length == 1
+        );
+    }
+
+    /**
+     * Soft locks the cache entry of the entity until the transaction completes, whether it commits or not.
+     */
+    private static void lockCacheEntry(SessionImplementor session, AbstractEntityPersister persister, Serializable id, Long version) {
+        if (!persister.canWriteToCache()) {
+            return;
+        }
+        EntityDataAccess cacheAccess = persister.getCacheAccessStrategy();
+        Object cacheKey = cacheAccess.generateCacheKey(id, persister, session.getFactory(), session.getTenantIdentifier());
+        SoftLock lock = cacheAccess.lockItem(session, cacheKey, version);
+        session.getActionQueue().registerProcess((success, completedSession) -> cacheAccess.unlockItem(completedSession, cacheKey, lock));
+    }
+}
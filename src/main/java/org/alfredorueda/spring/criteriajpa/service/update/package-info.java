@@ -0,0 +1,4 @@
+/**
+ * Partial updates of entities by SQL statements, keeping the second level cache consistent.
+ */
+package org.alfredorueda.spring.criteriajpa.service.update;
@@ -0,0 +1,349 @@
+package org.alfredorueda.spring.criteriajpa.service.warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
+import org.alfredorueda.spring.criteriajpa.domain.Player;
+import org.alfredorueda.spring.criteriajpa.domain.Team;
+import org.alfredorueda.spring.criteriajpa.service.PlayerQueryService;
+import org.alfredorueda.spring.criteriajpa.service.PlayerService;
+import org.alfredorueda.spring.criteriajpa.service.TeamQueryService;
+import org.alfredorueda.spring.criteriajpa.service.TeamService;
+import org.alfredorueda.spring.criteriajpa.service.criteria.FetchPlan;
+import org.alfredorueda.spring.criteriajpa.service.criteria.PlayerCriteria;
+import org.alfredorueda.spring.criteriajpa.service.criteria.TeamCriteria;
+import org.alfredorueda.spring.criteriajpa.service.dto.WarmupReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
+import org.springframework.validation.DataBinder;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * Warm-up of the application before it accepts traffic.
+ * <p>
+ * Once the application is started, and after the player column store, whose listener runs first, is loaded, the player
+ * and team criteria queries of {@code application.warmup} are replayed, then the entities they returned are loaded by id.
+ * The leaderboards keep loading in the background. Spring Boot reports the application ready, and the {@code readiness}
+ * health group UP, only once the listeners of this event returned, so the first requests find open connections, compiled
+ * Hibernate query plans, JIT compiled criteria and cache code, and filled second-level cache regions.
+ * <p>
+ * Queries and loads run {@code application.warmup.parallelism} at a time, every query {@code application.warmup.rounds}
+ * times; the warm-up is abandoned after {@code application.warmup.timeout}.
+ */
+@Service
+public class WarmupService {
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    private static final String PAGE = "page";
+
+    private static final String SIZE = "size";
+
+    private static final String SORT = "sort";
+
+    private final Logger log = LoggerFactory.getLogger(WarmupService.class);
+
+    private final PlayerQueryService playerQueryService;
+
+    private final TeamQueryService teamQueryService;
+
+    private final PlayerService playerService;
+
+    private final TeamService teamService;
+
+    private final ConversionService conversionService;
+
+    private final ApplicationProperties.Warmup properties;
+
+    private volatile WarmupReport lastReport;
+
+    public WarmupService(
+        PlayerQueryService playerQueryService,
+        TeamQueryService teamQueryService,
+        PlayerService playerService,
+        TeamService teamService,
+        @Qualifier("mvcConversionService") ConversionService conversionService,
+        ApplicationProperties applicationProperties
+    ) {
+        this.playerQueryService = playerQueryService;
+        this.teamQueryService = teamQueryService;
+        this.playerService = playerService;
+        this.teamService = teamService;
+        this.conversionService = conversionService;
+        this.properties = applicationProperties.getWarmup();
+    }
+
+    /**
+     * Warm the application up, if enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onApplicationReady() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            warmUp();
+        } catch (RuntimeException e) {
+            log.error("Could not warm the application up, it is started cold", e);
+        }
+    }
+
+    /**
+     * @return the report of the last warm-up, null if the application was not warmed up.
+     */
+    public WarmupReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Replay the warm-up queries and loads.
+     *
+     * @return the report of the warm-up.
+     */
+    public synchronized WarmupReport warmUp() {
+        WarmupReport report = new WarmupReport();
+        report.setStartedAt(Instant.now());
+        long start = System.nanoTime();
+        long deadline = start + properties.getTimeout().toNanos();
+        Set<Long> playerIds = ConcurrentHashMap.newKeySet();
+        Set<Long> teamIds = ConcurrentHashMap.newKeySet();
+        List<Query> queries = new ArrayList<>();
+        for (String query : properties.getPlayers()) {
+            queries.add(
+                query(report, Player.class, query, PlayerCriteria::new, (criteria, page) -> {
+                    collect(playerIds, playerQueryService.findByCriteria(criteria, page, FetchPlan.NONE).getContent(), Player::getId);
+                })
+            );
+        }
+        for (String query : properties.getTeams()) {
+            queries.add(
+                query(report, Team.class, query, TeamCriteria::new, (criteria, page) -> {
+                    collect(teamIds, teamQueryService.findByCriteria(criteria, page, FetchPlan.NONE).getContent(), Team::getId);
+                })
+            );
+        }
+        queries.removeIf(query -> query.execution == null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, properties.getParallelism()),
+            new CustomizableThreadFactory("warmup-")
+        );
+        try {
+            boolean completed = true;
+            for (int round = 0; round < properties.getRounds() && completed; round++) {
+                List<Callable<Void>> tasks = new ArrayList<>(queries.size());
+                for (Query query : queries) {
+                    tasks.add(query::execute);
+                }
+                completed = invokeAll(executor, tasks, deadline);
+            }
+            report.setQueryMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            long loadStart = System.nanoTime();
+            AtomicLong loadedPlayers = new AtomicLong();
+            AtomicLong loadedTeams = new AtomicLong();
+            List<Callable<Void>> loads = new ArrayList<>(playerIds.size() + teamIds.size());
+            for (Long id : playerIds) {
+                loads.add(() -> load(loadedPlayers, playerService.findOne(id).isPresent()));
+            }
+            for (Long id : teamIds) {
+                loads.add(() -> load(loadedTeams, teamService.findOne(id).isPresent()));
+            }
+            if (completed) {
+                completed = invokeAll(executor, loads, deadline);
+            }
+            report.setLoadMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStart));
+            report.setLoadedPlayers(loadedPlayers.get());
+            report.setLoadedTeams(loadedTeams.get());
+            report.setTimedOut(!completed);
+        } finally {
+            executor.shutdownNow();
+        }
+        report.setTotalMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        if (report.isTimedOut()) {
+            log.warn("Warm-up timed out after {} ms", report.getTotalMillis());
+        }
+        log.info(
+            "Warmed up in {} ms: {} queries in {} ms, {} players and {} teams loaded in {} ms",
+            report.getTotalMillis(),
+            report.getQueries().size(),
+            report.getQueryMillis(),
+            report.getLoadedPlayers(),
+            report.getLoadedTeams(),
+            report.getLoadMillis()
+        );
+        report
+            .getQueries()
+            .forEach(timing ->
+                log.debug(
+                    "Warm-up {} query '{}': first {} ms, last {} ms",
+                    timing.getEntity(),
+                    timing.getQuery(),
+                    timing.getFirstMillis(),
+                    timing.getLastMillis()
+                )
+            );
+        lastReport = report;
+        return report;
+    }
+
+    private boolean invokeAll(ExecutorService executor, List<Callable<Void>> tasks, long deadline) {
+        try {
+            List<Future<Void>> futures = executor.invokeAll(tasks, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            return futures.stream().noneMatch(Future::isCancelled);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private <C> Query query(
+        WarmupReport report,
+        Class<?> entityClass,
+        String queryString,
+        Supplier<C> criteriaFactory,
+        BiConsumer<C, Pageable> execution
+    ) {
+        WarmupReport.QueryTiming timing = new WarmupReport.QueryTiming();
+        timing.setEntity(entityClass.getSimpleName());
+        timing.setQuery(queryString);
+        report.getQueries().add(timing);
+        MultiValueMap<String, String> params = UriComponentsBuilder.newInstance().query(queryString).build().getQueryParams();
+        C criteria = criteriaFactory.get();
+        try {
+            Pageable page = bind(criteria, params);
+            return new Query(timing, () -> execution.accept(criteria, page));
+        } catch (IllegalArgumentException | BeansException e) {
+            log.warn("Ignoring warm-up {} query '{}': {}", timing.getEntity(), queryString, e.getMessage());
+            timing.setErrors(1);
+            return new Query(timing, null);
+        }
+    }
+
+    /**
+     * Bind the parameters of a query string like the list endpoints do.
+     *
+     * @param criteria the criteria to bind the filters to.
+     * @param params the parameters.
+     * @return the page and sort of the parameters.
+     */
+    private Pageable bind(Object criteria, MultiValueMap<String, String> params) {
+        MutablePropertyValues values = new MutablePropertyValues();
+        int page = 0;
+        int size = DEFAULT_PAGE_SIZE;
+        List<Sort.Order> orders = new ArrayList<>();
+        for (String name : params.keySet()) {
+            List<String> decoded = new ArrayList<>();
+            for (String value : params.get(name)) {
+                decoded.add(value != null ? UriUtils.decode(value, StandardCharsets.UTF_8) : "");
+            }
+            if (PAGE.equals(name)) {
+                page = Integer.parseInt(decoded.get(0));
+            } else if (SIZE.equals(name)) {
+                size = Integer.parseInt(decoded.get(0));
+            } else if (SORT.equals(name)) {
+                for (String sort : decoded) {
+                    String[] parts = sort.split(",");
+                    Sort.Direction direction = parts.length > 1 ? Sort.Direction.fromString(parts[1]) : Sort.Direction.ASC;
+                    orders.add(new Sort.Order(direction, parts[0]));
+                }
+            } else {
+                values.add(name, decoded.size() == 1 ? decoded.get(0) : decoded.toArray(new String[0]));
+            }
+        }
+        DataBinder binder = new DataBinder(criteria);
+        binder.setConversionService(conversionService);
+        binder.setIgnoreUnknownFields(false);
+        binder.bind(values);
+        if (binder.getBindingResult().hasErrors()) {
+            throw new IllegalArgumentException(binder.getBindingResult().getAllErrors().toString());
+        }
+        return PageRequest.of(page, size, Sort.by(orders));
+    }
+
+    private <E> void collect(Set<Long> ids, List<E> entities, Function<E, Long> id) {
+        for (E entity : entities) {
+            if (ids.size() >= properties.getMaxLoads()) {
+                return;
+            }
+            ids.add(id.apply(entity));
+        }
+    }
+
+    private static Void load(AtomicLong loaded, boolean found) {
+        if (found) {
+            loaded.incrementAndGet();
+        }
+        return null;
+    }
+
+    /**
+     * A warm-up query, with its bound criteria.
+     */
+    private final class Query {
+
+        private final WarmupReport.QueryTiming timing;
+
+        /**
+         * The execution of the query, null if its query string is invalid.
+         */
+        private final Runnable execution;
+
+        Query(WarmupReport.QueryTiming timing, Runnable execution) {
+            this.timing = timing;
+            this.execution = execution;
+        }
+
+        Void execute() {
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                execution.run();
+            } catch (RuntimeException e) {
+                failed = true;
+                log.warn("Warm-up {} query '{}' failed: {}", timing.getEntity(), timing.getQuery(), e.getMessage());
+            }
+            double millis = (System.nanoTime() - start) / 1_000_000.0;
+            synchronized (timing) {
+                if (timing.getExecutions() == 0) {
+                    timing.setFirstMillis(millis);
+                }
+                timing.setLastMillis(millis);
+                timing.setExecutions(timing.getExecutions() + 1);
+                if (failed) {
+                    timing.setErrors(timing.getErrors() + 1);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Warm-up of the application before it accepts traffic.
+ */
+package org.alfredorueda.spring.criteriajpa.service.warmup;
@@ -1,22 +1,58 @@
 package org.alfredorueda.spring.criteriajpa.web.rest;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
 import org.alfredorueda.spring.criteriajpa.domain.Player;
 import org.alfredorueda.spring.criteriajpa.repository.PlayerRepository;
+import org.alfredorueda.spring.criteriajpa.repository.TeamRepository;
+import org.alfredorueda.spring.criteriajpa.service.PlayerExportService;
 import org.alfredorueda.spring.criteriajpa.service.PlayerQueryService;
 import org.alfredorueda.spring.criteriajpa.service.PlayerService;
+import org.alfredorueda.spring.criteriajpa.service.criteria.FetchPlan;
+import org.alfredorueda.spring.criteriajpa.service.criteria.KeysetCursor;
+import org.alfredorueda.spring.criteriajpa.service.criteria.LeaderboardMetric;
 import org.alfredorueda.spring.criteriajpa.service.criteria.PlayerCriteria;
+import org.alfredorueda.spring.criteriajpa.service.criteria.PlayerStatsGroupBy;
+import org.alfredorueda.spring.criteriajpa.service.criteria.PlayerStatsMetric;
+import org.alfredorueda.spring.criteriajpa.service.dto.CountEstimate;
+import org.alfredorueda.spring.criteriajpa.service.dto.KeysetSlice;
+import org.alfredorueda.spring.criteriajpa.service.dto.LeaderboardEntryDTO;
+import org.alfredorueda.spring.criteriajpa.service.dto.PlayerStatsDTO;
+import org.alfredorueda.spring.criteriajpa.service.leaderboard.PlayerLeaderboardService;
 import org.alfredorueda.spring.criteriajpa.web.rest.errors.BadRequestAlertException;
+import org.alfredorueda.spring.criteriajpa.web.rest.util.CountEstimateUtil;
+import org.alfredorueda.spring.criteriajpa.web.rest.util.EntityTagUtil;
+import org.alfredorueda.spring.criteriajpa.web.rest.util.KeysetPaginationUtil;
+import org.alfredorueda.spring.criteriajpa.web.rest.util.PreferUtil;
+import org.alfredorueda.spring.criteriajpa.web.rest.util.SlicePaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
+import tech.jhipster.web.util.PaginationUtil;
 import tech.jhipster.web.util.ResponseUtil;
 
 /**
@@ -37,19 +73,39 @@ public class PlayerResource {
 
     private final PlayerRepository playerRepository;
 
+    private final TeamRepository teamRepository;
+
     private final PlayerQueryService playerQueryService;
 
-    public PlayerResource(PlayerService playerService, PlayerRepository playerRepository, PlayerQueryService playerQueryService) {
+    private final PlayerExportService playerExportService;
+
+    private final PlayerLeaderboardService playerLeaderboardService;
+
+    private final ApplicationProperties applicationProperties;
+
+    public PlayerResource(
+        PlayerService playerService,
+        PlayerRepository playerRepository,
+        TeamRepository teamRepository,
+        PlayerQueryService playerQueryService,
+        PlayerExportService playerExportService,
+        PlayerLeaderboardService playerLeaderboardService,
+        ApplicationProperties applicationProperties
+    ) {
         this.playerService = playerService;
         this.playerRepository = playerRepository;
+        this.teamRepository = teamRepository;
         this.playerQueryService = playerQueryService;
+        this.playerExportService = playerExportService;
+        this.playerLeaderboardService = playerLeaderboardService;
+        this.applicationProperties = applicationProperties;
     }
 
     /**
      * {@code POST  /players} : Create a new player.
      *
      * @param player the player to create.
-     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new player, or with status {@code 400 (Bad Request)} if the player has already an ID.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new player, or with status {@code 400 (Bad Request)} if the player has already an ID or its team doesn't exist.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PostMapping("/players")
@@ -58,7 +114,12 @@ public class PlayerResource {
         if (player.getId() != null) {
             throw new BadRequestAlertException("A new player cannot already have an ID", ENTITY_NAME, "idexists");
         }
-        Player result = playerService.save(player);
+        Player result;
+        try {
+            result = playerService.save(player);
+        } catch (DataIntegrityViolationException e) {
+            throw teamNotFound(player, e);
+        }
         return ResponseEntity
             .created(new URI("/api/players/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
@@ -67,17 +128,27 @@ public class PlayerResource {
 
     /**
      * {@code PUT  /players/:id} : Updates an existing player.
+     * <p>
+     * The player is updated by a single statement, provided it still has the version of the {@code If-Match} header, or else
+     * of the player. A player without a version overwrites the current one, whatever its version.
      *
      * @param id the id of the player to save.
+     * @param ifMatch the {@code ETag} the player must still have, optional.
      * @param player the player to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated player,
-     * or with status {@code 400 (Bad Request)} if the player is not valid,
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated player and its {@code ETag},
+     * or with status {@code 400 (Bad Request)} if the player is not valid or its team doesn't exist,
+     * or with status {@code 404 (Not Found)} if the player is not found,
+     * or with status {@code 409 (Conflict)} if the player doesn't have the version of the given player,
+     * or with status {@code 412 (Precondition Failed)} if the player doesn't have the {@code ETag} of the {@code If-Match} header,
      * or with status {@code 500 (Internal Server Error)} if the player couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/players/{id}")
-    public ResponseEntity<Player> updatePlayer(@PathVariable(value = "id", required = false) final Long id, @RequestBody Player player)
-        throws URISyntaxException {
+    public ResponseEntity<Player> updatePlayer(
+        @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+        @RequestBody Player player
+    ) throws URISyntaxException {
         log.debug("REST request to update Player : {}, {}", id, player);
         if (player.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
@@ -86,31 +157,47 @@ public class PlayerResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!playerRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
+        boolean conditional = applyIfMatch(player, ifMatch);
+        Player result;
+        try {
+            result = playerService.update(player);
+        } catch (OptimisticLockingFailureException e) {
+            throw updateFailure(id, conditional);
+        } catch (DataIntegrityViolationException e) {
+            throw teamNotFound(player, e);
         }
-
-        Player result = playerService.update(player);
         return ResponseEntity
             .ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, player.getId().toString()))
+            .eTag(EntityTagUtil.generateETag(result))
             .body(result);
     }
 
     /**
      * {@code PATCH  /players/:id} : Partial updates given fields of an existing player, field will ignore if it is null
+     * <p>
+     * The player is only updated if it still has the version of the {@code If-Match} header, or else of the given player if
+     * it has one. With the {@code Prefer: return=minimal} header, the player is updated without being read, by a single
+     * statement writing only the given fields, and the response has no body.
      *
      * @param id the id of the player to save.
+     * @param ifMatch the {@code ETag} the player must still have, optional.
+     * @param prefer the preferences of the client, optional.
      * @param player the player to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated player,
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated player and its {@code ETag},
+     * or with status {@code 204 (No Content)} if the client prefers a response without body,
      * or with status {@code 400 (Bad Request)} if the player is not valid,
      * or with status {@code 404 (Not Found)} if the player is not found,
+     * or with status {@code 409 (Conflict)} if the player doesn't have the version of the given player,
+     * or with status {@code 412 (Precondition Failed)} if the player doesn't have the {@code ETag} of the {@code If-Match} header,
      * or with status {@code 500 (Internal Server Error)} if the player couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/players/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public ResponseEntity<Player> partialUpdatePlayer(
         @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+        @RequestHeader(value = PreferUtil.HEADER_PREFER, required = false) String prefer,
         @RequestBody Player player
     ) throws URISyntaxException {
         log.debug("REST request to partial update Player partially : {}, {}", id, player);
@@ -121,54 +208,370 @@ public class PlayerResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!playerRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
+        boolean conditional = applyIfMatch(player, ifMatch);
+        if (PreferUtil.isReturnMinimal(prefer)) {
+            if (!playerService.partialUpdateWithoutResult(player)) {
+                throw updateFailure(id, conditional);
+            }
+            HttpHeaders headers = HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, player.getId().toString());
+            headers.addAll(PreferUtil.generateReturnMinimalHttpHeaders());
+            return ResponseEntity.noContent().headers(headers).build();
+        }
+        Optional<Player> result;
+        try {
+            result = playerService.partialUpdate(player);
+        } catch (OptimisticLockingFailureException e) {
+            throw updateFailure(id, conditional);
         }
+        return result
+            .map(updated ->
+                ResponseEntity
+                    .ok()
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, player.getId().toString()))
+                    .eTag(EntityTagUtil.generateETag(updated))
+                    .body(updated)
+            )
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
 
-        Optional<Player> result = playerService.partialUpdate(player);
+    /**
+     * Sets the version of the {@code If-Match} header on the player, as the version it must still have to be updated.
+     *
+     * @return whether the header gave a version.
+     */
+    private static boolean applyIfMatch(Player player, String ifMatch) {
+        try {
+            Optional<Long> version = EntityTagUtil.parseVersion(ifMatch);
+            version.ifPresent(player::setVersion);
+            return version.isPresent();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+        }
+    }
 
-        return ResponseUtil.wrapOrNotFound(
-            result,
-            HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, player.getId().toString())
-        );
+    /**
+     * Tells why an update matched no player, which is only checked once the update failed.
+     */
+    private RuntimeException updateFailure(Long id, boolean conditional) {
+        if (!playerRepository.existsById(id)) {
+            return new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        if (conditional) {
+            return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+        }
+        return new ObjectOptimisticLockingFailureException(Player.class, id);
     }
 
     /**
-     * {@code GET  /players} : get all the players.
+     * Tells why a player with a team couldn't be written: the team isn't read before, so a team which doesn't exist only
+     * fails the foreign key constraint of the player. Whether the team exists is only checked once the write failed, other
+     * violations are rethrown.
+     */
+    private RuntimeException teamNotFound(Player player, DataIntegrityViolationException e) {
+        if (player.getTeam() == null || player.getTeam().getId() == null || teamRepository.existsById(player.getTeam().getId())) {
+            return e;
+        }
+        return new BadRequestAlertException("Team " + player.getTeam().getId() + " doesn't exist", ENTITY_NAME, "teamnotfound");
+    }
+
+    /**
+     * {@code GET  /players} : get a page of the players.
+     * <p>
+     * The page size is bounded by {@code application.query.max-page-size}, and offset pagination is refused past
+     * {@code application.query.max-rows} rows. The {@code X-Total-Count} header can be turned off with {@code count=false},
+     * to skip the count query.
+     * <p>
+     * When the {@code after} parameter is given, the players are keyset paginated instead: an empty value requests the
+     * first page, and the cursor of the next page is returned in the {@code X-Next-Cursor} and {@code Link} headers.
+     * <p>
+     * Associations can be loaded with the players by the {@code include} parameter, such as {@code include=team}, with the
+     * same number of queries whatever the number of players in the page.
+     * <p>
+     * The page is sent with an {@code ETag} computed from the versions of its players and from its pagination headers. A
+     * request whose {@code If-None-Match} header matches it gets a {@code 304 (Not Modified)} response without body.
      *
      * @param criteria the criteria which the requested entities should match.
+     * @param after the cursor of the requested page, for keyset pagination.
+     * @param count whether the total number of matching players should be counted.
+     * @param include the associations to load with the players.
+     * @param pageable the pagination information.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of players in body.
      */
     @GetMapping("/players")
-    public ResponseEntity<List<Player>> getAllPlayers(PlayerCriteria criteria) {
-        log.debug("REST request to get Players by criteria: {}", criteria);
-        List<Player> entityList = playerQueryService.findByCriteria(criteria);
-        return ResponseEntity.ok().body(entityList);
+    public ResponseEntity<List<Player>> getAllPlayers(
+        PlayerCriteria criteria,
+        @RequestParam(value = KeysetPaginationUtil.AFTER_PARAMETER, required = false) String after,
+        @RequestParam(value = "count", defaultValue = "true") boolean count,
+        @RequestParam(value = "include", required = false) List<String> include,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable
+    ) {
+        log.debug("REST request to get Players by criteria: {}, include: {}", criteria, include);
+        checkPageSize(pageable);
+        FetchPlan fetch;
+        try {
+            fetch = playerQueryService.fetchPlan(include);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "includeinvalid");
+        }
+        if (after != null) {
+            return getAllPlayersAfter(criteria, after, pageable, fetch);
+        }
+        checkOffset(pageable);
+        if (!count) {
+            Slice<Player> slice = playerQueryService.findSliceByCriteria(criteria, pageable, fetch);
+            HttpHeaders headers = SlicePaginationUtil.generateSliceHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice);
+            return ResponseEntity
+                .ok()
+                .headers(headers)
+                .eTag(EntityTagUtil.generatePlayersETag(slice.getContent(), headers))
+                .cacheControl(EntityTagUtil.CACHE_CONTROL)
+                .body(slice.getContent());
+        }
+        Page<Player> page = playerQueryService.findByCriteria(criteria, pageable, fetch);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity
+            .ok()
+            .headers(headers)
+            .eTag(EntityTagUtil.generatePlayersETag(page.getContent(), headers))
+            .cacheControl(EntityTagUtil.CACHE_CONTROL)
+            .body(page.getContent());
+    }
+
+    /**
+     * {@code GET  /players?fields=} : get a page of some fields of the players.
+     * <p>
+     * Only the requested fields are read from the database and returned, for example {@code fields=id,name,baskets}: the
+     * attributes of a player, or {@code team.id}, {@code team.name} and {@code team.city}. The team is only joined when one
+     * of its fields other than its id is requested. Pagination and counting work as without fields, but keyset pagination
+     * is not supported.
+     *
+     * @param criteria the criteria which the requested entities should match.
+     * @param fields the fields to return.
+     * @param after must be absent, keyset pagination is not supported.
+     * @param count whether the total number of matching players should be counted.
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of the fields of the players in body.
+     */
+    @GetMapping(value = "/players", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getAllPlayerFields(
+        PlayerCriteria criteria,
+        @RequestParam("fields") List<String> fields,
+        @RequestParam(value = KeysetPaginationUtil.AFTER_PARAMETER, required = false) String after,
+        @RequestParam(value = "count", defaultValue = "true") boolean count,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable
+    ) {
+        log.debug("REST request to get Player fields by criteria: {}, fields: {}", criteria, fields);
+        checkPageSize(pageable);
+        if (after != null) {
+            throw new BadRequestAlertException("Keyset pagination does not support fields", ENTITY_NAME, "fieldsinvalid");
+        }
+        checkOffset(pageable);
+        try {
+            if (!count) {
+                Slice<Map<String, Object>> slice = playerQueryService.findFieldSliceByCriteria(criteria, fields, pageable);
+                HttpHeaders headers = SlicePaginationUtil.generateSliceHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice);
+                return ResponseEntity.ok().headers(headers).body(slice.getContent());
+            }
+            Page<Map<String, Object>> page = playerQueryService.findFieldsByCriteria(criteria, fields, pageable);
+            HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+            return ResponseEntity.ok().headers(headers).body(page.getContent());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "fieldsinvalid");
+        }
+    }
+
+    private void checkPageSize(Pageable pageable) {
+        int maxPageSize = applicationProperties.getQuery().getMaxPageSize();
+        if (pageable.getPageSize() > maxPageSize) {
+            throw new BadRequestAlertException("Page size must not be greater than " + maxPageSize, ENTITY_NAME, "pagesizetoolarge");
+        }
+    }
+
+    private void checkOffset(Pageable pageable) {
+        long maxRows = applicationProperties.getQuery().getMaxRows();
+        if (pageable.getOffset() + pageable.getPageSize() > maxRows) {
+            throw new BadRequestAlertException(
+                "Only the first " + maxRows + " players can be read by page number, use keyset pagination with the 'after' parameter",
+                ENTITY_NAME,
+                "rowcapexceeded"
+            );
+        }
+    }
+
+    private ResponseEntity<List<Player>> getAllPlayersAfter(PlayerCriteria criteria, String after, Pageable pageable, FetchPlan fetch) {
+        log.debug("REST request to get Players by criteria: {}, after: {}", criteria, after);
+        if (pageable.getSort().stream().count() > 1) {
+            throw new BadRequestAlertException("Keyset pagination supports a single sort property", ENTITY_NAME, "sortinvalid");
+        }
+        KeysetSlice<Player> slice;
+        try {
+            KeysetCursor cursor = after.isEmpty()
+                ? KeysetCursor.first(pageable.getSort().stream().findFirst().orElse(null))
+                : KeysetCursor.decode(after);
+            slice = playerQueryService.findByCriteria(criteria, cursor, pageable.getPageSize(), fetch);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorinvalid");
+        }
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetPaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice);
+        return ResponseEntity
+            .ok()
+            .headers(headers)
+            .eTag(EntityTagUtil.generatePlayersETag(slice.getContent(), headers))
+            .cacheControl(EntityTagUtil.CACHE_CONTROL)
+            .body(slice.getContent());
     }
 
     /**
      * {@code GET  /players/count} : count all the players.
      *
      * @param criteria the criteria which the requested entities should match.
+     * @param estimate whether the count may be estimated from a sample of the players, the headers then tell if it was and
+     *                 with which error bound.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the count in body.
      */
     @GetMapping("/players/count")
-    public ResponseEntity<Long> countPlayers(PlayerCriteria criteria) {
-        log.debug("REST request to count Players by criteria: {}", criteria);
+    public ResponseEntity<Long> countPlayers(
+        PlayerCriteria criteria,
+        @RequestParam(value = "estimate", defaultValue = "false") boolean estimate
+    ) {
+        log.debug("REST request to count Players by criteria: {}, estimate: {}", criteria, estimate);
+        if (estimate) {
+            CountEstimate count = playerQueryService.estimateCountByCriteria(criteria);
+            return ResponseEntity.ok().headers(CountEstimateUtil.generateCountEstimateHttpHeaders(count)).body(count.getCount());
+        }
         return ResponseEntity.ok().body(playerQueryService.countByCriteria(criteria));
     }
 
+    /**
+     * {@code GET  /players/stats} : get statistics of the players matching the criteria, grouped by a dimension.
+     *
+     * @param criteria the criteria which the requested entities should match.
+     * @param groupBy the dimension the players are grouped by: {@code team}, {@code teamCity} or {@code birthYear}.
+     * @param metrics the aggregates to compute for each group, as {@code <attribute>.<function>} where the attribute is
+     *                {@code baskets}, {@code assists}, {@code height} or {@code weight} and the function is {@code sum},
+     *                {@code avg}, {@code min} or {@code max}. The number of players of each group is always returned.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of groups in body.
+     */
+    @GetMapping("/players/stats")
+    public ResponseEntity<List<PlayerStatsDTO>> getPlayerStats(
+        PlayerCriteria criteria,
+        @RequestParam(value = "groupBy", defaultValue = "team") String groupBy,
+        @RequestParam(value = "metrics", required = false) List<String> metrics
+    ) {
+        log.debug("REST request to get Player stats by criteria: {}, groupBy: {}, metrics: {}", criteria, groupBy, metrics);
+        PlayerStatsGroupBy dimension = PlayerStatsGroupBy
+            .fromParameter(groupBy)
+            .orElseThrow(() -> new BadRequestAlertException("Unsupported group by dimension", ENTITY_NAME, "groupbyinvalid"));
+        List<PlayerStatsMetric> aggregates = new ArrayList<>();
+        if (metrics != null) {
+            for (String metric : metrics) {
+                aggregates.add(
+                    PlayerStatsMetric
+                        .fromParameter(metric)
+                        .orElseThrow(() -> new BadRequestAlertException("Unsupported metric: " + metric, ENTITY_NAME, "metricinvalid"))
+                );
+            }
+        }
+        return ResponseEntity.ok().body(playerQueryService.findStatsByCriteria(criteria, dimension, aggregates));
+    }
+
+    /**
+     * {@code GET  /players/leaderboards/:metric} : get a page of the players ranked by a metric, highest first.
+     *
+     * @param metric the metric the players are ranked by: {@code baskets} or {@code assists}.
+     * @param teamId the id of the team whose players are ranked, all the players are ranked if absent.
+     * @param pageable the pagination information, whose sort is ignored.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the page of the leaderboard in body.
+     */
+    @GetMapping("/players/leaderboards/{metric}")
+    public ResponseEntity<List<LeaderboardEntryDTO>> getPlayerLeaderboard(
+        @PathVariable String metric,
+        @RequestParam(value = "teamId", required = false) Long teamId,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable
+    ) {
+        log.debug("REST request to get the {} leaderboard of team: {}", metric, teamId);
+        checkPageSize(pageable);
+        Page<LeaderboardEntryDTO> page = playerLeaderboardService.findLeaderboard(leaderboardMetric(metric), teamId, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * {@code GET  /players/:id/leaderboards/:metric} : get the ranks of the "id" player by a metric, among all the players
+     * and among the players of their team.
+     *
+     * @param id the id of the player.
+     * @param metric the metric the players are ranked by: {@code baskets} or {@code assists}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the ranks of the player, or with status
+     * {@code 404 (Not Found)}.
+     */
+    @GetMapping("/players/{id}/leaderboards/{metric}")
+    public ResponseEntity<LeaderboardEntryDTO> getPlayerRank(@PathVariable Long id, @PathVariable String metric) {
+        log.debug("REST request to get the {} rank of Player : {}", metric, id);
+        return ResponseUtil.wrapOrNotFound(playerLeaderboardService.findRank(leaderboardMetric(metric), id));
+    }
+
+    private static LeaderboardMetric leaderboardMetric(String metric) {
+        return LeaderboardMetric
+            .fromParameter(metric)
+            .orElseThrow(() -> new BadRequestAlertException("Unsupported leaderboard metric", ENTITY_NAME, "metricinvalid"));
+    }
+
+    /**
+     * {@code GET  /players/export} : stream all the players matching the criteria.
+     * <p>
+     * The players are written to the response as they are read from the database, so exports of any size use a constant
+     * amount of memory.
+     *
+     * @param criteria the criteria which the requested entities should match.
+     * @param format the export format, {@code ndjson} (one JSON player per line) or {@code csv}.
+     * @param gzip whether the response body should be gzip encoded.
+     * @param response the response the players are written to.
+     * @throws IOException if the response couldn't be written.
+     */
+    @GetMapping("/players/export")
+    public void exportPlayers(
+        PlayerCriteria criteria,
+        @RequestParam(value = "format", defaultValue = "ndjson") String format,
+        @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+        HttpServletResponse response
+    ) throws IOException {
+        log.debug("REST request to export Players by criteria: {}, format: {}", criteria, format);
+        PlayerExportService.Format exportFormat = PlayerExportService.Format
+            .fromParameter(format)
+            .orElseThrow(() -> new BadRequestAlertException("Unsupported export format", ENTITY_NAME, "formatinvalid"));
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename("players." + exportFormat.getExtension()).build().toString()
+        );
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            try (GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(), true)) {
+                playerExportService.export(criteria, exportFormat, out);
+            }
+        } else {
+            playerExportService.export(criteria, exportFormat, response.getOutputStream());
+        }
+    }
+
     /**
      * {@code GET  /players/:id} : get the "id" player.
      *
      * @param id the id of the player to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the player, or with status {@code 404 (Not Found)}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the player and its {@code ETag}, or with status
+     * {@code 304 (Not Modified)} if the {@code If-None-Match} header matches its {@code ETag}, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/players/{id}")
     public ResponseEntity<Player> getPlayer(@PathVariable Long id) {
         log.debug("REST request to get Player : {}", id);
-        Optional<Player> player = playerService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(player);
+        return playerService
+            .findOne(id)
+            .map(player ->
+                ResponseEntity.ok().eTag(EntityTagUtil.generateETag(player)).cacheControl(EntityTagUtil.CACHE_CONTROL).body(player)
+            )
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
     /**
@@ -3,21 +3,42 @@ package org.alfredorueda.spring.criteriajpa.web.rest;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import org.alfredorueda.spring.criteriajpa.config.ApplicationProperties;
 import org.alfredorueda.spring.criteriajpa.domain.Team;
 import org.alfredorueda.spring.criteriajpa.repository.TeamRepository;
 import org.alfredorueda.spring.criteriajpa.service.TeamQueryService;
 import org.alfredorueda.spring.criteriajpa.service.TeamService;
+import org.alfredorueda.spring.criteriajpa.service.criteria.FetchPlan;
+import org.alfredorueda.spring.criteriajpa.service.criteria.KeysetCursor;
 import org.alfredorueda.spring.criteriajpa.service.criteria.TeamCriteria;
+import org.alfredorueda.spring.criteriajpa.service.dto.CountEstimate;
+import org.alfredorueda.spring.criteriajpa.service.dto.KeysetSlice;
+import org.alfredorueda.spring.criteriajpa.service.dto.TeamSummaryDTO;
 import org.alfredorueda.spring.criteriajpa.web.rest.errors.BadRequestAlertException;
+import org.alfredorueda.spring.criteriajpa.web.rest.util.CountEstimateUtil;
+import org.alfredorueda.spring.criteriajpa.web.rest.util.EntityTagUtil;
+import org.alfredorueda.spring.criteriajpa.web.rest.util.KeysetPaginationUtil;
+import org.alfredorueda.spring.criteriajpa.web.rest.util.PreferUtil;
+import org.alfredorueda.spring.criteriajpa.web.rest.util.SlicePaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
-import tech.jhipster.web.util.ResponseUtil;
+import tech.jhipster.web.util.PaginationUtil;
 
 /**
  * REST controller for managing {@link org.alfredorueda.spring.criteriajpa.domain.Team}.
@@ -39,10 +60,18 @@ public class TeamResource {
 
     private final TeamQueryService teamQueryService;
 
-    public TeamResource(TeamService teamService, TeamRepository teamRepository, TeamQueryService teamQueryService) {
+    private final ApplicationProperties applicationProperties;
+
+    public TeamResource(
+        TeamService teamService,
+        TeamRepository teamRepository,
+        TeamQueryService teamQueryService,
+        ApplicationProperties applicationProperties
+    ) {
         this.teamService = teamService;
         this.teamRepository = teamRepository;
         this.teamQueryService = teamQueryService;
+        this.applicationProperties = applicationProperties;
     }
 
     /**
@@ -67,17 +96,27 @@ public class TeamResource {
 
     /**
      * {@code PUT  /teams/:id} : Updates an existing team.
+     * <p>
+     * The team is updated by a single statement, provided it still has the version of the {@code If-Match} header, or else
+     * of the team. A team without a version overwrites the current one, whatever its version.
      *
      * @param id the id of the team to save.
+     * @param ifMatch the {@code ETag} the team must still have, optional.
      * @param team the team to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated team,
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated team and its {@code ETag},
      * or with status {@code 400 (Bad Request)} if the team is not valid,
+     * or with status {@code 404 (Not Found)} if the team is not found,
+     * or with status {@code 409 (Conflict)} if the team doesn't have the version of the given team,
+     * or with status {@code 412 (Precondition Failed)} if the team doesn't have the {@code ETag} of the {@code If-Match} header,
      * or with status {@code 500 (Internal Server Error)} if the team couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/teams/{id}")
-    public ResponseEntity<Team> updateTeam(@PathVariable(value = "id", required = false) final Long id, @RequestBody Team team)
-        throws URISyntaxException {
+    public ResponseEntity<Team> updateTeam(
+        @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+        @RequestBody Team team
+    ) throws URISyntaxException {
         log.debug("REST request to update Team : {}, {}", id, team);
         if (team.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
@@ -86,31 +125,47 @@ public class TeamResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!teamRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
+        boolean conditional = applyIfMatch(team, ifMatch);
+        Team result;
+        try {
+            result = teamService.update(team);
+        } catch (OptimisticLockingFailureException e) {
+            throw updateFailure(id, conditional);
         }
-
-        Team result = teamService.update(team);
         return ResponseEntity
             .ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, team.getId().toString()))
+            .eTag(EntityTagUtil.generateETag(result))
             .body(result);
     }
 
     /**
      * {@code PATCH  /teams/:id} : Partial updates given fields of an existing team, field will ignore if it is null
+     * <p>
+     * The team is only updated if it still has the version of the {@code If-Match} header, or else of the given team if
+     * it has one. With the {@code Prefer: return=minimal} header, the team is updated without being read, by a single
+     * statement writing only the given fields, and the response has no body.
      *
      * @param id the id of the team to save.
+     * @param ifMatch the {@code ETag} the team must still have, optional.
+     * @param prefer the preferences of the client, optional.
      * @param team the team to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated team,
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated team and its {@code ETag},
+     * or with status {@code 204 (No Content)} if the client prefers a response without body,
      * or with status {@code 400 (Bad Request)} if the team is not valid,
      * or with status {@code 404 (Not Found)} if the team is not found,
+     * or with status {@code 409 (Conflict)} if the team doesn't have the version of the given team,
+     * or with status {@code 412 (Precondition Failed)} if the team doesn't have the {@code ETag} of the {@code If-Match} header,
      * or with status {@code 500 (Internal Server Error)} if the team couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/teams/{id}", consumes = { "application/json", "application/merge-patch+json" })
-    public ResponseEntity<Team> partialUpdateTeam(@PathVariable(value = "id", required = false) final Long id, @RequestBody Team team)
-        throws URISyntaxException {
+    public ResponseEntity<Team> partialUpdateTeam(
+        @PathVariable(value = "id", required = false) final Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+        @RequestHeader(value = PreferUtil.HEADER_PREFER, required = false) String prefer,
+        @RequestBody Team team
+    ) throws URISyntaxException {
         log.debug("REST request to partial update Team partially : {}, {}", id, team);
         if (team.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
@@ -119,40 +174,254 @@ public class TeamResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!teamRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
+        boolean conditional = applyIfMatch(team, ifMatch);
+        if (PreferUtil.isReturnMinimal(prefer)) {
+            if (!teamService.partialUpdateWithoutResult(team)) {
+                throw updateFailure(id, conditional);
+            }
+            HttpHeaders headers = HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, team.getId().toString());
+            headers.addAll(PreferUtil.generateReturnMinimalHttpHeaders());
+            return ResponseEntity.noContent().headers(headers).build();
+        }
+        Optional<Team> result;
+        try {
+            result = teamService.partialUpdate(team);
+        } catch (OptimisticLockingFailureException e) {
+            throw updateFailure(id, conditional);
         }
+        return result
+            .map(updated ->
+                ResponseEntity
+                    .ok()
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, team.getId().toString()))
+                    .eTag(EntityTagUtil.generateETag(updated))
+                    .body(updated)
+            )
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
 
-        Optional<Team> result = teamService.partialUpdate(team);
+    /**
+     * Sets the version of the {@code If-Match} header on the team, as the version it must still have to be updated.
+     *
+     * @return whether the header gave a version.
+     */
+    private static boolean applyIfMatch(Team team, String ifMatch) {
+        try {
+            Optional<Long> version = EntityTagUtil.parseVersion(ifMatch);
+            version.ifPresent(team::setVersion);
+            return version.isPresent();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+        }
+    }
 
-        return ResponseUtil.wrapOrNotFound(
-            result,
-            HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, team.getId().toString())
-        );
+    /**
+     * Tells why an update matched no team, which is only checked once the update failed.
+     */
+    private RuntimeException updateFailure(Long id, boolean conditional) {
+        if (!teamRepository.existsById(id)) {
+            return new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        if (conditional) {
+            return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+        }
+        return new ObjectOptimisticLockingFailureException(Team.class, id);
     }
 
     /**
-     * {@code GET  /teams} : get all the teams.
+     * {@code GET  /teams} : get a page of the teams.
+     * <p>
+     * The page size is bounded by {@code application.query.max-page-size}, and offset pagination is refused past
+     * {@code application.query.max-rows} rows. The {@code X-Total-Count} header can be turned off with {@code count=false},
+     * to skip the count query.
+     * <p>
+     * When the {@code after} parameter is given, the teams are keyset paginated instead: an empty value requests the
+     * first page, and the cursor of the next page is returned in the {@code X-Next-Cursor} and {@code Link} headers.
+     * <p>
+     * Associations can be loaded with the teams by the {@code include} parameter, such as {@code include=players}, with the
+     * same number of queries whatever the number of teams in the page.
+     * <p>
+     * The page is sent with an {@code ETag} computed from the versions of its teams and from its pagination headers. A
+     * request whose {@code If-None-Match} header matches it gets a {@code 304 (Not Modified)} response without body.
      *
      * @param criteria the criteria which the requested entities should match.
+     * @param after the cursor of the requested page, for keyset pagination.
+     * @param count whether the total number of matching teams should be counted.
+     * @param include the associations to load with the teams.
+     * @param pageable the pagination information.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of teams in body.
      */
     @GetMapping("/teams")
-    public ResponseEntity<List<Team>> getAllTeams(TeamCriteria criteria) {
-        log.debug("REST request to get Teams by criteria: {}", criteria);
-        List<Team> entityList = teamQueryService.findByCriteria(criteria);
-        return ResponseEntity.ok().body(entityList);
+    public ResponseEntity<List<Team>> getAllTeams(
+        TeamCriteria criteria,
+        @RequestParam(value = KeysetPaginationUtil.AFTER_PARAMETER, required = false) String after,
+        @RequestParam(value = "count", defaultValue = "true") boolean count,
+        @RequestParam(value = "include", required = false) List<String> include,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable
+    ) {
+        log.debug("REST request to get Teams by criteria: {}, include: {}", criteria, include);
+        checkPageSize(pageable);
+        FetchPlan fetch;
+        try {
+            fetch = teamQueryService.fetchPlan(include);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "includeinvalid");
+        }
+        if (after != null) {
+            return getAllTeamsAfter(criteria, after, pageable, fetch);
+        }
+        checkOffset(pageable);
+        if (!count) {
+            Slice<Team> slice = teamQueryService.findSliceByCriteria(criteria, pageable, fetch);
+            HttpHeaders headers = SlicePaginationUtil.generateSliceHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice);
+            return ResponseEntity
+                .ok()
+                .headers(headers)
+                .eTag(EntityTagUtil.generateTeamsETag(slice.getContent(), headers))
+                .cacheControl(EntityTagUtil.CACHE_CONTROL)
+                .body(slice.getContent());
+        }
+        Page<Team> page = teamQueryService.findByCriteria(criteria, pageable, fetch);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity
+            .ok()
+            .headers(headers)
+            .eTag(EntityTagUtil.generateTeamsETag(page.getContent(), headers))
+            .cacheControl(EntityTagUtil.CACHE_CONTROL)
+            .body(page.getContent());
+    }
+
+    /**
+     * {@code GET  /teams?fields=} : get a page of some fields of the teams.
+     * <p>
+     * Only the requested fields are read from the database and returned, for example {@code fields=id,name}: the
+     * attributes of a team. Pagination and counting work as without fields, but keyset pagination is not supported.
+     *
+     * @param criteria the criteria which the requested entities should match.
+     * @param fields the fields to return.
+     * @param after must be absent, keyset pagination is not supported.
+     * @param count whether the total number of matching teams should be counted.
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of the fields of the teams in body.
+     */
+    @GetMapping(value = "/teams", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getAllTeamFields(
+        TeamCriteria criteria,
+        @RequestParam("fields") List<String> fields,
+        @RequestParam(value = KeysetPaginationUtil.AFTER_PARAMETER, required = false) String after,
+        @RequestParam(value = "count", defaultValue = "true") boolean count,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable
+    ) {
+        log.debug("REST request to get Team fields by criteria: {}, fields: {}", criteria, fields);
+        checkPageSize(pageable);
+        if (after != null) {
+            throw new BadRequestAlertException("Keyset pagination does not support fields", ENTITY_NAME, "fieldsinvalid");
+        }
+        checkOffset(pageable);
+        try {
+            if (!count) {
+                Slice<Map<String, Object>> slice = teamQueryService.findFieldSliceByCriteria(criteria, fields, pageable);
+                HttpHeaders headers = SlicePaginationUtil.generateSliceHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice);
+                return ResponseEntity.ok().headers(headers).body(slice.getContent());
+            }
+            Page<Map<String, Object>> page = teamQueryService.findFieldsByCriteria(criteria, fields, pageable);
+            HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+            return ResponseEntity.ok().headers(headers).body(page.getContent());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "fieldsinvalid");
+        }
+    }
+
+    private void checkPageSize(Pageable pageable) {
+        int maxPageSize = applicationProperties.getQuery().getMaxPageSize();
+        if (pageable.getPageSize() > maxPageSize) {
+            throw new BadRequestAlertException("Page size must not be greater than " + maxPageSize, ENTITY_NAME, "pagesizetoolarge");
+        }
+    }
+
+    private void checkOffset(Pageable pageable) {
+        long maxRows = applicationProperties.getQuery().getMaxRows();
+        if (pageable.getOffset() + pageable.getPageSize() > maxRows) {
+            throw new BadRequestAlertException(
+                "Only the first " + maxRows + " teams can be read by page number, use keyset pagination with the 'after' parameter",
+                ENTITY_NAME,
+                "rowcapexceeded"
+            );
+        }
+    }
+
+    private ResponseEntity<List<Team>> getAllTeamsAfter(TeamCriteria criteria, String after, Pageable pageable, FetchPlan fetch) {
+        log.debug("REST request to get Teams by criteria: {}, after: {}", criteria, after);
+        if (pageable.getSort().stream().count() > 1) {
+            throw new BadRequestAlertException("Keyset pagination supports a single sort property", ENTITY_NAME, "sortinvalid");
+        }
+        KeysetSlice<Team> slice;
+        try {
+            KeysetCursor cursor = after.isEmpty()
+                ? KeysetCursor.first(pageable.getSort().stream().findFirst().orElse(null))
+                : KeysetCursor.decode(after);
+            slice = teamQueryService.findByCriteria(criteria, cursor, pageable.getPageSize(), fetch);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "cursorinvalid");
+        }
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetPaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice);
+        return ResponseEntity
+            .ok()
+            .headers(headers)
+            .eTag(EntityTagUtil.generateTeamsETag(slice.getContent(), headers))
+            .cacheControl(EntityTagUtil.CACHE_CONTROL)
+            .body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /teams/summary} : get a page of the teams with the aggregates of their roster.
+     * <p>
+     * Every team comes with its number of players and their total baskets and assists, computed by one grouped query for
+     * the whole page. Filters, sort, pagination and counting work as for {@code GET /teams}, but keyset pagination is not
+     * supported.
+     *
+     * @param criteria the criteria which the requested entities should match.
+     * @param count whether the total number of matching teams should be counted.
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of team summaries in body.
+     */
+    @GetMapping("/teams/summary")
+    public ResponseEntity<List<TeamSummaryDTO>> getAllTeamSummaries(
+        TeamCriteria criteria,
+        @RequestParam(value = "count", defaultValue = "true") boolean count,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable
+    ) {
+        log.debug("REST request to get Team summaries by criteria: {}", criteria);
+        checkPageSize(pageable);
+        checkOffset(pageable);
+        if (!count) {
+            Slice<TeamSummaryDTO> slice = teamQueryService.findSummarySliceByCriteria(criteria, pageable);
+            HttpHeaders headers = SlicePaginationUtil.generateSliceHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice);
+            return ResponseEntity.ok().headers(headers).body(slice.getContent());
+        }
+        Page<TeamSummaryDTO> page = teamQueryService.findSummariesByCriteria(criteria, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
     /**
      * {@code GET  /teams/count} : count all the teams.
      *
      * @param criteria the criteria which the requested entities should match.
+     * @param estimate whether the count may be estimated from a sample of the teams, the headers then tell if it was and
+     *                 with which error bound.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the count in body.
      */
     @GetMapping("/teams/count")
-    public ResponseEntity<Long> countTeams(TeamCriteria criteria) {
-        log.debug("REST request to count Teams by criteria: {}", criteria);
+    public ResponseEntity<Long> countTeams(
+        TeamCriteria criteria,
+        @RequestParam(value = "estimate", defaultValue = "false") boolean estimate
+    ) {
+        log.debug("REST request to count Teams by criteria: {}, estimate: {}", criteria, estimate);
+        if (estimate) {
+            CountEstimate count = teamQueryService.estimateCountByCriteria(criteria);
+            return ResponseEntity.ok().headers(CountEstimateUtil.generateCountEstimateHttpHeaders(count)).body(count.getCount());
+        }
         return ResponseEntity.ok().body(teamQueryService.countByCriteria(criteria));
     }
 
@@ -160,13 +429,16 @@ public class TeamResource {
      * {@code GET  /teams/:id} : get the "id" team.
      *
      * @param id the id of the team to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the team, or with status {@code 404 (Not Found)}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the team and its {@code ETag}, or with status
+     * {@code 304 (Not Modified)} if the {@code If-None-Match} header matches its {@code ETag}, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/teams/{id}")
     public ResponseEntity<Team> getTeam(@PathVariable Long id) {
         log.debug("REST request to get Team : {}", id);
-        Optional<Team> team = teamService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(team);
+        return teamService
+            .findOne(id)
+            .map(team -> ResponseEntity.ok().eTag(EntityTagUtil.generateETag(team)).cacheControl(EntityTagUtil.CACHE_CONTROL).body(team))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
     /**
@@ -0,0 +1,34 @@
+package org.alfredorueda.spring.criteriajpa.web.rest.util;
+
+import org.alfredorueda.spring.criteriajpa.service.dto.CountEstimate;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Utility class for sending estimated counts.
+ * <p>
+ * The count is sent in the body as usual, the {@code X-Count-Estimated} header tells if it was estimated, and the
+ * {@code X-Count-Error-Bound} header gives the half width of the 95% confidence interval of an estimate.
+ */
+public final class CountEstimateUtil {
+
+    private static final String HEADER_X_COUNT_ESTIMATED = "X-Count-Estimated";
+
+    private static final String HEADER_X_COUNT_ERROR_BOUND = "X-Count-Error-Bound";
+
+    private CountEstimateUtil() {}
+
+    /**
+     * Generate the headers of a {@link CountEstimate}.
+     *
+     * @param estimate the count.
+     * @return http header.
+     */
+    public static HttpHeaders generateCountEstimateHttpHeaders(CountEstimate estimate) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_X_COUNT_ESTIMATED, Boolean.toString(estimate.isEstimated()));
+        if (estimate.isEstimated()) {
+            headers.add(HEADER_X_COUNT_ERROR_BOUND, Long.toString(estimate.getErrorBound()));
+        }
+        return headers;
+    }
+}
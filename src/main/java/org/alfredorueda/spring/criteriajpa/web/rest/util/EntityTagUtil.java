@@ -0,0 +1,155 @@
+package org.alfredorueda.spring.criteriajpa.web.rest.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.alfredorueda.spring.criteriajpa.domain.Player;
+import org.alfredorueda.spring.criteriajpa.domain.Team;
+import org.hibernate.Hibernate;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Utility class for the strong ETags of the player and team resources.
+ * <p>
+ * The ETag of an entity is its version, followed by a digest of the ids and versions of the associated entities serialized
+ * with it, so it changes whenever its JSON representation does. The version can be read back from an {@code If-Match}
+ * header, to update the entity only if it still has this version. The ETag of a list is a digest of the ETags of its
+ * entities and of the pagination headers of the response.
+ * <p>
+ * The ETag is computed before the response is serialized: when it matches the {@code If-None-Match} header of a
+ * {@code GET} request, Spring sends a {@code 304 (Not Modified)} response without serializing the body.
+ * <p>
+ * The Undertow response compression of the prod profile keeps the ETag of the gzip encoded responses, and doesn't add a
+ * {@code Vary: Accept-Encoding} header: both encodings of a response share its ETag, which the private
+ * {@link #CACHE_CONTROL} keeps out of the shared caches.
+ */
+public final class EntityTagUtil {
+
+    /**
+     * Lets the clients keep the responses, provided they revalidate them with their ETag before every use.
+     */
+    public static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    private static final Pattern ENTITY_TAG = Pattern.compile("\"(\\d+)(?:-[0-9a-f]+)?\"");
+
+    private EntityTagUtil() {}
+
+    /**
+     * Generate the ETag of a player.
+     *
+     * @param player the player.
+     * @return the quoted ETag.
+     */
+    public static String generateETag(Player player) {
+        Team team = player.getTeam();
+        if (team == null || !Hibernate.isInitialized(team)) {
+            return "\"" + player.getVersion() + "\"";
+        }
+        return versionTag(player.getVersion(), new StringBuilder().append("t").append(team.getId()).append('.').append(team.getVersion()));
+    }
+
+    /**
+     * Generate the ETag of a team.
+     *
+     * @param team the team.
+     * @return the quoted ETag.
+     */
+    public static String generateETag(Team team) {
+        if (team.getPlayers() == null || !Hibernate.isInitialized(team.getPlayers())) {
+            return "\"" + team.getVersion() + "\"";
+        }
+        return versionTag(team.getVersion(), appendPlayers(new StringBuilder(), team));
+    }
+
+    /**
+     * Parse the version of an entity from the {@code If-Match} header of a request.
+     *
+     * @param ifMatch the {@code If-Match} header, may be null.
+     * @return the version of the single ETag of the header, or empty if the header is absent or {@code *}.
+     * @throws IllegalArgumentException if the header isn't a single strong ETag of an entity, so it can't match it.
+     */
+    public static Optional<Long> parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return Optional.empty();
+        }
+        Matcher matcher = ENTITY_TAG.matcher(ifMatch.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("If-Match must be a single ETag of the entity: " + ifMatch);
+        }
+        return Optional.of(Long.valueOf(matcher.group(1)));
+    }
+
+    /**
+     * Generate the ETag of a list of players.
+     *
+     * @param players the players, in the order of the response.
+     * @param headers the pagination headers of the response.
+     * @return the quoted ETag.
+     */
+    public static String generatePlayersETag(List<Player> players, HttpHeaders headers) {
+        StringBuilder state = new StringBuilder();
+        players.forEach(player -> appendPlayer(state.append('['), player).append(']'));
+        return tag(appendHeaders(state, headers));
+    }
+
+    /**
+     * Generate the ETag of a list of teams.
+     *
+     * @param teams the teams, in the order of the response.
+     * @param headers the pagination headers of the response.
+     * @return the quoted ETag.
+     */
+    public static String generateTeamsETag(List<Team> teams, HttpHeaders headers) {
+        StringBuilder state = new StringBuilder();
+        teams.forEach(team -> appendTeam(state.append('['), team).append(']'));
+        return tag(appendHeaders(state, headers));
+    }
+
+    private static StringBuilder appendPlayer(StringBuilder state, Player player) {
+        state.append("p").append(player.getId()).append('.').append(player.getVersion());
+        Team team = player.getTeam();
+        if (team != null && Hibernate.isInitialized(team)) {
+            state.append(" t").append(team.getId()).append('.').append(team.getVersion());
+        }
+        return state;
+    }
+
+    private static StringBuilder appendTeam(StringBuilder state, Team team) {
+        state.append("t").append(team.getId()).append('.').append(team.getVersion());
+        if (team.getPlayers() != null && Hibernate.isInitialized(team.getPlayers())) {
+            appendPlayers(state.append(" {"), team).append('}');
+        }
+        return state;
+    }
+
+    /**
+     * The players of a team are only serialized when they are loaded, in the order of their set, which isn't stable: they
+     * are sorted by id, so that the ETag doesn't change with this order.
+     */
+    private static StringBuilder appendPlayers(StringBuilder state, Team team) {
+        team
+            .getPlayers()
+            .stream()
+            .sorted(Comparator.comparing(Player::getId, Comparator.nullsFirst(Comparator.naturalOrder())))
+            .forEach(player -> state.append(" p").append(player.getId()).append('.').append(player.getVersion()));
+        return state;
+    }
+
+    private static StringBuilder appendHeaders(StringBuilder state, HttpHeaders headers) {
+        headers.forEach((name, values) -> state.append('\n').append(name).append(": ").append(values));
+        return state;
+    }
+
+    private static String versionTag(Long version, StringBuilder associations) {
+        return "\"" + version + "-" + DigestUtils.md5DigestAsHex(associations.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static String tag(StringBuilder state) {
+        return "\"" + DigestUtils.md5DigestAsHex(state.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
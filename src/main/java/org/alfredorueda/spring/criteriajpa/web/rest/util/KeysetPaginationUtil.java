@@ -0,0 +1,48 @@
+package org.alfredorueda.spring.criteriajpa.web.rest.util;
+
+import java.text.MessageFormat;
+import org.alfredorueda.spring.criteriajpa.service.dto.KeysetSlice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Utility class for handling keyset (cursor based) pagination.
+ * <p>
+ * The cursor of the next page is sent in the {@code X-Next-Cursor} header and as a
+ * <a href="https://tools.ietf.org/html/rfc8288">Link</a> with {@code rel="next"}.
+ * No {@code X-Total-Count} header is sent, as keyset pages are read without counting.
+ */
+public final class KeysetPaginationUtil {
+
+    public static final String AFTER_PARAMETER = "after";
+
+    private static final String HEADER_X_NEXT_CURSOR = "X-Next-Cursor";
+
+    private static final String HEADER_LINK_FORMAT = "<{0}>; rel=\"{1}\"";
+
+    private KeysetPaginationUtil() {}
+
+    /**
+     * Generate keyset pagination headers for a {@link KeysetSlice}.
+     *
+     * @param uriBuilder The URI builder of the current request.
+     * @param slice The keyset page.
+     * @param <T> The type of object.
+     * @return http header.
+     */
+    public static <T> HttpHeaders generateKeysetPaginationHttpHeaders(UriComponentsBuilder uriBuilder, KeysetSlice<T> slice) {
+        HttpHeaders headers = new HttpHeaders();
+        if (slice.hasNext()) {
+            String token = slice.getNext().encode();
+            headers.add(HEADER_X_NEXT_CURSOR, token);
+            String uri = uriBuilder
+                .replaceQueryParam(AFTER_PARAMETER, token)
+                .replaceQueryParam("page")
+                .toUriString()
+                .replace(",", "%2C")
+                .replace(";", "%3B");
+            headers.add(HttpHeaders.LINK, MessageFormat.format(HEADER_LINK_FORMAT, uri, "next"));
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,40 @@
+package org.alfredorueda.spring.criteriajpa.web.rest.util;
+
+import java.util.Arrays;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Utility class for the {@code Prefer} header of the requests, see <a href="https://www.rfc-editor.org/rfc/rfc7240">RFC 7240</a>.
+ * <p>
+ * A client sending {@code Prefer: return=minimal} doesn't need the updated entity in the response body, which can then
+ * be updated without being read. The {@code Preference-Applied} header of the response tells if it was.
+ */
+public final class PreferUtil {
+
+    public static final String HEADER_PREFER = "Prefer";
+
+    private static final String HEADER_PREFERENCE_APPLIED = "Preference-Applied";
+
+    private static final String RETURN_MINIMAL = "return=minimal";
+
+    private PreferUtil() {}
+
+    /**
+     * @param prefer the {@code Prefer} header of the request, may be null.
+     * @return whether the client prefers a response without body.
+     */
+    public static boolean isReturnMinimal(String prefer) {
+        return prefer != null && Arrays.stream(prefer.split(",")).map(String::trim).anyMatch(RETURN_MINIMAL::equalsIgnoreCase);
+    }
+
+    /**
+     * Generate the headers of a response without body for a client preferring it.
+     *
+     * @return http header.
+     */
+    public static HttpHeaders generateReturnMinimalHttpHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_PREFERENCE_APPLIED, RETURN_MINIMAL);
+        return headers;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Utility classes for the Spring MVC REST controllers.
+ */
+package org.alfredorueda.spring.criteriajpa.web.rest.util;
@@ -0,0 +1,88 @@
+package org.alfredorueda.spring.criteriajpa.service.cache.invalidation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.Serializable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManagerFactory;
+import org.alfredorueda.spring.criteriajpa.JhipsterCriteriaJpaSampleApp;
+import org.alfredorueda.spring.criteriajpa.domain.Player;
+import org.alfredorueda.spring.criteriajpa.repository.PlayerRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests of the {@link CacheInvalidationBus} between two instances of the application in the same JVM,
+ * sharing the in-memory database and the {@link LoopbackCacheInvalidationTransport}: a player written by the instance of
+ * the test is evicted from the second-level cache of the other instance, which notifies its listener.
+ */
+@SpringBootTest(properties = "application.cache.invalidation.enabled=true")
+class CacheInvalidationBusIT {
+
+    private static final BlockingQueue<Serializable> invalidatedPlayers = new LinkedBlockingQueue<>();
+
+    private static ConfigurableApplicationContext otherNode;
+
+    @Autowired
+    private PlayerRepository playerRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Start the other instance with a cache manager of its own, and a listener recording the invalidated players.
+     */
+    @BeforeAll
+    static void startOtherNode() {
+        CacheInvalidationListener listener = (entityClass, id) -> {
+            if (Player.class.equals(entityClass)) {
+                invalidatedPlayers.add(id);
+            }
+        };
+        otherNode =
+            new SpringApplicationBuilder(JhipsterCriteriaJpaSampleApp.class)
+                .initializers(context -> context.getBeanFactory().registerSingleton("playerInvalidationRecorder", listener))
+                .run(
+                    "--server.port=0",
+                    "--spring.cache.jcache.config=classpath:config/ehcache-other-node.xml",
+                    "--application.cache.invalidation.enabled=true"
+                );
+    }
+
+    @AfterAll
+    static void stopOtherNode() {
+        otherNode.close();
+    }
+
+    @AfterEach
+    void deletePlayers() {
+        playerRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void committedPlayerIsEvictedAndNotifiedOnTheOtherNode() throws InterruptedException {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Long id = transaction.execute(status -> playerRepository.save(new Player().name("Player").baskets(1)).getId());
+        assertThat(invalidatedPlayers.poll(10, TimeUnit.SECONDS)).isEqualTo(id);
+
+        EntityManagerFactory otherEntityManagerFactory = otherNode.getBean(EntityManagerFactory.class);
+        new TransactionTemplate(otherNode.getBean(PlatformTransactionManager.class))
+            .executeWithoutResult(status -> otherNode.getBean(PlayerRepository.class).findById(id).orElseThrow());
+        assertThat(otherEntityManagerFactory.getCache().contains(Player.class, id)).isTrue();
+
+        transaction.executeWithoutResult(status -> playerRepository.findById(id).orElseThrow().baskets(2));
+
+        assertThat(invalidatedPlayers.poll(10, TimeUnit.SECONDS)).isEqualTo(id);
+        assertThat(otherEntityManagerFactory.getCache().contains(Player.class, id)).isFalse();
+    }
+}
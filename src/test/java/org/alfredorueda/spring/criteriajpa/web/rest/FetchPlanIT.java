@@ -0,0 +1,103 @@
+package org.alfredorueda.spring.criteriajpa.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManagerFactory;
+import org.alfredorueda.spring.criteriajpa.domain.Player;
+import org.alfredorueda.spring.criteriajpa.domain.Team;
+import org.alfredorueda.spring.criteriajpa.repository.PlayerRepository;
+import org.alfredorueda.spring.criteriajpa.repository.TeamRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Integration tests of the {@code include} parameter of the {@link PlayerResource} and {@link TeamResource} list
+ * endpoints: the associations are loaded with a number of SQL statements which does not depend on the page size.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@WithMockUser
+class FetchPlanIT {
+
+    private static final int TEAMS = 60;
+
+    private static final int PLAYERS_PER_TEAM = 2;
+
+    @Autowired
+    private TeamRepository teamRepository;
+
+    @Autowired
+    private PlayerRepository playerRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MockMvc restMockMvc;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void createTeamsAndPlayers() {
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < TEAMS; i++) {
+            teams.add(new Team().name("Team " + i).city("City " + i));
+        }
+        teams = teamRepository.saveAll(teams);
+        List<Player> players = new ArrayList<>();
+        for (Team team : teams) {
+            for (int i = 0; i < PLAYERS_PER_TEAM; i++) {
+                players.add(new Player().name("Player " + team.getId() + "-" + i).baskets(i).assists(i).team(team));
+            }
+        }
+        playerRepository.saveAll(players);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void deleteTeamsAndPlayers() {
+        playerRepository.deleteAllInBatch();
+        teamRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void playersWithTheirTeamTakeAsManyStatementsForAnyPageSize() throws Exception {
+        long smallPage = countStatements("/api/players?include=team&sort=id,asc&size=5", 5);
+        long largePage = countStatements("/api/players?include=team&sort=id,asc&size=50", 50);
+
+        assertThat(largePage).isEqualTo(smallPage);
+    }
+
+    @Test
+    void teamsWithTheirPlayersTakeAsManyStatementsForAnyPageSize() throws Exception {
+        long smallPage = countStatements("/api/teams?include=players&sort=id,asc&size=5", 5);
+        long largePage = countStatements("/api/teams?include=players&sort=id,asc&size=50", 50);
+
+        assertThat(largePage).isEqualTo(smallPage);
+    }
+
+    /**
+     * Get a page with empty caches, and count the statements prepared to read it.
+     */
+    private long countStatements(String url, int size) throws Exception {
+        entityManagerFactory.getCache().evictAll();
+        statistics.clear();
+        restMockMvc.perform(get(url)).andExpect(status().isOk()).andExpect(jsonPath("$.length()").value(size));
+        long statements = statistics.getPrepareStatementCount();
+        assertThat(statements).isPositive();
+        return statements;
+    }
+}